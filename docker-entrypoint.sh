@@ -0,0 +1,34 @@
+#!/bin/sh
+# Starts the backend with a class-data-sharing (CDS) archive of the classes loaded during startup and warm-up.
+# The archive is recorded by a one-off training run on the first start of the container: the application
+# starts, runs its warm-up (see StartupWarmup) and exits. Later starts, e.g. after a power cut, map the
+# archive instead of loading and verifying those classes again. Set CDS_ENABLED=false to skip it.
+# The training run never touches the real database or the node's state: it uses a throwaway embedded
+# database, keeps the cluster job poller from claiming jobs, and leaves the punch journal and backups alone.
+set -e
+
+CLASSPATH="/app/app.jar:/app/lib/*"
+MAIN_CLASS=com.timesheet.offline.TimesheetSystemApplication
+ARCHIVE=/app/cds/app.jsa
+JAVA_FLAGS="$(cat /app/jvm-flags) ${JAVA_OPTS:-}"
+
+if [ "${CDS_ENABLED:-true}" = "true" ] && [ ! -f "$ARCHIVE" ]; then
+    echo "Recording class-data-sharing archive (one-time training run)..."
+    TRAINING_DIR="$(mktemp -d)"
+    TRAINING_FLAGS="-Dstartup.exit-after-warmup=true \
+        -Dstorage.mode=embedded -Dstorage.embedded.path=$TRAINING_DIR/timesheet \
+        -Dstorage.migrate-from-embedded= -Dbackup.restore-from= \
+        -Djobs.initial-delay-ms=86400000 -Dkiosk.journal.enabled=false \
+        -Dexport.jobs.dir=$TRAINING_DIR/exports -Dserver.port=0"
+    if ! java $JAVA_FLAGS $TRAINING_FLAGS -XX:ArchiveClassesAtExit="$ARCHIVE" -cp "$CLASSPATH" "$MAIN_CLASS"; then
+        echo "Training run failed; starting without a class-data-sharing archive."
+        rm -f "$ARCHIVE"
+    fi
+    rm -rf "$TRAINING_DIR"
+fi
+
+if [ "${CDS_ENABLED:-true}" = "true" ] && [ -f "$ARCHIVE" ]; then
+    JAVA_FLAGS="$JAVA_FLAGS -XX:SharedArchiveFile=$ARCHIVE"
+fi
+
+exec java $JAVA_FLAGS -cp "$CLASSPATH" "$MAIN_CLASS" "$@"
@@ -0,0 +1,44 @@
+// Writes .gz and .br variants next to every compressible file in the production build.
+// The backend serves them instead of the original when the browser accepts the encoding,
+// so assets are compressed once at build time at maximum level instead of on every request.
+const fs = require('fs');
+const path = require('path');
+const zlib = require('zlib');
+
+const BUILD_DIR = path.join(__dirname, '..', 'build');
+const COMPRESSIBLE = /\.(js|css|html|json|svg|txt|ico|map)$/;
+const MIN_SIZE = 1024;
+
+function walk(dir) {
+    return fs.readdirSync(dir, { withFileTypes: true }).flatMap(entry => {
+        const fullPath = path.join(dir, entry.name);
+        return entry.isDirectory() ? walk(fullPath) : [fullPath];
+    });
+}
+
+function writeIfSmaller(file, original, compressed) {
+    // A variant that isn't smaller than the original is only wasted disk and a wasted lookup.
+    if (compressed.length < original.length) {
+        fs.writeFileSync(file, compressed);
+    }
+}
+
+let count = 0;
+for (const file of walk(BUILD_DIR)) {
+    if (!COMPRESSIBLE.test(file)) {
+        continue;
+    }
+    const original = fs.readFileSync(file);
+    if (original.length < MIN_SIZE) {
+        continue;
+    }
+    writeIfSmaller(`${file}.gz`, original, zlib.gzipSync(original, { level: zlib.constants.Z_BEST_COMPRESSION }));
+    writeIfSmaller(`${file}.br`, original, zlib.brotliCompressSync(original, {
+        params: {
+            [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+            [zlib.constants.BROTLI_PARAM_SIZE_HINT]: original.length,
+        },
+    }));
+    count++;
+}
+console.log(`Precompressed ${count} files in ${BUILD_DIR}`);
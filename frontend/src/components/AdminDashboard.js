@@ -21,6 +21,15 @@ const apiFetch = async (url, options = {}) => {
     return response;
 };
 
+const getMonday = (d) => {
+    d = new Date(d);
+    var day = d.getDay(),
+        diff = d.getDate() - day + (day === 0 ? -6 : 1);
+    return new Date(d.setDate(diff));
+};
+
+const toDateParam = (date) => date.toISOString().split('T')[0];
+
 const downloadFile = async (url, defaultFilename, token) => {
     try {
         const response = await apiFetch(url, { headers: { 'Authorization': `Bearer ${token}` } });
@@ -138,23 +147,17 @@ const LiveStatusView = ({ users, isLoading, error }) => {
     );
 };
 
-const TimesheetView = ({ token }) => {
+const TimesheetView = ({ token, initialData, onInitialDataUsed }) => {
     const [timesheetData, setTimesheetData] = useState([]);
     const [isLoading, setIsLoading] = useState(true);
     const [error, setError] = useState(null);
     const [weekStartDate, setWeekStartDate] = useState(getMonday(new Date()));
-
-    function getMonday(d) {
-        d = new Date(d);
-        var day = d.getDay(),
-            diff = d.getDate() - day + (day === 0 ? -6 : 1);
-        return new Date(d.setDate(diff));
-    }
+    const initialDataRef = useRef(initialData);
 
     const loadTimesheet = useCallback(async (date) => {
         try {
             setIsLoading(true);
-            const dateString = date.toISOString().split('T')[0];
+            const dateString = toDateParam(date);
             const data = await apiFetch(`${API_BASE_URL}/api/admin/timesheets?weekStartDate=${dateString}`, { headers: { 'Authorization': `Bearer ${token}` } });
             setTimesheetData(data);
             setError(null);
@@ -166,6 +169,15 @@ const TimesheetView = ({ token }) => {
     }, [token]);
 
     useEffect(() => {
+        // The dashboard's first load already holds the current week.
+        const initial = initialDataRef.current;
+        initialDataRef.current = null;
+        if (initial && initial.weekStartDate === toDateParam(weekStartDate)) {
+            setTimesheetData(initial.rows);
+            setIsLoading(false);
+            onInitialDataUsed('timesheet');
+            return;
+        }
         loadTimesheet(weekStartDate);
     }, [weekStartDate, loadTimesheet]);
 
@@ -244,16 +256,19 @@ const TimesheetView = ({ token }) => {
     );
 };
 
-const AuditLogView = ({ token }) => {
+const AUDIT_PAGE_SIZE = 15;
+
+const AuditLogView = ({ token, initialData, onInitialDataUsed }) => {
     const [logData, setLogData] = useState({ content: [], totalPages: 0 });
     const [isLoading, setIsLoading] = useState(true);
     const [error, setError] = useState(null);
     const [currentPage, setCurrentPage] = useState(0);
+    const initialDataRef = useRef(initialData);
 
     const loadLogs = useCallback(async (page) => {
         try {
             setIsLoading(true);
-            const data = await apiFetch(`${API_BASE_URL}/api/admin/audit-logs?page=${page}&size=15`, { headers: { 'Authorization': `Bearer ${token}` } });
+            const data = await apiFetch(`${API_BASE_URL}/api/admin/audit-logs?page=${page}&size=${AUDIT_PAGE_SIZE}`, { headers: { 'Authorization': `Bearer ${token}` } });
             setLogData(data);
             setError(null);
         } catch (err) {
@@ -264,6 +279,15 @@ const AuditLogView = ({ token }) => {
     }, [token]);
 
     useEffect(() => {
+        // The dashboard's first load already holds the first page.
+        const initial = initialDataRef.current;
+        initialDataRef.current = null;
+        if (initial && currentPage === 0) {
+            setLogData(initial);
+            setIsLoading(false);
+            onInitialDataUsed('auditLogs');
+            return;
+        }
         loadLogs(currentPage);
     }, [currentPage, loadLogs]);
 
@@ -360,27 +384,70 @@ const AddUserForm = ({ token, onUserAdded, onCancel }) => {
     );
 };
 
-const UserManagementView = ({ token, refreshData }) => {
+// Users are fetched a page at a time; search, role filter and sorting are applied by the server.
+const USER_PAGE_SIZE = 50;
+
+const UserManagementView = ({ token, refreshData, initialData, onInitialDataUsed }) => {
     const [users, setUsers] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [search, setSearch] = useState('');
+    const [debouncedSearch, setDebouncedSearch] = useState('');
+    const [roleFilter, setRoleFilter] = useState('');
+    const [sortDirection, setSortDirection] = useState('asc');
     const [isLoading, setIsLoading] = useState(true);
     const [error, setError] = useState(null);
     const [showAddUser, setShowAddUser] = useState(false);
     const [modalState, setModalState] = useState({ type: null, context: null });
+    const initialDataRef = useRef(initialData);
+
+    useEffect(() => {
+        const timeout = setTimeout(() => setDebouncedSearch(search.trim()), 300);
+        return () => clearTimeout(timeout);
+    }, [search]);
+
+    const fetchUserPage = useCallback(async (cursor) => {
+        const params = new URLSearchParams({ sort: 'email', direction: sortDirection, limit: USER_PAGE_SIZE });
+        if (debouncedSearch) params.set('search', debouncedSearch);
+        if (roleFilter) params.set('role', roleFilter);
+        if (cursor) params.set('cursor', cursor);
+        return apiFetch(`${API_BASE_URL}/api/admin/users?${params}`, { headers: { 'Authorization': `Bearer ${token}` } });
+    }, [token, debouncedSearch, roleFilter, sortDirection]);
 
     const loadUsers = useCallback(async () => {
         try {
             setIsLoading(true);
-            const userData = await apiFetch(`${API_BASE_URL}/api/admin/users`, { headers: { 'Authorization': `Bearer ${token}` } });
-            setUsers(userData);
+            const page = await fetchUserPage(null);
+            setUsers(page.users);
+            setNextCursor(page.nextCursor);
             setError(null);
         } catch (err) {
             setError(err.message);
         } finally {
             setIsLoading(false);
         }
-    }, [token]);
+    }, [fetchUserPage]);
 
-    useEffect(() => { loadUsers(); }, [loadUsers]);
+    const loadMoreUsers = async () => {
+        try {
+            const page = await fetchUserPage(nextCursor);
+            setUsers(current => [...current, ...page.users]);
+            setNextCursor(page.nextCursor);
+        } catch (err) { alert(err.message); }
+    };
+
+    useEffect(() => {
+        // The dashboard's first load already holds the first page with the default filters.
+        const initial = initialDataRef.current;
+        initialDataRef.current = null;
+        if (initial) {
+            setUsers(initial.users);
+            setNextCursor(initial.nextCursor);
+            setIsLoading(false);
+            onInitialDataUsed('users');
+            return;
+        }
+        loadUsers();
+    }, [loadUsers]);
     
     const handleResetPin = (userId, userRole) => {
         setModalState({ type: 'resetPin', context: { userId, userRole } });
@@ -441,11 +508,22 @@ const UserManagementView = ({ token, refreshData }) => {
                     </button>
                 </div>
                 {showAddUser && <AddUserForm token={token} onUserAdded={() => { setShowAddUser(false); loadUsers(); refreshData(); }} onCancel={() => setShowAddUser(false)} />}
+                <div className="flex space-x-4 mt-4">
+                    <input type="search" value={search} onChange={(e) => setSearch(e.target.value)} placeholder="Search by email..." className="flex-1 px-3 py-2 border rounded-md" />
+                    <select value={roleFilter} onChange={(e) => setRoleFilter(e.target.value)} className="px-3 py-2 border rounded-md">
+                        <option value="">All roles</option>
+                        <option value="ROLE_EMPLOYEE">Employees</option>
+                        <option value="ROLE_ADMIN">Admins</option>
+                    </select>
+                </div>
                 {isLoading ? <p>Loading...</p> : error ? <p className="text-red-500">{error}</p> : (
+                    <>
                      <table className="min-w-full bg-white mt-4">
                         <thead className="bg-gray-200">
                             <tr>
-                                <th className="text-left py-2 px-4">Email</th>
+                                <th className="text-left py-2 px-4 cursor-pointer select-none" onClick={() => setSortDirection(sortDirection === 'asc' ? 'desc' : 'asc')}>
+                                    Email {sortDirection === 'asc' ? '\u25B2' : '\u25BC'}
+                                </th>
                                 <th className="text-left py-2 px-4">Role</th>
                                 <th className="text-center py-2 px-4">Actions</th>
                             </tr>
@@ -463,25 +541,69 @@ const UserManagementView = ({ token, refreshData }) => {
                             ))}
                         </tbody>
                      </table>
+                     {nextCursor && (
+                        <div className="text-center mt-4">
+                            <button onClick={loadMoreUsers} className="px-4 py-2 text-gray-700 bg-gray-200 rounded-md hover:bg-gray-300">Load more</button>
+                        </div>
+                     )}
+                    </>
                 )}
             </div>
         </>
     );
 };
 
+// Export formats supported by the backend, keyed by the value of the "format" query parameter.
+const EXPORT_FORMATS = {
+    'csv': { label: 'CSV', extension: '.csv' },
+    'csv.gz': { label: 'CSV (gzip)', extension: '.csv.gz' },
+    'ndjson': { label: 'NDJSON', extension: '.ndjson' },
+    'xlsx': { label: 'Excel (XLSX)', extension: '.xlsx' },
+};
+
 const ExportsView = ({ token }) => {
     const [auditStartDate, setAuditStartDate] = useState('');
     const [auditEndDate, setAuditEndDate] = useState('');
+    const [format, setFormat] = useState('csv');
+    const [job, setJob] = useState(null);
+    const pollRef = useRef(null);
 
-    const handleExport = (start, end, type) => {
-        const query = new URLSearchParams({
-            startDate: start.toISOString().slice(0, 19),
-            endDate: end.toISOString().slice(0, 19),
-        }).toString();
-        
-        const url = `${API_BASE_URL}/api/admin/${type}/export?${query}`;
-        const filename = `${type}_export_${start.toISOString().split('T')[0]}_to_${end.toISOString().split('T')[0]}.csv`;
-        downloadFile(url, filename, token);
+    useEffect(() => () => clearInterval(pollRef.current), []);
+
+    // Large ranges run as a background job on the server; poll its progress, then download the file.
+    const handleExport = async (start, end, type) => {
+        const filename = `${type}_export_${start.toISOString().split('T')[0]}_to_${end.toISOString().split('T')[0]}${EXPORT_FORMATS[format].extension}`;
+        try {
+            const submitted = await apiFetch(`${API_BASE_URL}/api/admin/exports`, {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json', 'Authorization': `Bearer ${token}` },
+                body: JSON.stringify({
+                    type: type === 'audit-logs' ? 'AUDIT_LOGS' : 'TIMESHEETS',
+                    format,
+                    startDate: start.toISOString().slice(0, 19),
+                    endDate: end.toISOString().slice(0, 19),
+                })
+            });
+            setJob(submitted);
+            clearInterval(pollRef.current);
+            pollRef.current = setInterval(async () => {
+                try {
+                    const current = await apiFetch(`${API_BASE_URL}/api/admin/exports/${submitted.id}`, { headers: { 'Authorization': `Bearer ${token}` } });
+                    setJob(current);
+                    if (current.status === 'COMPLETED') {
+                        clearInterval(pollRef.current);
+                        downloadFile(`${API_BASE_URL}/api/admin/exports/${submitted.id}/download`, filename, token);
+                    } else if (current.status === 'FAILED') {
+                        clearInterval(pollRef.current);
+                    }
+                } catch (err) {
+                    clearInterval(pollRef.current);
+                    alert(`Export failed: ${err.message}`);
+                }
+            }, 2000);
+        } catch (err) {
+            alert(`Export failed: ${err.message}`);
+        }
     };
 
     const handleExportCustomRange = (type, startDate, endDate) => {
@@ -505,8 +627,18 @@ const ExportsView = ({ token }) => {
                         <input type="date" value={auditStartDate} onChange={e => setAuditStartDate(e.target.value)} className="p-2 border rounded"/>
                         <span>to</span>
                         <input type="date" value={auditEndDate} onChange={e => setAuditEndDate(e.target.value)} className="p-2 border rounded"/>
-                        <button onClick={() => handleExportCustomRange('audit-logs', auditStartDate, auditEndDate)} disabled={!auditStartDate || !auditEndDate} className="px-4 py-2 text-white bg-purple-600 rounded-md hover:bg-purple-700 disabled:bg-gray-400">Export Audit Log Range</button>
+                        <select value={format} onChange={e => setFormat(e.target.value)} className="p-2 border rounded bg-white">
+                            {Object.entries(EXPORT_FORMATS).map(([value, { label }]) => <option key={value} value={value}>{label}</option>)}
+                        </select>
+                        <button onClick={() => handleExportCustomRange('audit-logs', auditStartDate, auditEndDate)} disabled={!auditStartDate || !auditEndDate || (job && (job.status === 'QUEUED' || job.status === 'RUNNING'))} className="px-4 py-2 text-white bg-purple-600 rounded-md hover:bg-purple-700 disabled:bg-gray-400">Export Audit Log Range</button>
                     </div>
+                    {job && (
+                        <p className="mt-3 text-sm text-gray-600">
+                            {job.status === 'FAILED' ? `Export failed: ${job.error}` :
+                             job.status === 'COMPLETED' ? `Export ready (${job.rowsProcessed} rows).` :
+                             `Exporting... ${job.rowsProcessed}${job.totalRows != null ? ` of ~${job.totalRows}` : ''} rows${job.etaSeconds != null ? `, about ${job.etaSeconds}s left` : ''}`}
+                        </p>
+                    )}
                 </div>
             </div>
         </div>
@@ -519,36 +651,69 @@ const AdminDashboard = ({ token, onLogout }) => {
     const [isLoading, setIsLoading] = useState(true);
     const [error, setError] = useState(null);
     const [isMenuOpen, setIsMenuOpen] = useState(false);
-    
-    const loadUsers = useCallback(async () => {
+    // First-load data for the other views, from the same dashboard call. Each view takes its section once.
+    const [initialData, setInitialData] = useState({});
+
+    const fetchDashboard = useCallback((params) => apiFetch(
+        `${API_BASE_URL}/api/admin/dashboard?${new URLSearchParams(params)}`,
+        { headers: { 'Authorization': `Bearer ${token}` } }), [token]);
+
+    const loadDashboard = useCallback(async () => {
         try {
             setIsLoading(true);
-            const userData = await apiFetch(`${API_BASE_URL}/api/admin/users/statuses`, { headers: { 'Authorization': `Bearer ${token}` } });
-            setUsers(userData);
+            const data = await fetchDashboard({
+                sections: 'statuses,users,timesheet,auditLogs',
+                weekStartDate: toDateParam(getMonday(new Date())),
+                userLimit: USER_PAGE_SIZE,
+                auditSize: AUDIT_PAGE_SIZE,
+            });
+            setUsers(data.statuses);
+            setInitialData({
+                users: data.users,
+                timesheet: { weekStartDate: data.weekStartDate, rows: data.timesheet },
+                auditLogs: data.auditLogs,
+            });
             setError(null);
         } catch (err) {
             setError(err.message);
         } finally {
             setIsLoading(false);
         }
-    }, [token]);
+    }, [fetchDashboard]);
+
+    const loadUsers = useCallback(async () => {
+        try {
+            const data = await fetchDashboard({ sections: 'statuses' });
+            setUsers(data.statuses);
+            setError(null);
+        } catch (err) {
+            setError(err.message);
+        }
+    }, [fetchDashboard]);
+
+    const onInitialDataUsed = useCallback((section) => {
+        setInitialData(current => {
+            const { [section]: _used, ...rest } = current;
+            return rest;
+        });
+    }, []);
 
     useEffect(() => { 
-        loadUsers();
+        loadDashboard();
         const interval = setInterval(loadUsers, 30000);
         return () => clearInterval(interval);
-    }, [loadUsers]);
+    }, [loadDashboard, loadUsers]);
 
     const renderView = () => {
         switch (currentView) {
             case 'Live Status':
                 return <LiveStatusView users={users} isLoading={isLoading} error={error} />;
             case 'Timesheets':
-                return <TimesheetView token={token} />;
+                return <TimesheetView token={token} initialData={initialData.timesheet} onInitialDataUsed={onInitialDataUsed} />;
             case 'User Management':
-                return <UserManagementView token={token} refreshData={loadUsers} />;
+                return <UserManagementView token={token} refreshData={loadUsers} initialData={initialData.users} onInitialDataUsed={onInitialDataUsed} />;
             case 'Audit Logs':
-                return <AuditLogView token={token} />;
+                return <AuditLogView token={token} initialData={initialData.auditLogs} onInitialDataUsed={onInitialDataUsed} />;
             case 'Exports':
                 return <ExportsView token={token} />;
             default:
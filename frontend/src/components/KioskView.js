@@ -4,6 +4,19 @@ import companyLogo from '../logo.svg'; // Import the logo directly
 // API URL constant
 const API_BASE_URL = ''; 
 
+/**
+ * Returns this kiosk's stable identifier, creating it on first use.
+ * The backend throttles failed PIN attempts per kiosk.
+ */
+const getKioskId = () => {
+    let kioskId = localStorage.getItem('kioskId');
+    if (!kioskId) {
+        kioskId = `${Date.now().toString(36)}-${Math.random().toString(36).slice(2, 10)}`;
+        localStorage.setItem('kioskId', kioskId);
+    }
+    return kioskId;
+};
+
 /**
  * A single button component for the on-screen keypad.
  */
@@ -54,7 +67,7 @@ const KioskView = () => {
         try {
             const response = await fetch(`${API_BASE_URL}/api/auth/kiosk/login`, {
                 method: 'POST',
-                headers: { 'Content-Type': 'application/json' },
+                headers: { 'Content-Type': 'application/json', 'X-Kiosk-Id': getKioskId() },
                 body: JSON.stringify({ pin }),
             });
             const data = await response.json();
@@ -11,7 +11,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main entry point for the Spring Boot application.
- * @EnableScheduling is included to support the weekly timesheet reset task.
+ * @EnableScheduling drives the cluster job poller (ClusterJobScheduler) and node-local housekeeping tasks,
+ * on the pool configured in SchedulingConfig.
  */
 @SpringBootApplication
 @EnableScheduling
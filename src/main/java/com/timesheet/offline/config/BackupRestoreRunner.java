@@ -0,0 +1,47 @@
+package com.timesheet.offline.config;
+
+import com.timesheet.offline.service.BackupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * Restores a backup into a fresh database. Start the application with 'backup.restore-from' set to a
+ * backup directory; on startup, after Hibernate has created the tables and before anything is seeded,
+ * the newest backup chain in it is loaded. It only runs while the database has no users, so leaving the
+ * property set is harmless.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class BackupRestoreRunner implements ApplicationRunner {
+
+    private final BackupService backupService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${backup.restore-from:}")
+    private String restoreFrom;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (restoreFrom.isBlank()) {
+            return;
+        }
+        Long existingUsers = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        if (existingUsers != null && existingUsers > 0) {
+            System.out.println("Skipping restore from backup: the database already has users.");
+            return;
+        }
+        long started = System.currentTimeMillis();
+        int sequence = backupService.restore(Paths.get(restoreFrom));
+        System.out.println("Restored backup " + sequence + " from " + restoreFrom + " in "
+                + (System.currentTimeMillis() - started) + " ms.");
+    }
+}
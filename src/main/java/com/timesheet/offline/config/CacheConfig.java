@@ -0,0 +1,83 @@
+package com.timesheet.offline.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures Hibernate's second-level cache for the User, Site and Kiosk entities and their lookup queries.
+ * Caches are Caffeine-backed JCache regions with a bounded size and a TTL, local to each node. Hibernate keeps
+ * them consistent with the node's own writes: entity entries are updated on write (READ_WRITE), and cached
+ * query results are invalidated whenever the node commits a change to the 'users' table. Changes made by
+ * another node are not seen that way; UserCacheInvalidator evicts the users they touch within a few seconds.
+ * Sites and kiosks change rarely enough that the TTL bounds how long another node serves an old binding.
+ */
+@Configuration
+public class CacheConfig {
+
+    public static final String USERS_REGION = "users";
+    public static final String USER_QUERIES_REGION = "user-queries";
+    public static final String SITES_REGION = "sites";
+    public static final String SITE_QUERIES_REGION = "site-queries";
+    static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+    static final String QUERY_RESULTS_REGION = "default-query-results-region";
+
+    @Value("${cache.users.max-size:10000}")
+    private long usersMaxSize;
+
+    @Value("${cache.users.ttl-minutes:60}")
+    private long usersTtlMinutes;
+
+    @Value("${cache.user-queries.max-size:1000}")
+    private long userQueriesMaxSize;
+
+    @Value("${cache.user-queries.ttl-minutes:10}")
+    private long userQueriesTtlMinutes;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+        createRegion(cacheManager, USERS_REGION, usersMaxSize, usersTtlMinutes);
+        createRegion(cacheManager, USER_QUERIES_REGION, userQueriesMaxSize, userQueriesTtlMinutes);
+        createRegion(cacheManager, SITES_REGION, usersMaxSize, usersTtlMinutes);
+        createRegion(cacheManager, SITE_QUERIES_REGION, userQueriesMaxSize, userQueriesTtlMinutes);
+        createRegion(cacheManager, QUERY_RESULTS_REGION, userQueriesMaxSize, userQueriesTtlMinutes);
+        // Table timestamps must outlive every cached query result, otherwise stale results could be served.
+        createRegion(cacheManager, UPDATE_TIMESTAMPS_REGION, 10_000, 0);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", "true");
+            properties.put("hibernate.cache.use_query_cache", "true");
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put("hibernate.javax.cache.cache_manager", hibernateCacheManager);
+            properties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+            // Needed for the hit/miss counters reported by CacheStatisticsService.
+            properties.put("hibernate.generate_statistics", "true");
+        };
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, long maxSize, long ttlMinutes) {
+        if (cacheManager.getCache(name) != null) {
+            return; // The provider's default manager is shared per class loader, e.g. across test contexts.
+        }
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        if (ttlMinutes > 0) {
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MINUTES.toNanos(ttlMinutes)));
+        }
+        configuration.setStatisticsEnabled(true);
+        cacheManager.createCache(name, configuration);
+    }
+}
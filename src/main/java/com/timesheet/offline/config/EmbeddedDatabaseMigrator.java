@@ -0,0 +1,115 @@
+package com.timesheet.offline.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves a site from embedded storage to PostgreSQL. Start the application against PostgreSQL with
+ * 'storage.migrate-from-embedded' set to the old 'storage.embedded.path'; on startup, after Hibernate has
+ * created the tables, every table is copied over in one transaction and the id sequences are moved past the
+ * copied ids. It only runs while the PostgreSQL database has no users, so leaving the property set is harmless.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class EmbeddedDatabaseMigrator implements ApplicationRunner {
+
+    /**
+     * In foreign-key order. Job leases and runs are not copied: the cluster job poller may already be
+     * writing them, and the new deployment simply starts its schedules afresh.
+     */
+    private static final List<String> TABLES = List.of(
+            "sites", "kiosks", "users", "work_sessions", "clock_logs", "audit_logs", "timesheet_snapshots");
+
+    /** Tables with a generated 'id' column. */
+    private static final List<String> IDENTITY_TABLES = List.of(
+            "sites", "users", "work_sessions", "clock_logs", "audit_logs");
+
+    private static final int BATCH_ROWS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final StorageMode storageMode;
+
+    @Value("${storage.migrate-from-embedded:}")
+    private String sourcePath;
+
+    @Override
+    public void run(ApplicationArguments args) throws SQLException {
+        if (sourcePath.isBlank() || storageMode.isEmbedded()) {
+            return;
+        }
+        Long existingUsers = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        if (existingUsers != null && existingUsers > 0) {
+            System.out.println("Skipping migration from embedded storage: the database already has users.");
+            return;
+        }
+
+        String sourceUrl = ReplicaDataSourceConfig.embeddedJdbcUrl(sourcePath) + ";ACCESS_MODE_DATA=r";
+        try (Connection source = DriverManager.getConnection(sourceUrl, "sa", "")) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (String table : TABLES) {
+                    long rows = copyTable(source, table);
+                    System.out.println("Migrated " + rows + " rows of " + table + " from embedded storage.");
+                }
+                for (String table : IDENTITY_TABLES) {
+                    jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence('" + table + "', 'id'), "
+                            + "COALESCE(MAX(id), 0) + 1, false) FROM " + table, Long.class);
+                }
+            });
+        }
+    }
+
+    private long copyTable(Connection source, String table) {
+        try (Statement select = source.createStatement();
+             ResultSet rows = select.executeQuery("SELECT * FROM " + table)) {
+            ResultSetMetaData metaData = rows.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            List<String> columns = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                columns.add(metaData.getColumnName(i).toLowerCase());
+            }
+            String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + String.join(", ", columns.stream().map(column -> "?").toList()) + ")";
+
+            long copied = 0;
+            List<Object[]> batch = new ArrayList<>(BATCH_ROWS);
+            while (rows.next()) {
+                Object[] values = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = rows.getObject(i + 1);
+                }
+                batch.add(values);
+                if (batch.size() == BATCH_ROWS) {
+                    jdbcTemplate.batchUpdate(insert, batch);
+                    copied += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                copied += batch.size();
+            }
+            return copied;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to migrate table " + table + " from embedded storage: " + e.getMessage(), e);
+        }
+    }
+}
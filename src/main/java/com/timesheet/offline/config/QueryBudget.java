@@ -0,0 +1,20 @@
+package com.timesheet.offline.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The number of SQL statements a request to this endpoint is expected to need, including the authentication
+ * lookup. QueryBudgetFilter warns about requests that need more; endpoints without this annotation are held
+ * to 'queries.budget.default'.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface QueryBudget {
+
+    int value();
+}
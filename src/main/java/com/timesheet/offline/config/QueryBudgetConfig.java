@@ -0,0 +1,19 @@
+package com.timesheet.offline.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lets QueryCounter see the statements Hibernate sends. Counting is always on; it costs one thread-local
+ * lookup per statement, and nothing when no scope is open.
+ */
+@Configuration
+public class QueryBudgetConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCounter());
+    }
+}
@@ -0,0 +1,67 @@
+package com.timesheet.offline.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Counts the SQL statements of each request and logs a warning when a request needs more than its endpoint's
+ * budget: the @QueryBudget of the controller method, or 'queries.budget.default'. A request whose count grows
+ * with the data it returns usually runs a query per row (an N+1 pattern).
+ * Off unless 'queries.budget.enabled' is set. Runs before the security filters, so the budget includes the
+ * authentication lookup.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    @Value("${queries.budget.enabled:false}")
+    private boolean enabled;
+
+    @Value("${queries.budget.default:20}")
+    private int defaultBudget;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+
+        try (QueryCounter.Scope scope = QueryCounter.start()) {
+            filterChain.doFilter(request, response);
+
+            int budget = budgetOf(request);
+            if (scope.count() > budget) {
+                System.err.println("Request " + request.getMethod() + " " + request.getRequestURI() + " ran "
+                        + scope.count() + " SQL statements, over its budget of " + budget + ".");
+            }
+        }
+    }
+
+    private int budgetOf(HttpServletRequest request) {
+        // Set by the handler mapping once the request has been matched to a controller method.
+        if (request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handler) {
+            QueryBudget budget = handler.getMethodAnnotation(QueryBudget.class);
+            if (budget != null) {
+                return budget.value();
+            }
+        }
+        return defaultBudget;
+    }
+}
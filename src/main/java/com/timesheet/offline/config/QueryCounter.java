@@ -0,0 +1,100 @@
+package com.timesheet.offline.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Counts the SQL statements Hibernate sends from the current thread, so a request or a service call can be
+ * checked against a query budget (see QueryBudgetFilter and the query budget tests).
+ * <p>
+ * Registered as Hibernate's statement inspector by QueryBudgetConfig, so it sees every statement Hibernate
+ * prepares: JPQL and native queries, entity and lazy loads, inserts and updates. A JDBC batch counts once, and
+ * statements run through JdbcTemplate are not counted. Hibernate's statistics can't be used for this, since
+ * their counters are totals for the whole application.
+ * <p>
+ * Counting only happens inside a scope. Scopes nest, and a statement counts towards every open scope of its
+ * thread. Work handed to a pool is counted towards the caller's scopes when it is wrapped with propagate.
+ */
+public final class QueryCounter implements StatementInspector {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.count.incrementAndGet();
+        }
+        return sql;
+    }
+
+    /**
+     * Starts counting the statements of the current thread. Close the scope to stop.
+     */
+    public static Scope start() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return The number of statements the work sent.
+     */
+    public static long count(Runnable work) {
+        try (Scope scope = start()) {
+            work.run();
+            return scope.count();
+        }
+    }
+
+    /**
+     * Wraps work that will run on another thread, so its statements count towards the calling thread's scopes.
+     * Returns the work as it is when nothing is being counted.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> work) {
+        Scope caller = CURRENT.get();
+        if (caller == null) {
+            return work;
+        }
+        return () -> {
+            Scope previous = CURRENT.get();
+            CURRENT.set(caller);
+            try {
+                return work.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static void restore(Scope scope) {
+        if (scope != null) {
+            CURRENT.set(scope);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+        private final AtomicLong count = new AtomicLong();
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * @return The statements counted so far, including those of propagated work that has finished.
+         */
+        public long count() {
+            return count.get();
+        }
+
+        @Override
+        public void close() {
+            restore(parent);
+        }
+    }
+}
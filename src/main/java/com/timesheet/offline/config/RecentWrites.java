@@ -0,0 +1,40 @@
+package com.timesheet.offline.config;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Remembers when this node last committed a write that a following report must see: a punch or a user change.
+ * ReplicaRoutingDataSource answers reports from the primary until the staleness window has passed since then.
+ * Background and housekeeping transactions (outbox dispatch, job polling, throttle flushes) don't record here,
+ * otherwise they would keep every report off the replica.
+ */
+@Component
+public class RecentWrites {
+
+    private volatile long lastWriteNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    /**
+     * Records a write once the current transaction has committed, or right away outside a transaction.
+     */
+    public void recordAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lastWriteNanos = System.nanoTime();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lastWriteNanos = System.nanoTime();
+            }
+        });
+    }
+
+    /**
+     * @return Whether a write was recorded within the given window.
+     */
+    boolean isWithin(long windowNanos) {
+        return System.nanoTime() - lastWriteNanos <= windowNanos;
+    }
+}
@@ -0,0 +1,99 @@
+package com.timesheet.offline.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.nio.file.Paths;
+
+/**
+ * Splits database traffic between the primary and a read replica, each with its own, separately sized pool.
+ * Without 'datasource.replica.url' only the primary pool is created. The choice is made inside the bean
+ * method rather than with a condition, so AOT-processed builds still decide it at run time.
+ * <p>
+ * With 'storage.mode=embedded' the application instead uses a file-based H2 database in PostgreSQL mode
+ * at 'storage.embedded.path', through a small pool in the same JVM; the spring.datasource and replica
+ * settings are ignored.
+ */
+@Configuration
+public class ReplicaDataSourceConfig {
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties primaryProperties,
+                                 RecentWrites recentWrites,
+                                 @Value("${datasource.primary.pool-size:10}") int primaryPoolSize,
+                                 @Value("${datasource.primary.connection-timeout-ms:5000}") long primaryConnectionTimeoutMillis,
+                                 @Value("${datasource.replica.url:}") String replicaUrl,
+                                 @Value("${datasource.replica.username:${spring.datasource.username:}}") String replicaUsername,
+                                 @Value("${datasource.replica.password:${spring.datasource.password:}}") String replicaPassword,
+                                 @Value("${datasource.replica.pool-size:5}") int replicaPoolSize,
+                                 @Value("${datasource.replica.staleness-window-ms:2000}") long stalenessWindowMillis,
+                                 @Value("${storage.mode:postgres}") String storageMode,
+                                 @Value("${storage.embedded.path:./data/timesheet}") String embeddedPath,
+                                 @Value("${storage.embedded.pool-size:3}") int embeddedPoolSize) {
+        if (StorageMode.EMBEDDED.equalsIgnoreCase(storageMode)) {
+            return embeddedDataSource(embeddedPath, embeddedPoolSize);
+        }
+
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        primary.setMaximumPoolSize(primaryPoolSize);
+        // Fail fast when the database is down, so a kiosk punch falls back to the punch journal quickly.
+        primary.setConnectionTimeout(primaryConnectionTimeoutMillis);
+        if (replicaUrl.isBlank()) {
+            return primary;
+        }
+
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setJdbcUrl(replicaUrl);
+        replica.setUsername(replicaUsername);
+        replica.setPassword(replicaPassword);
+        replica.setMaximumPoolSize(replicaPoolSize);
+        replica.setReadOnly(true);
+        // Start even if the replica is down; the health check routes reads to the primary meanwhile.
+        replica.setInitializationFailTimeout(-1);
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, replica, recentWrites, stalenessWindowMillis);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * @param path The database file, without the ".mv.db" extension. Relative paths are resolved against the
+     *             working directory; H2 refuses paths like "data/timesheet" that are only implicitly relative.
+     */
+    static String embeddedJdbcUrl(String path) {
+        String absolutePath = Paths.get(path).toAbsolutePath().normalize().toString();
+        // Lower-case identifiers and PostgreSQL syntax, so the same entities and native statements work on both.
+        return "jdbc:h2:file:" + absolutePath + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+    }
+
+    private static DataSource embeddedDataSource(String path, int poolSize) {
+        HikariDataSource embedded = new HikariDataSource();
+        embedded.setPoolName("embedded");
+        embedded.setJdbcUrl(embeddedJdbcUrl(path));
+        embedded.setUsername("sa");
+        embedded.setPassword("");
+        // Connections are in-process and cheap; a couple are enough for a small site and keep the heap small.
+        embedded.setMaximumPoolSize(poolSize);
+        embedded.setMinimumIdle(1);
+        return embedded;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.health-check-ms:5000}")
+    public void checkReplicaHealth() {
+        if (routingDataSource != null) {
+            routingDataSource.checkReplicaHealth();
+        }
+    }
+}
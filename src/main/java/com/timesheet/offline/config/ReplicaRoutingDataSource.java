@@ -0,0 +1,90 @@
+package com.timesheet.offline.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Routes read-only service transactions to the replica pool and everything else to the primary.
+ * <p>
+ * A connection goes to the replica only when all of these hold:
+ * <ul>
+ *   <li>the current transaction is read-only and was started by a service method, or by a template from
+ *       {@link #reportTransaction} (repository-level read-only transactions, such as a bare findAll() on the
+ *       kiosk path, stay on the primary);</li>
+ *   <li>no punch or user change has committed on this node within the staleness window (see RecentWrites),
+ *       so a report that follows one is answered by the primary;</li>
+ *   <li>the last health check found the replica reachable.</li>
+ * </ul>
+ * Must be wrapped in a LazyConnectionDataSourceProxy so the routing decision is made after
+ * the transaction's read-only flag has been set.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+    private static final String SERVICE_PACKAGE = "com.timesheet.offline.service.";
+
+    private final DataSource replica;
+    private final RecentWrites recentWrites;
+    private final long stalenessWindowNanos;
+    private volatile boolean replicaHealthy = true;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, RecentWrites recentWrites, long stalenessWindowMillis) {
+        this.replica = replica;
+        this.recentWrites = recentWrites;
+        this.stalenessWindowNanos = stalenessWindowMillis * 1_000_000L;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        String transactionName = TransactionSynchronizationManager.getCurrentTransactionName();
+        boolean serviceRead = transactionName != null && transactionName.startsWith(SERVICE_PACKAGE);
+        boolean fresh = !recentWrites.isWithin(stalenessWindowNanos);
+        return serviceRead && fresh && replicaHealthy ? REPLICA : PRIMARY;
+    }
+
+    /**
+     * Creates a read-only transaction template for a report run programmatically. Such transactions are not
+     * named after a service method, so the template names them after the owning service instead.
+     * @param owner The service class in 'com.timesheet.offline.service' that runs the report.
+     */
+    public static TransactionTemplate reportTransaction(PlatformTransactionManager transactionManager, Class<?> owner) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.setName(owner.getName() + ".report");
+        return readOnly;
+    }
+
+    /**
+     * Probes the replica and updates its health flag. While it is down, all reads fall back to the primary.
+     */
+    public void checkReplicaHealth() {
+        try (Connection connection = replica.getConnection()) {
+            replicaHealthy = connection.isValid(2);
+        } catch (SQLException e) {
+            if (replicaHealthy) {
+                System.err.println("Read replica unavailable, routing reads to the primary: " + e.getMessage());
+            }
+            replicaHealthy = false;
+        }
+    }
+
+    public boolean isReplicaHealthy() {
+        return replicaHealthy;
+    }
+}
@@ -0,0 +1,46 @@
+package com.timesheet.offline.config;
+
+import com.timesheet.offline.service.AuditArchiveService;
+import com.timesheet.offline.service.BackupService;
+import com.timesheet.offline.service.ClusterJobScheduler;
+import com.timesheet.offline.service.ForgottenClockOutSweeper;
+import com.timesheet.offline.service.OutboxService;
+import com.timesheet.offline.service.TimesheetService;
+import com.timesheet.offline.service.UserPurgeService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the jobs that act on shared database state with the ClusterJobScheduler,
+ * so they run once per schedule no matter how many backend instances are deployed.
+ * The tasks are method references on the Spring proxies, so their @Transactional settings apply.
+ */
+@Configuration
+public class ScheduledJobsConfig {
+
+    @Bean
+    ApplicationRunner registerClusterJobs(ClusterJobScheduler scheduler,
+                                          TimesheetService timesheetService,
+                                          AuditArchiveService auditArchiveService,
+                                          ForgottenClockOutSweeper forgottenClockOutSweeper,
+                                          BackupService backupService,
+                                          UserPurgeService userPurgeService,
+                                          OutboxService outboxService,
+                                          @Value("${timesheet.weekly-reset.cron:0 0 0 * * MON}") String weeklyResetCron,
+                                          @Value("${audit.archive.cron:0 30 2 * * *}") String auditArchiveCron,
+                                          @Value("${sessions.auto-close.cron:0 */15 * * * *}") String autoCloseCron,
+                                          @Value("${backup.cron:0 5 * * * *}") String backupCron,
+                                          @Value("${users.purge.cron:0 */10 * * * *}") String userPurgeCron,
+                                          @Value("${outbox.prune.cron:0 20 * * * *}") String outboxPruneCron) {
+        return args -> {
+            scheduler.register("weekly-reset", weeklyResetCron, timesheetService::weeklyReset);
+            scheduler.register("audit-archive", auditArchiveCron, auditArchiveService::archiveOldLogs);
+            scheduler.register("forgotten-clock-out", autoCloseCron, forgottenClockOutSweeper::closeForgottenSessions);
+            scheduler.register("backup", backupCron, backupService::createBackup);
+            scheduler.register("user-purge", userPurgeCron, userPurgeService::purgeDeletedUsers);
+            scheduler.register("outbox-prune", outboxPruneCron, outboxService::pruneDispatchedEvents);
+        };
+    }
+}
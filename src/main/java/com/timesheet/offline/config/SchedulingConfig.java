@@ -0,0 +1,24 @@
+package com.timesheet.offline.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * The pool that runs @Scheduled tasks. Spring's default is a single thread, on which a task stuck waiting
+ * for the database (a flush, a health check) would delay every other task, including the punch journal
+ * replay that takes kiosks out of journal mode. The default size gives each of the node's @Scheduled
+ * tasks a thread of its own; cluster jobs run on their own thread (see ClusterJobScheduler).
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${spring.task.scheduling.pool.size:7}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        return scheduler;
+    }
+}
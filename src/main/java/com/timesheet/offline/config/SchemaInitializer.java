@@ -0,0 +1,120 @@
+package com.timesheet.offline.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Applies schema objects that JPA annotations cannot express, such as partial indexes,
+ * and one-off data backfills. Runs on startup after Hibernate has created or updated the tables.
+ * Every statement is idempotent, so it is safe to run on every boot. A failing statement fails startup:
+ * later statements rely on the earlier ones, and running without an index or constraint is not safe.
+ * Runs right after EmbeddedDatabaseMigrator, so migrated data is in place before the backfills.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class SchemaInitializer implements ApplicationRunner {
+
+    /** PostgreSQL-only statements; skipped in embedded mode, where single-node punch locking keeps shifts unique. */
+    private static final List<String> POSTGRES_STATEMENTS = List.of(
+            // Backfill the work sessions of CLOCK_INs recorded before the work_sessions table existed, before the
+            // unique index below exists. Matched pairs become closed sessions.
+            "INSERT INTO work_sessions (user_id, started_at, ended_at, duration_seconds, session_key) "
+                    + "SELECT i.user_id, i.timestamp, o.timestamp, "
+                    + "CAST(EXTRACT(EPOCH FROM (o.timestamp - i.timestamp)) AS BIGINT), i.session_id "
+                    + "FROM clock_logs i "
+                    + "JOIN clock_logs o ON o.session_id = i.session_id AND o.action = 'CLOCK_OUT' "
+                    + "WHERE i.action = 'CLOCK_IN' AND i.session_id IS NOT NULL "
+                    + "AND NOT EXISTS (SELECT 1 FROM work_sessions w WHERE w.session_key = i.session_id)",
+            // An unmatched CLOCK_IN followed by a later one was never closed; it is recorded as an auto-closed,
+            // zero-length session for review rather than left open.
+            "INSERT INTO work_sessions (user_id, started_at, ended_at, duration_seconds, session_key, auto_closed) "
+                    + "SELECT i.user_id, i.timestamp, i.timestamp, 0, i.session_id, TRUE "
+                    + "FROM clock_logs i "
+                    + "WHERE i.action = 'CLOCK_IN' AND i.session_id IS NOT NULL "
+                    + "AND NOT EXISTS (SELECT 1 FROM clock_logs o WHERE o.session_id = i.session_id AND o.action = 'CLOCK_OUT') "
+                    + "AND EXISTS (SELECT 1 FROM clock_logs l WHERE l.user_id = i.user_id AND l.action = 'CLOCK_IN' "
+                    + "AND (l.timestamp > i.timestamp OR (l.timestamp = i.timestamp AND l.id > i.id))) "
+                    + "AND NOT EXISTS (SELECT 1 FROM work_sessions w WHERE w.session_key = i.session_id)",
+            // Only a user's latest CLOCK_IN, if unmatched, is still open; ForgottenClockOutSweeper closes it
+            // with the credited hours if it is older than any real shift.
+            "INSERT INTO work_sessions (user_id, started_at, session_key) "
+                    + "SELECT i.user_id, i.timestamp, i.session_id "
+                    + "FROM clock_logs i "
+                    + "WHERE i.action = 'CLOCK_IN' AND i.session_id IS NOT NULL "
+                    + "AND NOT EXISTS (SELECT 1 FROM clock_logs o WHERE o.session_id = i.session_id AND o.action = 'CLOCK_OUT') "
+                    + "AND NOT EXISTS (SELECT 1 FROM clock_logs l WHERE l.user_id = i.user_id AND l.action = 'CLOCK_IN' "
+                    + "AND (l.timestamp > i.timestamp OR (l.timestamp = i.timestamp AND l.id > i.id))) "
+                    + "AND NOT EXISTS (SELECT 1 FROM work_sessions w WHERE w.session_key = i.session_id) "
+                    + "AND NOT EXISTS (SELECT 1 FROM work_sessions w WHERE w.user_id = i.user_id AND w.ended_at IS NULL)",
+            // Punches that raced before the unique index existed can have left a user with several open shifts.
+            // All but the latest are closed the same way, or the unique index below can't be built.
+            "UPDATE work_sessions SET ended_at = started_at, duration_seconds = 0, auto_closed = TRUE "
+                    + "WHERE ended_at IS NULL AND EXISTS (SELECT 1 FROM work_sessions l "
+                    + "WHERE l.user_id = work_sessions.user_id AND l.ended_at IS NULL "
+                    + "AND (l.started_at > work_sessions.started_at OR (l.started_at = work_sessions.started_at AND l.id > work_sessions.id)))",
+            // Finding a user's open shift (and all open shifts) must not scan closed history.
+            // The index is unique, so the database itself refuses a second open shift for the same user.
+            // The non-unique index it replaces is dropped only once it exists.
+            "CREATE UNIQUE INDEX IF NOT EXISTS idx_work_sessions_open_unique ON work_sessions (user_id) WHERE ended_at IS NULL",
+            "DROP INDEX IF EXISTS idx_work_sessions_open",
+            // Lets the forgotten clock-out sweeper find the oldest open shifts without scanning closed history.
+            "CREATE INDEX IF NOT EXISTS idx_work_sessions_open_started ON work_sessions (started_at) WHERE ended_at IS NULL",
+            // Deleted users stay in the table until they are purged, so lookups of active users use partial indexes.
+            // PIN lookups per site:
+            "CREATE INDEX IF NOT EXISTS idx_users_active_site_role ON users (site_id, role) WHERE deleted_at IS NULL",
+            "DROP INDEX IF EXISTS idx_users_site_role",
+            // The user directory sorts and pages by lower(email), and searches it by prefix. LIKE 'abc%' can
+            // only use an index with text_pattern_ops, which in turn can't serve ORDER BY, hence two indexes.
+            "CREATE INDEX IF NOT EXISTS idx_users_email_lower ON users (lower(email), id) WHERE deleted_at IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_users_email_prefix ON users (lower(email) text_pattern_ops) WHERE deleted_at IS NULL",
+            // Lets the purge job find deleted users without scanning the active ones.
+            "CREATE INDEX IF NOT EXISTS idx_users_deleted ON users (deleted_at) WHERE deleted_at IS NOT NULL"
+    );
+
+    /** Embedded-only equivalents of PostgreSQL partial indexes, which H2 doesn't support. */
+    private static final List<String> EMBEDDED_STATEMENTS = List.of(
+            // PIN lookups per site; deleted users are few enough to be filtered after the lookup.
+            "CREATE INDEX IF NOT EXISTS idx_users_site_role ON users (site_id, role)"
+    );
+
+    /** Statements that run on both PostgreSQL and embedded H2. */
+    private static final List<String> STATEMENTS = List.of(
+            // Installs from before sites existed get a single site that owns all existing employees and their history.
+            "INSERT INTO sites (code, name) SELECT 'MAIN', 'Main site' WHERE NOT EXISTS (SELECT 1 FROM sites)",
+            "UPDATE users SET site_id = (SELECT MIN(id) FROM sites) WHERE site_id IS NULL AND role = 'ROLE_EMPLOYEE'",
+            "UPDATE work_sessions SET site_id = (SELECT u.site_id FROM users u WHERE u.id = work_sessions.user_id) "
+                    + "WHERE site_id IS NULL AND EXISTS (SELECT 1 FROM users u WHERE u.id = work_sessions.user_id AND u.site_id IS NOT NULL)",
+            "UPDATE clock_logs SET site_id = (SELECT u.site_id FROM users u WHERE u.id = clock_logs.user_id) "
+                    + "WHERE site_id IS NULL AND EXISTS (SELECT 1 FROM users u WHERE u.id = clock_logs.user_id AND u.site_id IS NOT NULL)",
+            // Outbox events are timestamped by the database, so every node measures their age with the same clock.
+            "ALTER TABLE outbox_events ALTER COLUMN created_at SET DEFAULT LOCALTIMESTAMP"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageMode storageMode;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        execute(storageMode.isEmbedded() ? EMBEDDED_STATEMENTS : POSTGRES_STATEMENTS);
+        execute(STATEMENTS);
+    }
+
+    private void execute(List<String> statements) {
+        for (String statement : statements) {
+            try {
+                jdbcTemplate.execute(statement);
+            } catch (DataAccessException e) {
+                throw new IllegalStateException("Schema initialization statement failed: " + statement, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.timesheet.offline.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.export.ExportFormat;
+import com.timesheet.offline.export.RowWriter;
+import com.timesheet.offline.model.Role;
+import com.timesheet.offline.repository.UserRepository;
+import com.timesheet.offline.repository.WorkSessionRepository;
+import com.timesheet.offline.service.AdminService;
+import com.timesheet.offline.service.SiteService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Exercises the kiosk and report code paths once the application has started, so that the
+ * classes are loaded and the JIT has compiled the hot methods before the first real punch.
+ * Runs as the last ApplicationRunner; Spring Boot only reports the readiness state as
+ * ACCEPTING_TRAFFIC after all runners have finished, so /actuator/health/readiness stays
+ * down until the warm-up is done. Nothing is written to the database.
+ * <p>
+ * With 'startup.exit-after-warmup' set, the application exits after the warm-up. The Docker
+ * entrypoint uses this as the training run that records the class-data-sharing archive.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final String WARMUP_PIN = "0000";
+
+    private final UserRepository userRepository;
+    private final WorkSessionRepository workSessionRepository;
+    private final AdminService adminService;
+    private final SiteService siteService;
+    private final PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+    private final ConfigurableApplicationContext applicationContext;
+
+    @Value("${startup.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${startup.warmup.iterations:50}")
+    private int iterations;
+
+    @Value("${startup.warmup.max-seconds:20}")
+    private long maxSeconds;
+
+    @Value("${startup.exit-after-warmup:false}")
+    private boolean exitAfterWarmup;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.nanoTime();
+        int completed = 0;
+        if (enabled) {
+            long deadline = started + maxSeconds * 1_000_000_000L;
+            String pinHash = passwordEncoder.encode(WARMUP_PIN);
+            try {
+                while (completed < iterations && System.nanoTime() < deadline) {
+                    exerciseKioskPath(pinHash);
+                    exerciseReportPaths();
+                    exerciseExportWriters();
+                    completed++;
+                }
+            } catch (RuntimeException | IOException e) {
+                System.err.println("Startup warm-up stopped early: " + e.getMessage());
+            }
+        }
+
+        System.out.printf("Startup warm-up ran %d iterations in %d ms; JVM uptime %d ms, RSS %s%n",
+                completed, (System.nanoTime() - started) / 1_000_000,
+                ManagementFactory.getRuntimeMXBean().getUptime(), residentSetSize());
+
+        if (exitAfterWarmup) {
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    /**
+     * Mirrors the lookups of AuthService.handlePinClockAction without recording a punch.
+     */
+    private void exerciseKioskPath(String pinHash) {
+        userRepository.findAllByRoleAndSiteId(Role.ROLE_EMPLOYEE, siteService.getOnlySiteId());
+        passwordEncoder.matches(WARMUP_PIN, pinHash);
+        workSessionRepository.findFirstByUserIdAndEndedAtIsNull(-1L);
+        workSessionRepository.findTopByUserIdOrderByStartedAtDesc(-1L);
+    }
+
+    private void exerciseReportPaths() throws IOException {
+        LocalDate weekStart = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        objectMapper.writeValueAsBytes(adminService.getWeeklyTimesheet(weekStart, null));
+        objectMapper.writeValueAsBytes(adminService.getUserStatuses(null));
+        objectMapper.writeValueAsBytes(adminService.getNotifications());
+        objectMapper.writeValueAsBytes(adminService.getAuditLogs(null, PageRequest.of(0, 20)));
+    }
+
+    private void exerciseExportWriters() throws IOException {
+        for (ExportFormat format : ExportFormat.values()) {
+            try (RowWriter writer = format.open(OutputStream.nullOutputStream(), objectMapper)) {
+                writer.writeHeader("LogID", "UserEmail", "Timestamp (UTC)", "DurationHours");
+                for (int i = 0; i < 100; i++) {
+                    writer.writeRow((long) i, "warmup@system.local", "2024-01-01T00:00:00Z", "8.00");
+                }
+            }
+        }
+    }
+
+    private static String residentSetSize() {
+        try {
+            return Files.readAllLines(Path.of("/proc/self/status")).stream()
+                    .filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> line.substring("VmRSS:".length()).trim())
+                    .findFirst()
+                    .orElse("unknown");
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+}
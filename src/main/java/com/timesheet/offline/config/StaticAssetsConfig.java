@@ -0,0 +1,105 @@
+package com.timesheet.offline.config;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the built React frontend from 'frontend.dir' with Tomcat's DefaultServlet instead of Spring MVC.
+ * DefaultServlet sends large files with sendfile (no copy through the JVM heap), answers conditional
+ * requests from its ETags, and picks the .br or .gz variant produced at build time (see
+ * frontend/scripts/precompress.js) when the browser accepts it.
+ * <p>
+ * Content-hashed files under /static/ never change, so they are cached for a year as immutable;
+ * index.html and the other unhashed files are cached briefly and then revalidated with their ETag.
+ * Without a 'frontend.dir', nothing here is active and Spring Boot's default static resource handling applies.
+ * The paths must also be listed in SecurityConfig.webSecurityCustomizer.
+ */
+@Configuration
+public class StaticAssetsConfig implements WebMvcConfigurer {
+
+    private static final String[] FRONTEND_MAPPINGS = {
+            "/index.html",
+            "/favicon.ico",
+            "/manifest.json",
+            "/logo.png",
+            "/logo192.png",
+            "/logo512.png",
+            "/static/*"
+    };
+
+    /** Matches the content hash that the React build puts in file names, e.g. main.3f2a1b9c.js. */
+    private static final Pattern HASHED_FILE = Pattern.compile("^/static/.*\\.[0-9a-f]{8,}\\.[^/]+$");
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    @Value("${frontend.dir:}")
+    private String frontendDir;
+
+    @Value("${frontend.index-max-age-seconds:60}")
+    private long indexMaxAgeSeconds;
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> frontendDocumentRoot() {
+        return factory -> {
+            if (isFrontendAvailable()) {
+                factory.setDocumentRoot(new File(frontendDir));
+            }
+        };
+    }
+
+    @Bean
+    public ServletRegistrationBean<DefaultServlet> frontendServlet() {
+        ServletRegistrationBean<DefaultServlet> registration = new ServletRegistrationBean<>(new DefaultServlet(), FRONTEND_MAPPINGS);
+        registration.setName("frontend");
+        registration.addInitParameter("precompressed", "br=.br,gzip=.gz");
+        registration.addInitParameter("listings", "false");
+        registration.setLoadOnStartup(1);
+        registration.setEnabled(isFrontendAvailable());
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<Filter> frontendCacheHeaders() {
+        String revalidate = "public, max-age=" + indexMaxAgeSeconds + ", must-revalidate";
+        Filter filter = (request, response, chain) -> {
+            String path = ((HttpServletRequest) request).getRequestURI();
+            String cacheControl = HASHED_FILE.matcher(path).matches() ? IMMUTABLE : revalidate;
+            ((HttpServletResponse) response).setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            chain.doFilter(request, response);
+        };
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>(filter);
+        registration.addServletRegistrationBeans(frontendServlet());
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.FORWARD);
+        registration.setEnabled(isFrontendAvailable());
+        return registration;
+    }
+
+    /**
+     * Forwards the site root to index.html, so it is served by the frontend servlet as well.
+     */
+    @Override
+    public void addViewControllers(ViewControllerRegistry registry) {
+        if (isFrontendAvailable()) {
+            registry.addViewController("/").setViewName("forward:/index.html");
+        }
+    }
+
+    private boolean isFrontendAvailable() {
+        return !frontendDir.isBlank() && new File(frontendDir, "index.html").isFile();
+    }
+}
@@ -0,0 +1,23 @@
+package com.timesheet.offline.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Whether the application runs against PostgreSQL (the default) or an embedded, file-based H2 database
+ * ('storage.mode=embedded'). A few statements are PostgreSQL-only, such as partial indexes and data-modifying
+ * CTEs; code that uses them checks this and falls back to portable SQL.
+ * A plain property rather than a Spring profile, so AOT-processed builds still decide it at run time.
+ */
+@Component
+public class StorageMode {
+
+    public static final String EMBEDDED = "embedded";
+
+    @Value("${storage.mode:postgres}")
+    private String mode;
+
+    public boolean isEmbedded() {
+        return EMBEDDED.equalsIgnoreCase(mode);
+    }
+}
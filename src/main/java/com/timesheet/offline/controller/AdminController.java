@@ -1,14 +1,25 @@
 package com.timesheet.offline.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.config.QueryBudget;
 import com.timesheet.offline.dto.*;
+import com.timesheet.offline.export.ExportFormat;
+import com.timesheet.offline.export.RowWriter;
+import com.timesheet.offline.model.Role;
 import com.timesheet.offline.service.AdminService;
+import com.timesheet.offline.service.CacheStatisticsService;
+import com.timesheet.offline.service.ClusterJobScheduler;
+import com.timesheet.offline.service.DashboardService;
+import com.timesheet.offline.service.OccupancyService;
 import com.timesheet.offline.service.TimesheetService;
+import com.timesheet.offline.service.TimesheetSnapshotService;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +28,7 @@ import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Controller for handling all administrative actions.
@@ -28,30 +40,87 @@ public class AdminController {
 
     private final AdminService adminService;
     private final TimesheetService timesheetService;
+    private final ObjectMapper objectMapper;
+    private final CacheStatisticsService cacheStatisticsService;
+    private final ClusterJobScheduler clusterJobScheduler;
+    private final OccupancyService occupancyService;
+    private final TimesheetSnapshotService timesheetSnapshotService;
+    private final DashboardService dashboardService;
+
+    /**
+     * Everything the admin dashboard shows on its first load, in one call,
+     * e.g. ?sections=statuses,users,auditLogs&weekStartDate=2024-01-01.
+     * @param sections Any of users, statuses, notifications, timesheet and auditLogs; all of them if omitted.
+     * @param weekStartDate The timesheet week; defaults to the current week.
+     * @param userLimit The size of the first user directory page.
+     * @param auditSize The size of the first audit log page.
+     */
+    @GetMapping("/dashboard")
+    public ResponseEntity<DashboardDto> getDashboard(
+            @RequestParam(required = false) List<String> sections,
+            @RequestParam(required = false) Long siteId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate weekStartDate,
+            @RequestParam(defaultValue = "50") int userLimit,
+            @RequestParam(defaultValue = "20") int auditSize) {
+        return ResponseEntity.ok(dashboardService.getDashboard(DashboardService.parseSections(sections),
+                siteId, weekStartDate, userLimit, auditSize));
+    }
 
     /**
      * --- NEW ENDPOINT ---
      * Endpoint to retrieve a paginated list of audit logs.
+     * @param siteId Optionally limits the logs to one site.
      * @param pageable The pagination information (e.g., ?page=0&size=20).
      * @return A paginated list of audit logs.
      */
     @GetMapping("/audit-logs")
-    public ResponseEntity<Page<AuditLogDto>> getAuditLogs(Pageable pageable) {
-        return ResponseEntity.ok(adminService.getAuditLogs(pageable));
+    @QueryBudget(3)
+    public ResponseEntity<Page<AuditLogDto>> getAuditLogs(@RequestParam(required = false) Long siteId, Pageable pageable) {
+        return ResponseEntity.ok(adminService.getAuditLogs(siteId, pageable));
     }
 
     @GetMapping("/timesheets")
     public ResponseEntity<List<WeeklyTimesheetDto>> getWeeklyTimesheet(
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate weekStartDate) {
-        return ResponseEntity.ok(adminService.getWeeklyTimesheet(weekStartDate));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate weekStartDate,
+            @RequestParam(required = false) Long siteId) {
+        return ResponseEntity.ok(adminService.getWeeklyTimesheet(weekStartDate, siteId));
+    }
+
+    /**
+     * Drops the stored timesheets of the week containing the given day, after its data has been corrected,
+     * so the next request recomputes them.
+     */
+    @DeleteMapping("/timesheets/snapshots")
+    public ResponseEntity<Void> invalidateTimesheetSnapshots(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        timesheetSnapshotService.invalidateWeekContaining(day);
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/users/statuses")
-    public ResponseEntity<List<UserStatusDto>> getUserStatuses() {
-        return ResponseEntity.ok(adminService.getUserStatuses());
+    @QueryBudget(2)
+    public ResponseEntity<List<UserStatusDto>> getUserStatuses(@RequestParam(required = false) Long siteId) {
+        return ResponseEntity.ok(adminService.getUserStatuses(siteId));
     }
     
+    /**
+     * Headcount over time, e.g. ?from=2024-01-01T00:00:00&to=2024-02-01T00:00:00&bucketMinutes=15.
+     * @param siteId Optionally limits the count to one site.
+     * @param role Optionally limits the count to users with one role.
+     * @return The peak and average headcount per bucket.
+     */
+    @GetMapping("/analytics/occupancy")
+    public ResponseEntity<OccupancyDto> getOccupancy(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "15") int bucketMinutes,
+            @RequestParam(required = false) Long siteId,
+            @RequestParam(required = false) Role role) {
+        return ResponseEntity.ok(occupancyService.getOccupancy(from, to, bucketMinutes, siteId, role));
+    }
+
     @GetMapping("/notifications")
+    @QueryBudget(2)
     public ResponseEntity<List<NotificationDto>> getNotifications() {
         return ResponseEntity.ok(adminService.getNotifications());
     }
@@ -61,9 +130,22 @@ public class AdminController {
         return new ResponseEntity<>(adminService.createUser(request), HttpStatus.CREATED);
     }
 
+    /**
+     * Pages through the user directory, e.g. ?search=ann&role=ROLE_EMPLOYEE&sort=email&limit=50.
+     * @param search Optional case-insensitive email prefix.
+     * @param cursor The nextCursor of the previous page; omit for the first page.
+     */
     @GetMapping("/users")
-    public ResponseEntity<List<UserDto>> getAllUsers() {
-        return ResponseEntity.ok(adminService.getAllUsers());
+    @QueryBudget(2)
+    public ResponseEntity<UserDirectoryPageDto> getUserDirectory(
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Role role,
+            @RequestParam(required = false) Long siteId,
+            @RequestParam(defaultValue = "email") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(adminService.getUserDirectory(search, role, siteId, sort, direction, cursor, limit));
     }
 
     @DeleteMapping("/users/{id}")
@@ -72,43 +154,96 @@ public class AdminController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Reports hit/miss statistics for the second-level user caches.
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<List<CacheStatsDto>> getCacheStats() {
+        return ResponseEntity.ok(cacheStatisticsService.getUserCacheStats());
+    }
+
+    /**
+     * Endpoint to retrieve the run history of cluster-coordinated scheduled jobs.
+     * @param pageable The pagination information (e.g., ?page=0&size=20).
+     * @return A paginated list of job runs, most recent first.
+     */
+    @GetMapping("/jobs/runs")
+    public ResponseEntity<Page<JobRunDto>> getJobRuns(Pageable pageable) {
+        return ResponseEntity.ok(clusterJobScheduler.getRunHistory(pageable));
+    }
+
     @PostMapping("/users/{id}/reset-pin")
     public ResponseEntity<Void> resetPin(@PathVariable Long id, @Valid @RequestBody ResetPinRequestDto request) {
         adminService.resetUserPin(id, request.getNewPin());
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Exports clock logs. The format is chosen by the optional "format" parameter
+     * (csv, csv.gz, ndjson, xlsx) or the Accept header, and defaults to CSV.
+     * Rows are encoded straight onto the response as they are read.
+     */
     @GetMapping("/timesheets/export")
+    @QueryBudget(3)
     public void exportTimesheets(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
             HttpServletResponse response) throws IOException {
-        
-        String fileName = "timesheet_export_" + java.time.LocalDate.now() + ".csv";
-        response.setContentType("text/csv");
+
+        ExportFormat exportFormat = ExportFormat.resolve(format, accept);
+        String fileName = "timesheet_export_" + java.time.LocalDate.now() + exportFormat.getExtension();
+        response.setContentType(exportFormat.getContentType());
         response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
 
-        if (startDate != null && endDate != null) {
-            timesheetService.exportWeeklyTimesheet(response.getWriter(), startDate, endDate);
-        } else {
-            timesheetService.exportWeeklyTimesheet(response.getWriter());
-        }
+        streamExport(exportFormat, response, writer -> {
+            if (startDate != null && endDate != null) {
+                timesheetService.exportWeeklyTimesheet(writer, startDate, endDate);
+            } else {
+                timesheetService.exportWeeklyTimesheet(writer);
+            }
+        });
     }
 
+    /**
+     * Exports audit logs, including archived ones, in the negotiated format (see exportTimesheets).
+     */
     @GetMapping("/audit-logs/export")
+    @QueryBudget(3)
     public void exportAuditLogs(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
             HttpServletResponse response) throws IOException {
-        
-        String fileName = "audit_logs_export_" + java.time.LocalDate.now() + ".csv";
-        response.setContentType("text/csv");
+
+        ExportFormat exportFormat = ExportFormat.resolve(format, accept);
+        String fileName = "audit_logs_export_" + java.time.LocalDate.now() + exportFormat.getExtension();
+        response.setContentType(exportFormat.getContentType());
         response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
 
-        if (startDate != null && endDate != null) {
-            adminService.exportAuditLogs(response.getWriter(), startDate, endDate);
-        } else {
-            adminService.exportAuditLogs(response.getWriter());
+        streamExport(exportFormat, response, writer -> {
+            if (startDate != null && endDate != null) {
+                adminService.exportAuditLogs(writer, startDate, endDate);
+            } else {
+                adminService.exportAuditLogs(writer);
+            }
+        });
+    }
+
+    /**
+     * Streams an export to the response. If it fails midway, the writer is aborted rather than closed,
+     * so the client gets a visibly truncated file instead of one that looks complete.
+     */
+    private void streamExport(ExportFormat exportFormat, HttpServletResponse response, Consumer<RowWriter> export) throws IOException {
+        try (RowWriter writer = exportFormat.open(response.getOutputStream(), objectMapper)) {
+            try {
+                export.accept(writer);
+            } catch (RuntimeException e) {
+                writer.abort();
+                throw e;
+            }
         }
     }
 }
@@ -5,11 +5,13 @@ import com.timesheet.offline.dto.ClockResponseDto;
 import com.timesheet.offline.dto.JwtResponseDto;
 import com.timesheet.offline.dto.PinLoginRequestDto;
 import com.timesheet.offline.service.AuthService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -24,15 +26,24 @@ public class AuthController {
 
     private final AuthService authService;
 
+    private static final int MAX_KIOSK_ID_LENGTH = 64;
+
     /**
      * --- UPDATED ENDPOINT ---
      * Endpoint for employees to clock in or out using only their unique PIN.
      * @param loginRequest DTO containing the PIN.
+     * @param kioskId The kiosk's self-assigned ID, sent by the kiosk page; optional.
+     * @param request The HTTP request, for the client's address.
      * @return A response entity with a confirmation message.
      */
     @PostMapping("/kiosk/login")
-    public ResponseEntity<ClockResponseDto> clockInOrOutWithPin(@Valid @RequestBody PinLoginRequestDto loginRequest) {
-        ClockResponseDto response = authService.handlePinClockAction(loginRequest.getPin());
+    public ResponseEntity<ClockResponseDto> clockInOrOutWithPin(@Valid @RequestBody PinLoginRequestDto loginRequest,
+                                                                @RequestHeader(value = "X-Kiosk-Id", required = false) String kioskId,
+                                                                HttpServletRequest request) {
+        String boundedKioskId = kioskId == null || kioskId.isBlank()
+                ? null
+                : kioskId.substring(0, Math.min(kioskId.length(), MAX_KIOSK_ID_LENGTH));
+        ClockResponseDto response = authService.handlePinClockAction(loginRequest.getPin(), boundedKioskId, request.getRemoteAddr());
         return ResponseEntity.ok(response);
     }
 
@@ -0,0 +1,28 @@
+package com.timesheet.offline.controller;
+
+import com.timesheet.offline.dto.BackupDto;
+import com.timesheet.offline.service.BackupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Controller for inspecting backups. Backups are taken by the "backup" cluster job,
+ * and restored by starting the application with 'backup.restore-from'.
+ */
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class BackupController {
+
+    private final BackupService backupService;
+
+    @GetMapping("/backups")
+    public ResponseEntity<List<BackupDto>> getBackups() {
+        return ResponseEntity.ok(backupService.getBackups());
+    }
+}
@@ -0,0 +1,70 @@
+package com.timesheet.offline.controller;
+
+import com.timesheet.offline.dto.ExportJobDto;
+import com.timesheet.offline.dto.ExportJobRequestDto;
+import com.timesheet.offline.service.ExportJobService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Controller for background export jobs.
+ * Lives under /api/admin, so every endpoint requires the ADMIN role (see SecurityConfig).
+ */
+@RestController
+@RequestMapping("/api/admin/exports")
+@RequiredArgsConstructor
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+
+    /**
+     * Queues an export and returns immediately with the job's ID.
+     * @param request The export type, format and optional date range.
+     * @return 202 Accepted with the job state.
+     */
+    @PostMapping
+    public ResponseEntity<ExportJobDto> submitExport(@Valid @RequestBody ExportJobRequestDto request) {
+        return new ResponseEntity<>(exportJobService.submit(request), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ExportJobDto>> getExports() {
+        return ResponseEntity.ok(exportJobService.getJobs());
+    }
+
+    /**
+     * Reports a job's status, rows processed so far and estimated time remaining.
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ExportJobDto> getExport(@PathVariable String jobId) {
+        return ResponseEntity.ok(exportJobService.getJob(jobId));
+    }
+
+    /**
+     * Downloads a finished export. Returning the file as a Resource lets Spring MVC answer
+     * "Range" requests with 206 Partial Content, so interrupted downloads can be resumed.
+     */
+    @GetMapping("/{jobId}/download")
+    public ResponseEntity<Resource> downloadExport(@PathVariable String jobId) {
+        Path file = exportJobService.getCompletedFile(jobId);
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(exportJobService.getDownloadFileName(jobId))
+                .build();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(file));
+    }
+}
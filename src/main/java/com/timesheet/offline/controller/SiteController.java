@@ -0,0 +1,48 @@
+package com.timesheet.offline.controller;
+
+import com.timesheet.offline.dto.BindKioskRequestDto;
+import com.timesheet.offline.dto.CreateSiteRequestDto;
+import com.timesheet.offline.dto.KioskDto;
+import com.timesheet.offline.dto.SiteDto;
+import com.timesheet.offline.service.SiteService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller for managing sites and binding kiosks to them.
+ */
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class SiteController {
+
+    private final SiteService siteService;
+
+    @GetMapping("/sites")
+    public ResponseEntity<List<SiteDto>> getSites() {
+        return ResponseEntity.ok(siteService.getSites());
+    }
+
+    @PostMapping("/sites")
+    public ResponseEntity<SiteDto> createSite(@Valid @RequestBody CreateSiteRequestDto request) {
+        return new ResponseEntity<>(siteService.createSite(request), HttpStatus.CREATED);
+    }
+
+    @GetMapping("/kiosks")
+    public ResponseEntity<List<KioskDto>> getKiosks() {
+        return ResponseEntity.ok(siteService.getKiosks());
+    }
+
+    /**
+     * Binds a kiosk to a site. The kiosk ID is the one the kiosk sends in its X-Kiosk-Id header.
+     */
+    @PutMapping("/kiosks/{kioskId}")
+    public ResponseEntity<KioskDto> bindKiosk(@PathVariable String kioskId, @Valid @RequestBody BindKioskRequestDto request) {
+        return ResponseEntity.ok(siteService.bindKiosk(kioskId, request));
+    }
+}
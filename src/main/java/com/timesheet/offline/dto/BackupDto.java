@@ -0,0 +1,24 @@
+package com.timesheet.offline.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * DTO for one backup on disk.
+ */
+@Data
+@Builder
+public class BackupDto {
+    private int sequence;
+    /** The full backup this one builds on; equal to sequence for a full backup. */
+    private int baseSequence;
+    private boolean full;
+    private LocalDateTime createdAt;
+    /** Rows written per table. */
+    private Map<String, Long> rows;
+    /** Compressed size of all of the backup's files. */
+    private long bytes;
+}
@@ -0,0 +1,15 @@
+package com.timesheet.offline.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+/**
+ * DTO for binding a kiosk to a site.
+ */
+@Data
+public class BindKioskRequestDto {
+    @NotNull
+    private Long siteId;
+
+    private String label;
+}
@@ -0,0 +1,17 @@
+package com.timesheet.offline.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * DTO for reporting hit/miss statistics of one second-level cache region.
+ */
+@Data
+@Builder
+public class CacheStatsDto {
+    private String region;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private double hitRatio;
+}
@@ -0,0 +1,18 @@
+package com.timesheet.offline.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+/**
+ * DTO for creating a new site.
+ */
+@Data
+public class CreateSiteRequestDto {
+    @NotBlank
+    @Pattern(regexp = "[A-Z0-9_-]{1,32}", message = "Use 1-32 upper-case letters, digits, '-' or '_'")
+    private String code;
+
+    @NotBlank
+    private String name;
+}
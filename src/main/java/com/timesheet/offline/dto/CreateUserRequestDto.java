@@ -21,4 +21,6 @@ public class CreateUserRequestDto {
 
     @NotNull
     private Role role;
+
+    private Long siteId; // Required for employees when there is more than one site
 }
@@ -0,0 +1,26 @@
+package com.timesheet.offline.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.domain.Page;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO for the admin dashboard's first load. Each field holds what the matching admin endpoint returns;
+ * sections that weren't requested are left out of the JSON.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DashboardDto {
+    private UserDirectoryPageDto users; // First page of GET /api/admin/users
+    private List<UserStatusDto> statuses;
+    private List<NotificationDto> notifications;
+    private LocalDate weekStartDate; // The week the timesheet covers
+    private List<WeeklyTimesheetDto> timesheet;
+    private Page<AuditLogDto> auditLogs; // First page of GET /api/admin/audit-logs
+    private boolean consistent; // True if all sections were read from one database snapshot
+}
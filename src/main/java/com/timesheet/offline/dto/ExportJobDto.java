@@ -0,0 +1,28 @@
+package com.timesheet.offline.dto;
+
+import com.timesheet.offline.model.ExportJobStatus;
+import com.timesheet.offline.model.ExportJobType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for reporting the state and progress of a background export job.
+ */
+@Data
+@Builder
+public class ExportJobDto {
+    private String id;
+    private ExportJobType type;
+    private String format;
+    private ExportJobStatus status;
+    private long rowsProcessed;
+    private Long totalRows; // Estimated from the live tables; null while unknown
+    private Long etaSeconds; // Null until enough progress has been made to estimate
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private String fileName;
+    private Long fileSize;
+    private String error;
+}
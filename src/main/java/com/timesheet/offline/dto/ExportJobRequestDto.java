@@ -0,0 +1,23 @@
+package com.timesheet.offline.dto;
+
+import com.timesheet.offline.model.ExportJobType;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for submitting a background export job.
+ * The date range is optional; without it the job exports the same default range as the synchronous endpoints.
+ */
+@Data
+public class ExportJobRequestDto {
+    @NotNull
+    private ExportJobType type;
+
+    private String format; // e.g. "csv", "csv.gz", "ndjson", "xlsx"; defaults to CSV
+
+    private LocalDateTime startDate;
+
+    private LocalDateTime endDate;
+}
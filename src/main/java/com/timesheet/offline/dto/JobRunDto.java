@@ -0,0 +1,24 @@
+package com.timesheet.offline.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for representing one run of a scheduled job in the admin dashboard.
+ */
+@Data
+@Builder
+public class JobRunDto {
+    private Long id;
+    private String jobName;
+    private LocalDateTime scheduledFor;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long durationMs;
+    private String status;
+    private String node;
+    private int missedRuns;
+    private String error;
+}
@@ -0,0 +1,18 @@
+package com.timesheet.offline.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for representing a kiosk and the site it is bound to.
+ */
+@Data
+@Builder
+public class KioskDto {
+    private String kioskId;
+    private Long siteId;
+    private String label;
+    private LocalDateTime boundAt;
+}
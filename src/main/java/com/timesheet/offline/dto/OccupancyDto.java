@@ -0,0 +1,23 @@
+package com.timesheet.offline.dto;
+
+import com.timesheet.offline.model.Role;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for an occupancy time series. Bucket i covers [from + i * bucketMinutes, from + (i + 1) * bucketMinutes);
+ * the arrays are indexed by bucket, so no timestamp is repeated per value.
+ */
+@Data
+@Builder
+public class OccupancyDto {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private int bucketMinutes;
+    private Long siteId; // Null when all sites are included
+    private Role role; // Null when all roles are included
+    private int[] peak; // Most people on site at any moment of the bucket
+    private double[] average; // Time-weighted average headcount over the bucket
+}
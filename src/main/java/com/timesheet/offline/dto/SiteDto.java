@@ -0,0 +1,15 @@
+package com.timesheet.offline.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * DTO for representing a site.
+ */
+@Data
+@Builder
+public class SiteDto {
+    private Long id;
+    private String code;
+    private String name;
+}
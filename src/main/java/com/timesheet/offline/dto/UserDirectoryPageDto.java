@@ -0,0 +1,17 @@
+package com.timesheet.offline.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO for one page of the user directory.
+ */
+@Data
+@Builder
+public class UserDirectoryPageDto {
+    private List<UserDto> users;
+    /** Pass as 'cursor' to get the next page; null on the last page. */
+    private String nextCursor;
+}
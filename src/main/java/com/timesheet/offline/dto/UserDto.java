@@ -13,4 +13,5 @@ public class UserDto {
     private Long id;
     private String email;
     private Role role;
+    private Long siteId; // Null for admins
 }
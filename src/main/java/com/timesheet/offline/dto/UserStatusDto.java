@@ -15,6 +15,7 @@ public class UserStatusDto {
     private Long id;
     private String email;
     private Role role;
+    private Long siteId;
     private String status; // e.g., "Clocked In", "Clocked Out"
     private LocalDateTime lastActionTimestamp;
 }
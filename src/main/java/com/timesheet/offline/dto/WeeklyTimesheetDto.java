@@ -1,17 +1,23 @@
 package com.timesheet.offline.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.util.Map;
 
 /**
  * DTO for representing a user's weekly timesheet summary.
+ * Also read back from JSON, for timesheet snapshots.
  */
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class WeeklyTimesheetDto {
     private Long userId;
     private String userEmail;
+    private Long siteId;
     private Map<String, Double> dailyHours; // Key: "YYYY-MM-DD", Value: Hours
     private Double totalHours;
 }
@@ -1,5 +1,6 @@
 package com.timesheet.offline.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.AuthenticationException;
@@ -28,6 +29,18 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(Map.of("error", "Invalid credentials provided"), HttpStatus.UNAUTHORIZED);
     }
 
+    /**
+     * Handles clients that are locked out after repeated failed PIN attempts.
+     * @param ex The lockout exception.
+     * @return A 429 Too Many Requests response telling the client when to try again.
+     */
+    @ExceptionHandler(TooManyAttemptsException.class)
+    public ResponseEntity<Map<String, String>> handleTooManyAttemptsException(TooManyAttemptsException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of("error", ex.getMessage()));
+    }
+
     /**
      * Handles illegal state exceptions, typically used for business logic errors
      * (e.g., an admin trying to use the employee kiosk).
@@ -0,0 +1,18 @@
+package com.timesheet.offline.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a client is temporarily locked out after too many failed attempts.
+ * Mapped to 429 Too Many Requests with a Retry-After header by GlobalExceptionHandler.
+ */
+@Getter
+public class TooManyAttemptsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyAttemptsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
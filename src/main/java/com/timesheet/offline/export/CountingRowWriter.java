@@ -0,0 +1,39 @@
+package com.timesheet.offline.export;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A RowWriter decorator that counts the rows passing through it, for progress reporting.
+ */
+public class CountingRowWriter implements RowWriter {
+
+    private final RowWriter delegate;
+    private final AtomicLong rows;
+
+    public CountingRowWriter(RowWriter delegate, AtomicLong rows) {
+        this.delegate = delegate;
+        this.rows = rows;
+    }
+
+    @Override
+    public void writeHeader(String... columns) throws IOException {
+        delegate.writeHeader(columns);
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        delegate.writeRow(values);
+        rows.incrementAndGet();
+    }
+
+    @Override
+    public void abort() {
+        delegate.abort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
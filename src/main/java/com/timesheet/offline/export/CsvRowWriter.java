@@ -0,0 +1,48 @@
+package com.timesheet.offline.export;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes rows as CSV using Commons CSV. Used for both plain and gzip-compressed CSV exports.
+ */
+public class CsvRowWriter implements RowWriter {
+
+    private final Writer writer;
+    private CSVPrinter csvPrinter;
+    private boolean aborted;
+
+    public CsvRowWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void writeHeader(String... columns) throws IOException {
+        csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(columns).build());
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        csvPrinter.printRecord(values);
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (aborted) {
+            return;
+        }
+        if (csvPrinter != null) {
+            csvPrinter.close(true);
+        } else {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.timesheet.offline.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The file formats supported by the export endpoints.
+ * Each format knows its content type and file extension, and how to open a streaming RowWriter.
+ */
+public enum ExportFormat {
+    CSV("text/csv", ".csv"),
+    CSV_GZIP("application/gzip", ".csv.gz"),
+    NDJSON("application/x-ndjson", ".ndjson"),
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", ".xlsx");
+
+    /** Size of the buffer between the encoders and the response stream. */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Picks the export format for a request.
+     * An explicit "format" query parameter wins; otherwise the Accept header is matched
+     * against the known content types, and CSV is used when nothing matches.
+     * @param format The value of the "format" query parameter (e.g. "csv", "csv.gz", "ndjson", "xlsx"), may be null.
+     * @param accept The request's Accept header, may be null.
+     * @return The resolved export format.
+     */
+    public static ExportFormat resolve(String format, String accept) {
+        if (format != null && !format.isBlank()) {
+            switch (format.trim().toLowerCase(Locale.ROOT)) {
+                case "csv":
+                    return CSV;
+                case "csv.gz":
+                case "gzip":
+                case "csv_gzip":
+                    return CSV_GZIP;
+                case "ndjson":
+                case "jsonl":
+                    return NDJSON;
+                case "xlsx":
+                    return XLSX;
+                default:
+                    throw new IllegalArgumentException("Unsupported export format: " + format);
+            }
+        }
+        if (accept != null) {
+            for (ExportFormat candidate : values()) {
+                if (accept.contains(candidate.contentType)) {
+                    return candidate;
+                }
+            }
+        }
+        return CSV;
+    }
+
+    /**
+     * Opens a streaming RowWriter for this format on top of the given stream.
+     * Closing the returned writer finishes the encoding and closes the stream.
+     */
+    public RowWriter open(OutputStream out, ObjectMapper objectMapper) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        switch (this) {
+            case CSV_GZIP:
+                return new CsvRowWriter(new OutputStreamWriter(new GZIPOutputStream(buffered, BUFFER_SIZE), StandardCharsets.UTF_8));
+            case NDJSON:
+                return new NdjsonRowWriter(buffered, objectMapper);
+            case XLSX:
+                return new XlsxRowWriter(buffered);
+            case CSV:
+            default:
+                return new CsvRowWriter(new OutputStreamWriter(buffered, StandardCharsets.UTF_8));
+        }
+    }
+}
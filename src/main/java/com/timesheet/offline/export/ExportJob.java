@@ -0,0 +1,119 @@
+package com.timesheet.offline.export;
+
+import com.timesheet.offline.model.ExportJobStatus;
+import com.timesheet.offline.model.ExportJobType;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory state of one background export job.
+ * Fields are written by the worker thread and read by status requests, hence volatile.
+ */
+public class ExportJob {
+
+    private final String id;
+    private final ExportJobType type;
+    private final ExportFormat format;
+    private final LocalDateTime startDate;
+    private final LocalDateTime endDate;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final AtomicLong rowsProcessed = new AtomicLong();
+
+    private volatile ExportJobStatus status = ExportJobStatus.QUEUED;
+    private volatile Long totalRows;
+    private volatile long startedAtNanos;
+    private volatile LocalDateTime finishedAt;
+    private volatile Path file;
+    private volatile String error;
+
+    public ExportJob(String id, ExportJobType type, ExportFormat format, LocalDateTime startDate, LocalDateTime endDate) {
+        this.id = id;
+        this.type = type;
+        this.format = format;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public void markRunning(Long estimatedRows) {
+        this.totalRows = estimatedRows;
+        this.startedAtNanos = System.nanoTime();
+        this.status = ExportJobStatus.RUNNING;
+    }
+
+    public void markCompleted(Path file) {
+        this.file = file;
+        this.finishedAt = LocalDateTime.now();
+        this.status = ExportJobStatus.COMPLETED;
+    }
+
+    public void markFailed(String error) {
+        this.error = error;
+        this.finishedAt = LocalDateTime.now();
+        this.status = ExportJobStatus.FAILED;
+    }
+
+    /**
+     * Estimates the remaining time from the average row rate so far.
+     * @return The estimated seconds left, or null if the job is not running or has no estimate yet.
+     */
+    public Long estimateSecondsRemaining() {
+        long done = rowsProcessed.get();
+        Long total = totalRows;
+        if (status != ExportJobStatus.RUNNING || total == null || done == 0) {
+            return null;
+        }
+        double elapsedSeconds = (System.nanoTime() - startedAtNanos) / 1_000_000_000.0;
+        double rowsPerSecond = done / Math.max(elapsedSeconds, 0.001);
+        return Math.max(0L, (long) Math.ceil((total - done) / rowsPerSecond));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ExportJobType getType() {
+        return type;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public AtomicLong getRowsProcessed() {
+        return rowsProcessed;
+    }
+
+    public ExportJobStatus getStatus() {
+        return status;
+    }
+
+    public Long getTotalRows() {
+        return totalRows;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,62 @@
+package com.timesheet.offline.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes rows as newline-delimited JSON: one object per row, keyed by the header column names.
+ * Objects are emitted directly through a streaming JsonGenerator, never built as a tree first.
+ */
+public class NdjsonRowWriter implements RowWriter {
+
+    private final JsonGenerator generator;
+    private String[] columns;
+    private boolean aborted;
+
+    public NdjsonRowWriter(OutputStream out, ObjectMapper objectMapper) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        // Each object goes on its own line instead of the generator's default single space separator.
+        this.generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void writeHeader(String... columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < columns.length; i++) {
+            Object value = i < values.length ? values[i] : null;
+            generator.writeFieldName(columns[i]);
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof Long || value instanceof Integer) {
+                generator.writeNumber(((Number) value).longValue());
+            } else if (value instanceof Number) {
+                generator.writeNumber(((Number) value).doubleValue());
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (aborted) {
+            return;
+        }
+        generator.close();
+    }
+}
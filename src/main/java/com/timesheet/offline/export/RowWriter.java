@@ -0,0 +1,32 @@
+package com.timesheet.offline.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A format-agnostic sink for tabular export data.
+ * Implementations encode each row as soon as it is written, so an export never
+ * holds more than a small, bounded buffer in memory regardless of its size.
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * Writes the column names. Must be called once, before any row.
+     * @param columns The column names, in order.
+     */
+    void writeHeader(String... columns) throws IOException;
+
+    /**
+     * Writes a single row. Values are matched to the header columns by position.
+     * Numbers are kept numeric where the format supports it; everything else is written as text.
+     * @param values The row values, in column order.
+     */
+    void writeRow(Object... values) throws IOException;
+
+    /**
+     * Abandons the export after a failure. A later close() then neither finishes the encoding nor closes the
+     * stream, so the output ends visibly incomplete (e.g. without the gzip trailer or the XLSX zip directory)
+     * rather than as a valid-looking, truncated file. The stream is left to its owner.
+     */
+    void abort();
+}
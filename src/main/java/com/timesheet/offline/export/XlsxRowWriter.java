@@ -0,0 +1,139 @@
+package com.timesheet.offline.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A minimal streaming XLSX (Office Open XML) writer with a single worksheet.
+ * The fixed package parts are written up front, then each row is appended to the
+ * sheet XML as it arrives. Strings are stored inline, so there is no shared-strings
+ * table to accumulate and nothing about the workbook is ever held in memory.
+ */
+public class XlsxRowWriter implements RowWriter {
+
+    private static final String CONTENT_TYPES =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+            + "</Types>";
+
+    private static final String ROOT_RELS =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>";
+
+    private static final String WORKBOOK =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+            + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<sheets><sheet name=\"Export\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+            + "</workbook>";
+
+    private static final String WORKBOOK_RELS =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+            + "</Relationships>";
+
+    private final ZipOutputStream zip;
+    private final Writer sheet;
+    private int rowNumber = 0;
+    private boolean aborted;
+
+    public XlsxRowWriter(OutputStream out) throws IOException {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.sheet = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+
+        writePart("[Content_Types].xml", CONTENT_TYPES);
+        writePart("_rels/.rels", ROOT_RELS);
+        writePart("xl/workbook.xml", WORKBOOK);
+        writePart("xl/_rels/workbook.xml.rels", WORKBOOK_RELS);
+
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        sheet.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+    }
+
+    @Override
+    public void writeHeader(String... columns) throws IOException {
+        writeRow((Object[]) columns);
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        rowNumber++;
+        sheet.write("<row r=\"" + rowNumber + "\">");
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            String ref = columnName(i) + rowNumber;
+            if (value instanceof Number) {
+                sheet.write("<c r=\"" + ref + "\"><v>" + value + "</v></c>");
+            } else {
+                sheet.write("<c r=\"" + ref + "\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                writeEscaped(value.toString());
+                sheet.write("</t></is></c>");
+            }
+        }
+        sheet.write("</row>");
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (aborted) {
+            return;
+        }
+        sheet.write("</sheetData></worksheet>");
+        sheet.flush();
+        zip.closeEntry();
+        zip.close();
+    }
+
+    private void writePart(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private void writeEscaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> sheet.write("&amp;");
+                case '<' -> sheet.write("&lt;");
+                case '>' -> sheet.write("&gt;");
+                case '"' -> sheet.write("&quot;");
+                default -> {
+                    // XML 1.0 forbids most control characters; drop them rather than produce a corrupt sheet.
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        sheet.write(c);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String columnName(int index) {
+        StringBuilder name = new StringBuilder();
+        for (int n = index + 1; n > 0; n = (n - 1) / 26) {
+            name.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return name.toString();
+    }
+}
@@ -2,8 +2,10 @@ package com.timesheet.offline.model;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
@@ -12,10 +14,15 @@ import java.time.LocalDateTime;
  * Maps to the 'audit_logs' table.
  */
 @Entity
-@Table(name = "audit_logs")
-@Data
+@Table(name = "audit_logs", indexes = {
+        @Index(name = "idx_audit_logs_site_timestamp", columnList = "site_id, timestamp"),
+        @Index(name = "idx_audit_logs_timestamp", columnList = "timestamp")
+})
+@Getter
+@Setter
+@ToString
 @NoArgsConstructor
-public class AuditLog {
+public class AuditLog extends IdentifiedEntity {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -39,4 +46,7 @@ public class AuditLog {
 
     @Column(columnDefinition = "TEXT") // For potentially long details
     private String details;
+
+    @Column(name = "site_id")
+    private Long siteId; // Null for events that don't belong to one site
 }
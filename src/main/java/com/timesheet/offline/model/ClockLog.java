@@ -2,8 +2,10 @@ package com.timesheet.offline.model;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
@@ -12,10 +14,16 @@ import java.time.LocalDateTime;
  * Maps to the 'clock_logs' table.
  */
 @Entity
-@Table(name = "clock_logs")
-@Data
+@Table(name = "clock_logs", indexes = {
+        @Index(name = "idx_clock_logs_site_timestamp", columnList = "site_id, timestamp"),
+        @Index(name = "idx_clock_logs_user", columnList = "user_id"),
+        @Index(name = "idx_clock_logs_timestamp", columnList = "timestamp")
+})
+@Getter
+@Setter
+@ToString
 @NoArgsConstructor
-public class ClockLog {
+public class ClockLog extends IdentifiedEntity {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -24,6 +32,7 @@ public class ClockLog {
     @NotNull
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
     private User user;
 
     @NotNull
@@ -40,4 +49,13 @@ public class ClockLog {
 
     @Column
     private Double durationHours; // Calculated and stored on CLOCK_OUT
+
+    @Column(name = "punch_id", unique = true, length = 36)
+    private String punchId; // Unique per kiosk punch, so a punch replayed from the journal is only recorded once
+
+    @Column(name = "site_id")
+    private Long siteId; // The site of the kiosk the punch was made on
+
+    @Column(name = "auto_closed", nullable = false, columnDefinition = "boolean default false")
+    private boolean autoClosed; // A synthetic CLOCK_OUT written by ForgottenClockOutSweeper
 }
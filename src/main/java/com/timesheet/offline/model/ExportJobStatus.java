@@ -0,0 +1,11 @@
+package com.timesheet.offline.model;
+
+/**
+ * Defines the lifecycle states of a background export job.
+ */
+public enum ExportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,9 @@
+package com.timesheet.offline.model;
+
+/**
+ * Defines the kinds of data a background export job can produce.
+ */
+public enum ExportJobType {
+    TIMESHEETS,
+    AUDIT_LOGS
+}
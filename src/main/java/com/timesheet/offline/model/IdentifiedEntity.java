@@ -0,0 +1,39 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.MappedSuperclass;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+
+/**
+ * Identity for entities with a generated ID. Entities are equal when they are of the same entity class and
+ * have the same database ID; an unsaved instance is only equal to itself. Neither method touches lazy
+ * associations or initializes a proxy, so entities are safe to use as map keys and in sets.
+ */
+@MappedSuperclass
+public abstract class IdentifiedEntity {
+
+    public abstract Long getId();
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IdentifiedEntity other) || entityClass(this) != entityClass(other)) {
+            return false;
+        }
+        Long id = getId();
+        return id != null && id.equals(other.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        // Constant per class, so the hash doesn't change when an unsaved entity is assigned its ID.
+        return entityClass(this).hashCode();
+    }
+
+    private static Class<?> entityClass(Object entity) {
+        LazyInitializer proxy = HibernateProxy.extractLazyInitializer(entity);
+        return proxy != null ? proxy.getPersistentClass() : entity.getClass();
+    }
+}
@@ -0,0 +1,35 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Coordinates one scheduled job across all backend instances.
+ * Maps to the 'job_leases' table. A node runs a job only after atomically advancing
+ * lastScheduledFor to the schedule slot it wants to run, so each slot is claimed exactly once.
+ * The lock columns stop a second node from starting the job while a long run is still in progress.
+ */
+@Entity
+@Table(name = "job_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+public class JobLease {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    @Column(name = "last_scheduled_for", nullable = false)
+    private LocalDateTime lastScheduledFor; // The most recent schedule slot that has been claimed
+
+    @Column(name = "locked_by")
+    private String lockedBy; // Node currently running the job, if any
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil; // Lease expiry, so a crashed node doesn't block the job forever
+}
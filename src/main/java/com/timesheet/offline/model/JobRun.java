@@ -0,0 +1,53 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records one execution of a coordinated scheduled job.
+ * Maps to the 'job_runs' table.
+ */
+@Entity
+@Table(name = "job_runs", indexes = {
+        @Index(name = "idx_job_runs_job_started", columnList = "job_name, started_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class JobRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 100)
+    private String jobName;
+
+    @Column(name = "scheduled_for", nullable = false)
+    private LocalDateTime scheduledFor;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    @Column(nullable = false)
+    private String status; // RUNNING, SUCCESS or FAILURE
+
+    @Column(nullable = false)
+    private String node;
+
+    @Column(name = "missed_runs", nullable = false)
+    private int missedRuns; // Earlier slots missed during downtime and coalesced into this run
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+}
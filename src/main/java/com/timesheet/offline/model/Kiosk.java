@@ -0,0 +1,39 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.time.LocalDateTime;
+
+/**
+ * Binds a kiosk to the site it stands in. Maps to the 'kiosks' table.
+ * The ID is the one the kiosk page generates for itself and sends in the X-Kiosk-Id header.
+ */
+@Entity
+@Table(name = "kiosks")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "sites")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class Kiosk {
+
+    @Id
+    @Column(name = "kiosk_id", length = 64)
+    private String kioskId;
+
+    @Column(name = "site_id", nullable = false)
+    private Long siteId;
+
+    @Column
+    private String label; // e.g. "Front entrance"
+
+    @Column(name = "bound_at", nullable = false)
+    private LocalDateTime boundAt;
+}
@@ -0,0 +1,37 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * How far one OutboxSubscriber has got through the outbox.
+ * Maps to the 'outbox_cursors' table. The node that dispatches to a subscriber holds a lock on its row
+ * for the length of a batch, so each subscriber sees its events once and in order across the cluster.
+ */
+@Entity
+@Table(name = "outbox_cursors")
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxCursor {
+
+    @Id
+    @Column(length = 100)
+    private String subscriber;
+
+    @Column(name = "last_event_id", nullable = false)
+    private long lastEventId; // The last event handled, or skipped because the subscriber doesn't accept it
+
+    @Column(nullable = false)
+    private int attempts; // Failed attempts at the next batch
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt; // Backoff after a failure
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
@@ -0,0 +1,50 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * Something that happened, written in the same transaction as the change itself and handed to the
+ * OutboxSubscribers after it has committed (see OutboxService).
+ * Maps to the 'outbox_events' table. Subscribers read it in id order.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_events_created", columnList = "created_at")
+})
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class OutboxEvent extends IdentifiedEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 50)
+    private OutboxEventType type;
+
+    @Column(name = "user_id")
+    private Long userId; // The user the event is about, if any
+
+    @Column(name = "site_id")
+    private Long siteId; // Null for events that don't belong to one site
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt; // When it happened; for replayed offline punches, the original time
+
+    @ColumnDefault("LOCALTIMESTAMP")
+    @Column(name = "created_at", nullable = false, insertable = false, updatable = false)
+    private LocalDateTime createdAt; // When it was written, set by the database; not read back after an insert
+
+    @Column(columnDefinition = "TEXT")
+    private String payload; // Event details as a JSON object
+}
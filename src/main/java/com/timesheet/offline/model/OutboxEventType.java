@@ -0,0 +1,12 @@
+package com.timesheet.offline.model;
+
+/**
+ * The kinds of events written to the outbox.
+ */
+public enum OutboxEventType {
+    CLOCK_IN,
+    CLOCK_OUT,
+    USER_CREATED,
+    USER_DELETED,
+    USER_CREDENTIALS_RESET
+}
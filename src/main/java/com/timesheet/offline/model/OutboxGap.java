@@ -0,0 +1,42 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * A range of event ids that one OutboxSubscriber's cursor has moved past without seeing any events in it,
+ * because they weren't committed within the gap timeout. Usually their transaction rolled back and the ids are
+ * never used; events that do commit in the range later are handed to the subscriber then (see OutboxService).
+ * Maps to the 'outbox_gaps' table.
+ */
+@Entity
+@Table(name = "outbox_gaps", indexes = {
+        @Index(name = "idx_outbox_gaps_subscriber", columnList = "subscriber, from_id")
+})
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class OutboxGap extends IdentifiedEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String subscriber;
+
+    @Column(name = "from_id", nullable = false)
+    private long fromId; // First missing event id
+
+    @Column(name = "to_id", nullable = false)
+    private long toId; // Last missing event id, inclusive
+
+    @Column(name = "skipped_at", nullable = false)
+    private LocalDateTime skippedAt; // When the cursor moved past it, by the database's clock
+}
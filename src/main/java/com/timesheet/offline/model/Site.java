@@ -0,0 +1,38 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+/**
+ * A physical location with its own employees and kiosks.
+ * Maps to the 'sites' table. Employees, their clock data and audit entries carry the ID of their site,
+ * so kiosk lookups, presence and reports only ever read one site's rows.
+ */
+@Entity
+@Table(name = "sites")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "sites")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class Site extends IdentifiedEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotBlank
+    @Column(nullable = false, unique = true, length = 32)
+    private String code; // Short, stable identifier, e.g. "NORTH"
+
+    @NotBlank
+    @Column(nullable = false)
+    private String name;
+}
@@ -0,0 +1,43 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * The computed weekly timesheet of a week that is over, stored so it is not recomputed after a restart.
+ * Maps to the 'timesheet_snapshots' table. The payload is the gzipped JSON of the WeeklyTimesheetDto list.
+ * Rows are written once and only deleted when the week is corrected (see TimesheetSnapshotService).
+ */
+@Entity
+@Table(name = "timesheet_snapshots", indexes = {
+        @Index(name = "idx_timesheet_snapshots_week", columnList = "week_start")
+})
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class TimesheetSnapshot {
+
+    @Id
+    @Column(name = "snapshot_key", length = 40)
+    private String snapshotKey; // Week start and site, e.g. "2024-01-01/3" or "2024-01-01/all"
+
+    @Column(name = "week_start", nullable = false)
+    private LocalDate weekStart;
+
+    @Column(name = "site_id")
+    private Long siteId; // Null for the all-sites timesheet
+
+    @Column(nullable = false)
+    @ToString.Exclude
+    private byte[] payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -4,21 +4,34 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Represents a user in the system (Employee or Admin).
  * Maps to the 'users' table in the database.
+ * Cached in the second-level cache (see CacheConfig), since the table changes only a few times a day.
+ * Deleting a user only sets deletedAt; UserPurgeService removes the row and its history later, in small chunks.
+ * Lookups of active users are served by partial indexes on 'deleted_at IS NULL' (see SchemaInitializer),
+ * or by plain indexes in embedded mode.
  */
 @Entity
 @Table(name = "users")
-@Data
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@Getter
+@Setter
+@ToString
 @NoArgsConstructor
-public class User {
+public class User extends IdentifiedEntity {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -31,6 +44,7 @@ public class User {
 
     @NotBlank
     @Column(nullable = false)
+    @ToString.Exclude
     private String password; // Stores hashed PIN for employees, hashed password for admins
 
     @NotNull
@@ -38,6 +52,13 @@ public class User {
     @Column(nullable = false)
     private Role role;
 
+    @Column(name = "site_id")
+    private Long siteId; // Null for admins, who work across all sites
+
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt; // Null while the user is active
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @ToString.Exclude
     private List<ClockLog> clockLogs = new ArrayList<>();
 }
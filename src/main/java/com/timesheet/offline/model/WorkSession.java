@@ -0,0 +1,59 @@
+package com.timesheet.offline.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents one shift: a clock-in and, once the employee leaves, its matching clock-out.
+ * Maps to the 'work_sessions' table. The clock_logs table is kept as the event/audit trail;
+ * this table is what timesheet and presence queries read.
+ * An open session (endedAt is null) is found through a partial index created by SchemaInitializer.
+ */
+@Entity
+@Table(name = "work_sessions", indexes = {
+        @Index(name = "idx_work_sessions_user_started", columnList = "user_id, started_at"),
+        @Index(name = "idx_work_sessions_ended", columnList = "ended_at"),
+        @Index(name = "idx_work_sessions_site_ended", columnList = "site_id, ended_at"),
+        @Index(name = "idx_work_sessions_site_started", columnList = "site_id, started_at")
+})
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class WorkSession extends IdentifiedEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
+    private User user;
+
+    @NotNull
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "ended_at")
+    private LocalDateTime endedAt; // Null while the employee is clocked in
+
+    @Column(name = "duration_seconds")
+    private Long durationSeconds; // Exact length of the shift, set when it is closed
+
+    @Column(name = "session_key", unique = true, length = 36)
+    private String sessionKey; // The sessionId shared by this shift's CLOCK_IN and CLOCK_OUT logs
+
+    @Column(name = "site_id")
+    private Long siteId; // Copied from the clock-in punch, so site reports don't join users
+
+    @Column(name = "auto_closed", nullable = false, columnDefinition = "boolean default false")
+    private boolean autoClosed; // Closed by ForgottenClockOutSweeper rather than by a punch
+}
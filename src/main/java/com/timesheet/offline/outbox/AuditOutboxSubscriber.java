@@ -0,0 +1,57 @@
+package com.timesheet.offline.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.model.OutboxEvent;
+import com.timesheet.offline.service.AuditService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Writes the audit entries for punches and user changes, which used to be written inside the
+ * punch and admin transactions themselves. The entries keep the time the event happened.
+ */
+@Component
+@RequiredArgsConstructor
+public class AuditOutboxSubscriber implements OutboxSubscriber {
+
+    private final AuditService auditService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String getName() {
+        return "audit-log";
+    }
+
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            JsonNode payload = readPayload(event);
+            switch (event.getType()) {
+                case CLOCK_IN -> auditService.logForSite(event.getSiteId(), event.getUserId(), "CLOCK_IN_SUCCESS", "SUCCESS",
+                        "User clocked in via PIN-only kiosk.", event.getOccurredAt());
+                case CLOCK_OUT -> auditService.logForSite(event.getSiteId(), event.getUserId(), "CLOCK_OUT_SUCCESS", "SUCCESS",
+                        "User clocked out. Hours worked: " + String.format("%.2f", payload.path("hoursWorked").asDouble()),
+                        event.getOccurredAt());
+                // Admin actions are logged without a user ID, as the acting admin isn't known here.
+                case USER_CREATED -> auditService.logForSite(null, null, "USER_CREATE_SUCCESS", "SUCCESS",
+                        "Admin created user: " + payload.path("email").asText(), event.getOccurredAt());
+                case USER_DELETED -> auditService.logForSite(null, null, "USER_DELETE_SUCCESS", "SUCCESS",
+                        "Admin deleted user: " + payload.path("email").asText(), event.getOccurredAt());
+                case USER_CREDENTIALS_RESET -> auditService.logForSite(null, null, "USER_CREDENTIALS_RESET_SUCCESS", "SUCCESS",
+                        "Admin reset credentials for user: " + payload.path("email").asText(), event.getOccurredAt());
+            }
+        }
+    }
+
+    private JsonNode readPayload(OutboxEvent event) {
+        try {
+            return objectMapper.readTree(event.getPayload() == null ? "{}" : event.getPayload());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Outbox event " + event.getId() + " has an unreadable payload: " + e.getMessage());
+        }
+    }
+}
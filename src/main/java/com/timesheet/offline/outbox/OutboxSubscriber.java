@@ -0,0 +1,41 @@
+package com.timesheet.offline.outbox;
+
+import com.timesheet.offline.model.OutboxEvent;
+import com.timesheet.offline.model.OutboxEventType;
+
+import java.util.List;
+
+/**
+ * Receives outbox events after the transaction that wrote them has committed.
+ * Implementations are Spring beans; OutboxService finds them all and keeps a cursor per subscriber,
+ * so each one gets its events in order, in batches, and is retried on its own when it fails.
+ */
+public interface OutboxSubscriber {
+
+    /**
+     * @return A unique, stable name. The subscriber's progress is stored under it.
+     */
+    String getName();
+
+    /**
+     * @return true for the event types this subscriber wants; others are skipped without calling handle.
+     */
+    default boolean accepts(OutboxEventType type) {
+        return true;
+    }
+
+    /**
+     * @return The maximum number of events passed to one handle call.
+     */
+    default int getBatchSize() {
+        return 100;
+    }
+
+    /**
+     * Handles a batch of events, oldest first. An event whose transaction was slow to commit may come in a
+     * later batch than events written after it (see OutboxService), so ordering must not matter. Runs in the transaction that moves the subscriber's cursor
+     * past the batch, so database writes made here commit together with that progress. Throwing rolls both
+     * back, and the same batch is retried after a backoff.
+     */
+    void handle(List<OutboxEvent> events);
+}
@@ -0,0 +1,11 @@
+package com.timesheet.offline.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * An audit log entry joined with the email of the user it refers to.
+ * userEmail is null for system events and for entries whose user has since been deleted.
+ */
+public record AuditLogRow(Long id, LocalDateTime timestamp, Long userId, String userEmail,
+                          String action, String status, String details) {
+}
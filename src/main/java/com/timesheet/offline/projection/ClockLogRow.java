@@ -0,0 +1,12 @@
+package com.timesheet.offline.projection;
+
+import com.timesheet.offline.model.ClockAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * A clock event joined with its user's email, as written to timesheet exports.
+ */
+public record ClockLogRow(Long id, Long userId, String userEmail, ClockAction action,
+                          LocalDateTime timestamp, String sessionId, Double durationHours) {
+}
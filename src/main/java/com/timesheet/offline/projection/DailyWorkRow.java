@@ -0,0 +1,9 @@
+package com.timesheet.offline.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Total seconds worked by one user in sessions that ended on a given day.
+ */
+public record DailyWorkRow(Long userId, String email, LocalDate day, Long seconds) {
+}
@@ -0,0 +1,9 @@
+package com.timesheet.offline.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * The start and end of one work session; endedAt is null while the session is open.
+ */
+public record SessionSpanRow(LocalDateTime startedAt, LocalDateTime endedAt) {
+}
@@ -0,0 +1,9 @@
+package com.timesheet.offline.projection;
+
+import com.timesheet.offline.model.Role;
+
+/**
+ * Read-only view of a user for admin listings. Never carries the password hash or any association.
+ */
+public record UserRow(Long id, String email, Role role, Long siteId) {
+}
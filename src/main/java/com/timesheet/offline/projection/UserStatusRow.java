@@ -0,0 +1,21 @@
+package com.timesheet.offline.projection;
+
+import com.timesheet.offline.model.Role;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user together with the bounds of their latest work session, if any.
+ * An open latest session (lastEndedAt is null) means the user is currently clocked in.
+ */
+public record UserStatusRow(Long id, String email, Role role, Long siteId,
+                            LocalDateTime lastStartedAt, LocalDateTime lastEndedAt) {
+
+    public boolean hasClockedIn() {
+        return lastStartedAt != null;
+    }
+
+    public boolean isClockedIn() {
+        return lastStartedAt != null && lastEndedAt == null;
+    }
+}
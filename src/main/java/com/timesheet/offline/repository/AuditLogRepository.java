@@ -1,13 +1,23 @@
 package com.timesheet.offline.repository;
 
 import com.timesheet.offline.model.AuditLog;
+import com.timesheet.offline.projection.AuditLogRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Spring Data JPA repository for the AuditLog entity.
@@ -15,6 +25,12 @@ import java.util.List;
 @Repository
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
 
+    String AUDIT_LOG_ROW_SELECT = "SELECT new com.timesheet.offline.projection.AuditLogRow("
+            + "a.id, a.timestamp, a.userId, u.email, a.action, a.status, a.details) "
+            + "FROM AuditLog a LEFT JOIN User u ON u.id = a.userId ";
+    String AUDIT_LOG_ROWS = AUDIT_LOG_ROW_SELECT + "ORDER BY a.timestamp DESC";
+    String SITE_AUDIT_LOG_ROWS = AUDIT_LOG_ROW_SELECT + "WHERE a.siteId = :siteId ORDER BY a.timestamp DESC";
+
     /**
      * Finds the most recent audit logs, ordered by timestamp descending.
      * The Pageable parameter is used to limit the number of results (e.g., get the top 20).
@@ -32,6 +48,15 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
      */
     List<AuditLog> findByTimestampBetween(LocalDateTime startDate, LocalDateTime endDate);
 
+    /**
+     * Counts the audit logs within a given date range.
+     * Used to estimate progress of background export jobs.
+     * @param startDate The start of the date range.
+     * @param endDate The end of the date range.
+     * @return The number of audit logs in the range.
+     */
+    long countByTimestampBetween(LocalDateTime startDate, LocalDateTime endDate);
+
     /**
      * --- NEW METHOD ---
      * Finds all audit logs, ordered by timestamp descending, with pagination support.
@@ -40,4 +65,79 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
      * @return A paginated list of audit logs.
      */
     Page<AuditLog> findAllByOrderByTimestampDesc(Pageable pageable);
+
+    /**
+     * Pages through audit logs, newest first, as read-only rows joined with the user's email.
+     * Used for the paginated audit log view in the admin dashboard.
+     * @param pageable The pagination information.
+     * @return A page of audit log rows.
+     */
+    @Query(value = AUDIT_LOG_ROWS, countQuery = "SELECT COUNT(a) FROM AuditLog a")
+    Page<AuditLogRow> findRowsOrderByTimestampDesc(Pageable pageable);
+
+    /**
+     * Same as findRowsOrderByTimestampDesc, without the count query.
+     * Used for the notification feed, which only needs the latest few entries.
+     * @param pageable The number of entries to return.
+     * @return The most recent audit log rows.
+     */
+    @Query(AUDIT_LOG_ROWS)
+    List<AuditLogRow> findRecentRows(Pageable pageable);
+
+    /**
+     * Pages through one site's audit logs, newest first. Served by the (site_id, timestamp) index.
+     * @param siteId The ID of the site.
+     * @param pageable The pagination information.
+     * @return A page of audit log rows.
+     */
+    @Query(value = SITE_AUDIT_LOG_ROWS, countQuery = "SELECT COUNT(a) FROM AuditLog a WHERE a.siteId = :siteId")
+    Page<AuditLogRow> findRowsBySiteIdOrderByTimestampDesc(@Param("siteId") Long siteId, Pageable pageable);
+
+    /**
+     * Finds the next batch of audit logs after a given id, in id order.
+     * Used by the archive job to walk the table with keyset paging instead of OFFSET.
+     * @param id The last id already processed.
+     * @param pageable The batch size.
+     * @return Up to one page of audit logs with an id greater than the given one.
+     */
+    List<AuditLog> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Streams audit logs after a given id within a date range, in id order.
+     * Used by exports, which read ids up to the archive watermark from segment files instead.
+     * Must be called inside a transaction, and the stream must be closed.
+     * @param id The exclusive lower id bound.
+     * @param startDate The start of the date range.
+     * @param endDate The end of the date range.
+     * @return A stream of audit logs.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<AuditLog> streamByIdGreaterThanAndTimestampBetweenOrderByIdAsc(Long id, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Streams every audit log after a given id, in id order.
+     * Must be called inside a transaction, and the stream must be closed.
+     * @param id The exclusive lower id bound.
+     * @return A stream of audit logs.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<AuditLog> streamByIdGreaterThanOrderByIdAsc(Long id);
+
+    /**
+     * Finds the audit log with the lowest id still in the table.
+     * @return An Optional containing the oldest row, if any.
+     */
+    Optional<AuditLog> findTopByOrderByIdAsc();
+
+    /**
+     * Deletes a window of audit logs by id range in its own short transaction.
+     * The archive job calls this repeatedly with small windows so the table is never locked for long.
+     * @param fromId The exclusive lower bound.
+     * @param toId The inclusive upper bound.
+     * @return The number of rows deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM AuditLog a WHERE a.id > :fromId AND a.id <= :toId")
+    int deleteByIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
@@ -2,14 +2,20 @@ package com.timesheet.offline.repository;
 
 import com.timesheet.offline.model.ClockAction;
 import com.timesheet.offline.model.ClockLog;
+import com.timesheet.offline.projection.ClockLogRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Spring Data JPA repository for the ClockLog entity.
@@ -25,6 +31,14 @@ public interface ClockLogRepository extends JpaRepository<ClockLog, Long> {
      */
     Optional<ClockLog> findTopByUserIdOrderByTimestampDesc(Long userId);
 
+    /**
+     * Checks whether a punch has already been recorded.
+     * Used to skip punches replayed from the punch journal that reached the database before.
+     * @param punchId The punch's ID.
+     * @return true if a clock log with this punch ID exists.
+     */
+    boolean existsByPunchId(String punchId);
+
     /**
      * Finds all clock logs within a given date range.
      * Used for exporting weekly timesheets.
@@ -35,10 +49,35 @@ public interface ClockLogRepository extends JpaRepository<ClockLog, Long> {
     List<ClockLog> findByTimestampBetween(LocalDateTime start, LocalDateTime end);
 
     /**
-     * Deletes all clock logs in a single batch operation.
+     * Counts the clock logs within a given date range.
+     * Used to estimate progress of background export jobs.
+     * @param start The start of the date range.
+     * @param end The end of the date range.
+     * @return The number of clock logs in the range.
+     */
+    long countByTimestampBetween(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Streams all clock logs within a given date range as read-only rows joined with the user's email.
+     * Rows are pulled from the database in fetch-size chunks and never enter the persistence context,
+     * so exports of any size use constant memory. Deleted users are left out.
+     * Must be called inside a transaction, and the stream must be closed.
+     * @param start The start of the date range.
+     * @param end The end of the date range.
+     * @return A stream of clock log rows ordered by timestamp.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.timesheet.offline.projection.ClockLogRow(c.id, u.id, u.email, c.action, c.timestamp, c.sessionId, c.durationHours) "
+            + "FROM ClockLog c JOIN c.user u WHERE c.timestamp BETWEEN :start AND :end AND u.deletedAt IS NULL ORDER BY c.timestamp")
+    Stream<ClockLogRow> streamRowsByTimestampBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * Deletes all clock logs recorded before a cutoff in a single batch operation.
      * This is used for the scheduled weekly reset.
+     * @param cutoff Only logs with an earlier timestamp are deleted.
+     * @return The number of logs deleted.
      */
     @Modifying
-    @Query("DELETE FROM ClockLog")
-    void deleteAllInBatch();
+    @Query("DELETE FROM ClockLog c WHERE c.timestamp < :cutoff")
+    int deleteByTimestampBefore(@Param("cutoff") LocalDateTime cutoff);
 }
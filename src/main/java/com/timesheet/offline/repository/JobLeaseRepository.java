@@ -0,0 +1,44 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Spring Data JPA repository for the JobLease entity.
+ */
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    /**
+     * Atomically claims a schedule slot for this node.
+     * The update only matches if no other node has claimed a newer slot in the meantime
+     * (compare-and-set on lastScheduledFor) and the job isn't currently leased.
+     * @return 1 if the slot was claimed, 0 if another node got there first.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLease l SET l.lastScheduledFor = :slot, l.lockedBy = :node, l.lockedUntil = :lockedUntil "
+            + "WHERE l.jobName = :jobName AND l.lastScheduledFor = :previousSlot "
+            + "AND (l.lockedUntil IS NULL OR l.lockedUntil < :now)")
+    int claim(@Param("jobName") String jobName,
+              @Param("previousSlot") LocalDateTime previousSlot,
+              @Param("slot") LocalDateTime slot,
+              @Param("node") String node,
+              @Param("lockedUntil") LocalDateTime lockedUntil,
+              @Param("now") LocalDateTime now);
+
+    /**
+     * Releases the lease held by this node once its run has finished.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLease l SET l.lockedBy = NULL, l.lockedUntil = NULL WHERE l.jobName = :jobName AND l.lockedBy = :node")
+    int release(@Param("jobName") String jobName, @Param("node") String node);
+}
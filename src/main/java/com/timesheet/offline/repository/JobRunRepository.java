@@ -0,0 +1,21 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.JobRun;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA repository for the JobRun entity.
+ */
+@Repository
+public interface JobRunRepository extends JpaRepository<JobRun, Long> {
+
+    /**
+     * Finds the run history, most recent first.
+     * @param pageable The pagination information.
+     * @return A page of job runs.
+     */
+    Page<JobRun> findAllByOrderByStartedAtDesc(Pageable pageable);
+}
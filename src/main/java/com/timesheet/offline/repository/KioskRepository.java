@@ -0,0 +1,17 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.Kiosk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the Kiosk entity.
+ * Lookups by ID are served from the second-level cache, so resolving a kiosk's site costs no query.
+ */
+@Repository
+public interface KioskRepository extends JpaRepository<Kiosk, String> {
+
+    List<Kiosk> findAllByOrderBySiteIdAscKioskIdAsc();
+}
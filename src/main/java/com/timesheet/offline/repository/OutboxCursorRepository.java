@@ -0,0 +1,40 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.OutboxCursor;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the OutboxCursor entity.
+ */
+@Repository
+public interface OutboxCursorRepository extends JpaRepository<OutboxCursor, String> {
+
+    /**
+     * Locks a subscriber's cursor for the rest of the transaction. A cursor that another node has locked
+     * is skipped (FOR UPDATE SKIP LOCKED) rather than waited for, so only one node dispatches to a subscriber
+     * at a time. Databases without SKIP LOCKED wait instead.
+     * @param subscriber The subscriber's name.
+     * @return The locked cursor, or empty if it is locked by another node or doesn't exist.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT c FROM OutboxCursor c WHERE c.subscriber = :subscriber")
+    Optional<OutboxCursor> lockBySubscriber(@Param("subscriber") String subscriber);
+
+    /**
+     * @param subscribers The names of the current subscribers.
+     * @return The lowest event id that all of them have handled, or null if none has a cursor yet.
+     */
+    @Query("SELECT MIN(c.lastEventId) FROM OutboxCursor c WHERE c.subscriber IN :subscribers")
+    Long findMinLastEventId(@Param("subscribers") Collection<String> subscribers);
+}
@@ -0,0 +1,75 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.OutboxEvent;
+import com.timesheet.offline.model.OutboxEventType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the OutboxEvent entity.
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Finds the next batch of events after a subscriber's cursor, in id order.
+     * @param id The last event id the subscriber has handled.
+     * @param pageable The batch size.
+     * @return Up to one page of events with an id greater than the given one.
+     */
+    List<OutboxEvent> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Finds events that have committed in id ranges the subscriber skipped (see OutboxGap), in id order.
+     * @param subscriber The subscriber's name.
+     * @return The events that the subscriber's cursor has moved past without handing them over.
+     */
+    @Query("SELECT e FROM OutboxEvent e WHERE EXISTS (SELECT 1 FROM OutboxGap g "
+            + "WHERE g.subscriber = :subscriber AND e.id BETWEEN g.fromId AND g.toId) ORDER BY e.id")
+    List<OutboxEvent> findInGapsOf(@Param("subscriber") String subscriber);
+
+    /**
+     * Finds the events of some types written since a given database time, for UserCacheInvalidator.
+     * @param since Database time; see currentDatabaseTime.
+     * @param types The event types.
+     * @return The events, oldest first.
+     */
+    @Query("SELECT e FROM OutboxEvent e WHERE e.createdAt >= :since AND e.type IN :types ORDER BY e.id")
+    List<OutboxEvent> findByTypeWrittenSince(@Param("since") LocalDateTime since, @Param("types") Collection<OutboxEventType> types);
+
+    /**
+     * The database's current time. Event ages and backoffs are measured with it rather than with each node's
+     * own clock, so nodes whose clocks disagree still agree on how old an event is.
+     * @return The start of the current transaction on PostgreSQL.
+     */
+    @Query(value = "SELECT LOCALTIMESTAMP", nativeQuery = true)
+    LocalDateTime currentDatabaseTime();
+
+    /**
+     * Finds the event with the lowest id still in the table.
+     * @return An Optional containing the oldest event, if any.
+     */
+    Optional<OutboxEvent> findTopByOrderByIdAsc();
+
+    /**
+     * Deletes a window of events that every subscriber has handled, in its own short transaction.
+     * @param fromId The exclusive lower bound.
+     * @param toId The inclusive upper bound.
+     * @param createdBefore Only events written before this are deleted.
+     * @return The number of rows deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.id > :fromId AND e.id <= :toId AND e.createdAt < :createdBefore")
+    int deleteByIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("createdBefore") LocalDateTime createdBefore);
+}
@@ -0,0 +1,20 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.OutboxGap;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the OutboxGap entity.
+ */
+@Repository
+public interface OutboxGapRepository extends JpaRepository<OutboxGap, Long> {
+
+    /**
+     * @param subscriber The subscriber's name.
+     * @return The ranges of event ids the subscriber has skipped, lowest first.
+     */
+    List<OutboxGap> findBySubscriberOrderByFromIdAsc(String subscriber);
+}
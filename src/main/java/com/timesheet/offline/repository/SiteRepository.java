@@ -0,0 +1,30 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.Site;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the Site entity.
+ * Sites change rarely, so the list is served from the "site-queries" region of the second-level cache.
+ */
+@Repository
+public interface SiteRepository extends JpaRepository<Site, Long> {
+
+    boolean existsByCode(String code);
+
+    /**
+     * Lists all sites in code order.
+     * @return All sites.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "site-queries")
+    })
+    List<Site> findAllByOrderByCodeAsc();
+}
@@ -0,0 +1,35 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.TimesheetSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+/**
+ * Spring Data JPA repository for the TimesheetSnapshot entity.
+ */
+@Repository
+public interface TimesheetSnapshotRepository extends JpaRepository<TimesheetSnapshot, String> {
+
+    /**
+     * Deletes the snapshots of all weeks starting within a date range, for every site.
+     * @return The number of snapshots deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TimesheetSnapshot s WHERE s.weekStart BETWEEN :from AND :to")
+    int deleteByWeekStartBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Deletes every snapshot, for corrections that can affect any week.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TimesheetSnapshot")
+    void deleteAllSnapshots();
+}
@@ -0,0 +1,29 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.Role;
+import com.timesheet.offline.projection.UserRow;
+
+import java.util.List;
+
+/**
+ * Custom query behind the paged user directory, mixed into UserRepository.
+ */
+public interface UserDirectoryRepository {
+
+    enum SortKey { EMAIL, ID }
+
+    /**
+     * Finds one page of active users with keyset paging. Only the filters that are set end up in the query,
+     * so each combination gets a plan that can use the users indexes.
+     * @param emailPrefix Case-insensitive email prefix, or null for all users.
+     * @param role Only users with this role, or null for all roles.
+     * @param siteId Only users of this site, or null for all sites.
+     * @param sortKey Sorts by lower-cased email or by ID; ties on email are broken by ID.
+     * @param descending Sorts in descending order.
+     * @param after The last row of the previous page, or null for the first page.
+     * @param limit The maximum number of rows.
+     * @return Up to limit rows, in sort order.
+     */
+    List<UserRow> findDirectoryRows(String emailPrefix, Role role, Long siteId, SortKey sortKey, boolean descending,
+                                    UserRow after, int limit);
+}
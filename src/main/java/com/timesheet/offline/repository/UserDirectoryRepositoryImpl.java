@@ -0,0 +1,69 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.Role;
+import com.timesheet.offline.projection.UserRow;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds the user directory query from the filters that are set.
+ * The email prefix and keyset conditions are written against lower(email), which PostgreSQL serves from the
+ * idx_users_email_lower and idx_users_email_prefix expression indexes (see SchemaInitializer).
+ */
+class UserDirectoryRepositoryImpl implements UserDirectoryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UserRow> findDirectoryRows(String emailPrefix, Role role, Long siteId, SortKey sortKey, boolean descending,
+                                           UserRow after, int limit) {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new com.timesheet.offline.projection.UserRow(u.id, u.email, u.role, u.siteId) FROM User u WHERE u.deletedAt IS NULL");
+        Map<String, Object> parameters = new HashMap<>();
+        if (emailPrefix != null) {
+            jpql.append(" AND lower(u.email) LIKE :emailPrefix ESCAPE '!'");
+            parameters.put("emailPrefix", escapeLike(emailPrefix.toLowerCase(Locale.ROOT)) + "%");
+        }
+        if (role != null) {
+            jpql.append(" AND u.role = :role");
+            parameters.put("role", role);
+        }
+        if (siteId != null) {
+            jpql.append(" AND u.siteId = :siteId");
+            parameters.put("siteId", siteId);
+        }
+
+        String comparison = descending ? "<" : ">";
+        String direction = descending ? " DESC" : " ASC";
+        if (sortKey == SortKey.EMAIL) {
+            if (after != null) {
+                // A row-value comparison, so the (lower(email), id) index can seek straight to the next page.
+                jpql.append(" AND (lower(u.email), u.id) ").append(comparison).append(" (:afterEmail, :afterId)");
+                parameters.put("afterEmail", after.email().toLowerCase(Locale.ROOT));
+                parameters.put("afterId", after.id());
+            }
+            jpql.append(" ORDER BY lower(u.email)").append(direction).append(", u.id").append(direction);
+        } else {
+            if (after != null) {
+                jpql.append(" AND u.id ").append(comparison).append(" :afterId");
+                parameters.put("afterId", after.id());
+            }
+            jpql.append(" ORDER BY u.id").append(direction);
+        }
+
+        TypedQuery<UserRow> query = entityManager.createQuery(jpql.toString(), UserRow.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
@@ -2,26 +2,52 @@ package com.timesheet.offline.repository;
 
 import com.timesheet.offline.model.Role;
 import com.timesheet.offline.model.User;
+import com.timesheet.offline.projection.UserRow;
+import com.timesheet.offline.projection.UserStatusRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Spring Data JPA repository for the User entity.
+ * The lookup queries below are cached in the "user-queries" region of the second-level cache;
+ * Hibernate invalidates them whenever this node changes the users table, and UserCacheInvalidator
+ * when another node does.
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserDirectoryRepository {
     /**
-     * Finds a user by their email address.
+     * Finds an active user by their email address. Deleted users can't log in.
      * @param email The email to search for.
      * @return An Optional containing the user if found.
      */
-    Optional<User> findByEmail(String email);
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "user-queries")
+    })
+    @Query("SELECT u FROM User u WHERE u.email = :email AND u.deletedAt IS NULL")
+    Optional<User> findByEmail(@Param("email") String email);
 
     /**
-     * Checks if a user exists with the given email.
+     * Finds an active user by ID.
+     * @param id The ID of the user.
+     * @return An Optional containing the user, if they exist and are not deleted.
+     */
+    @Query("SELECT u FROM User u WHERE u.id = :id AND u.deletedAt IS NULL")
+    Optional<User> findActiveById(@Param("id") Long id);
+
+    /**
+     * Checks if a user exists with the given email, including deleted users that have not been purged yet.
      * This is more efficient than fetching the whole entity.
      * @param email The email to check.
      * @return true if a user with the email exists, false otherwise.
@@ -29,21 +55,94 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
 
     /**
-     * --- NEW METHOD ---
-     * Finds all users with a specific role.
-     * This is used to get all employees for PIN validation.
+     * Finds all active users with a role at one site. Served by the partial (site_id, role) index on active
+     * users, and cached per site, so a kiosk only ever checks PINs against its own site's employees.
      * @param role The role to search for.
-     * @return A list of users with the specified role.
+     * @param siteId The ID of the site.
+     * @return The site's active users with the given role.
      */
-    List<User> findAllByRole(Role role);
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "user-queries")
+    })
+    @Query("SELECT u FROM User u WHERE u.role = :role AND u.siteId = :siteId AND u.deletedAt IS NULL")
+    List<User> findAllByRoleAndSiteId(@Param("role") Role role, @Param("siteId") Long siteId);
 
     /**
-     * --- NEW METHOD ---
-     * Finds all users with a specific role, excluding a user with a given ID.
-     * This is used to check for PIN uniqueness when resetting an existing user's PIN.
+     * Finds all active users with a role at one site, excluding a user with a given ID.
+     * Used to check that a PIN is unique within its site.
      * @param role The role to search for.
+     * @param siteId The ID of the site.
      * @param id The ID of the user to exclude from the results.
      * @return A list of users.
      */
-    List<User> findAllByRoleAndIdNot(Role role, Long id);
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "user-queries")
+    })
+    @Query("SELECT u FROM User u WHERE u.role = :role AND u.siteId = :siteId AND u.id <> :id AND u.deletedAt IS NULL")
+    List<User> findAllByRoleAndSiteIdAndIdNot(@Param("role") Role role, @Param("siteId") Long siteId, @Param("id") Long id);
+
+    /**
+     * Finds all users, served from the query cache when the users table hasn't changed.
+     * @return A list of all users.
+     */
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "user-queries")
+    })
+    List<User> findAll();
+
+    /**
+     * Lists all users as read-only rows, without loading entities. Includes deleted users that have not been
+     * purged yet, since this is used to name the users in the audit log.
+     * @return One row per user, ordered by ID.
+     */
+    @Query("SELECT new com.timesheet.offline.projection.UserRow(u.id, u.email, u.role, u.siteId) FROM User u ORDER BY u.id")
+    List<UserRow> findAllRows();
+
+    /**
+     * Lists every active user with the bounds of their latest work session, in a single query.
+     * The correlated subquery is served by the (user_id, started_at) index on work_sessions.
+     * @return One row per user, ordered by ID.
+     */
+    @Query("SELECT new com.timesheet.offline.projection.UserStatusRow(u.id, u.email, u.role, u.siteId, w.startedAt, w.endedAt) "
+            + "FROM User u LEFT JOIN WorkSession w ON w.user = u "
+            + "AND w.startedAt = (SELECT MAX(w2.startedAt) FROM WorkSession w2 WHERE w2.user = u) "
+            + "WHERE u.deletedAt IS NULL "
+            + "ORDER BY u.id")
+    List<UserStatusRow> findAllStatusRows();
+
+    /**
+     * Same as findAllStatusRows, for the users of one site only.
+     * @param siteId The ID of the site.
+     * @return One row per user of the site, ordered by ID.
+     */
+    @Query("SELECT new com.timesheet.offline.projection.UserStatusRow(u.id, u.email, u.role, u.siteId, w.startedAt, w.endedAt) "
+            + "FROM User u LEFT JOIN WorkSession w ON w.user = u "
+            + "AND w.startedAt = (SELECT MAX(w2.startedAt) FROM WorkSession w2 WHERE w2.user = u) "
+            + "WHERE u.siteId = :siteId AND u.deletedAt IS NULL "
+            + "ORDER BY u.id")
+    List<UserStatusRow> findStatusRowsBySiteId(@Param("siteId") Long siteId);
+
+    /**
+     * Finds deleted users that are due to be purged, longest deleted first.
+     * Served by the small partial index on deleted users.
+     * @param cutoff Users deleted before this are due.
+     * @param pageable The maximum number of users.
+     * @return The IDs of the users to purge.
+     */
+    @Query("SELECT u.id FROM User u WHERE u.deletedAt < :cutoff ORDER BY u.deletedAt")
+    List<Long> findIdsDeletedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Removes a deleted user's row in one statement, bypassing the clock log cascade, which would
+     * load every clock log. Their clock logs and work sessions must have been deleted already.
+     * @param id The ID of the user.
+     * @return 1 if the user was removed, 0 if they are not deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :id AND u.deletedAt IS NOT NULL")
+    int deletePurgedUser(@Param("id") Long id);
 }
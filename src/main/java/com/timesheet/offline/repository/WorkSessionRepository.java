@@ -0,0 +1,133 @@
+package com.timesheet.offline.repository;
+
+import com.timesheet.offline.model.Role;
+import com.timesheet.offline.model.WorkSession;
+import com.timesheet.offline.projection.DailyWorkRow;
+import com.timesheet.offline.projection.SessionSpanRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Spring Data JPA repository for the WorkSession entity.
+ */
+@Repository
+public interface WorkSessionRepository extends JpaRepository<WorkSession, Long> {
+
+    /**
+     * Finds the user's open session, if they are currently clocked in.
+     * Served by the partial index on open sessions.
+     * @param userId The ID of the user.
+     * @return An Optional containing the open session.
+     */
+    Optional<WorkSession> findFirstByUserIdAndEndedAtIsNull(Long userId);
+
+    /**
+     * Finds the user's most recently started session, open or closed.
+     * Used for the double-tap debounce check.
+     * @param userId The ID of the user.
+     * @return An Optional containing the latest session.
+     */
+    Optional<WorkSession> findTopByUserIdOrderByStartedAtDesc(Long userId);
+
+    /**
+     * Closes an open session, but only if it is still open.
+     * This guards against two nodes closing the same session concurrently.
+     * @return 1 if the session was closed by this call, 0 if it had already been closed.
+     */
+    @Modifying
+    @Query("UPDATE WorkSession w SET w.endedAt = :endedAt, w.durationSeconds = :durationSeconds WHERE w.id = :id AND w.endedAt IS NULL")
+    int closeSession(@Param("id") Long id, @Param("endedAt") LocalDateTime endedAt, @Param("durationSeconds") long durationSeconds);
+
+    /**
+     * Finds the oldest sessions that are still open and started before a cutoff.
+     * Used by the forgotten clock-out sweeper in embedded mode, where its set-based statement isn't available.
+     * @param cutoff Only sessions started before this are returned.
+     * @param pageable The batch size.
+     * @return Open sessions, oldest first.
+     */
+    List<WorkSession> findByEndedAtIsNullAndStartedAtBeforeOrderByStartedAtAsc(LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Finds when the oldest stored session started, so the weekly reset knows which weeks it removes.
+     * @return The earliest start, or empty if there are no sessions.
+     */
+    @Query("SELECT MIN(w.startedAt) FROM WorkSession w")
+    Optional<LocalDateTime> findEarliestStartedAt();
+
+    /**
+     * Deletes all sessions started before a cutoff in a single batch operation.
+     * This is used for the scheduled weekly reset.
+     * @param cutoff Only sessions that started earlier are deleted.
+     * @return The number of sessions deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM WorkSession w WHERE w.startedAt < :cutoff")
+    int deleteByStartedAtBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * Sums the seconds of sessions that ended within a date range, per user and day.
+     * Hours are attributed to the day a session ends, as they were with clock-out logs.
+     * Deleted users are left out.
+     * @param start The start of the date range.
+     * @param end The end of the date range.
+     * @return One row per user and day with at least one closed session.
+     */
+    @Query("SELECT new com.timesheet.offline.projection.DailyWorkRow(u.id, u.email, CAST(w.endedAt AS LocalDate), SUM(w.durationSeconds)) "
+            + "FROM WorkSession w JOIN w.user u "
+            + "WHERE w.endedAt BETWEEN :start AND :end AND u.deletedAt IS NULL "
+            + "GROUP BY u.id, u.email, CAST(w.endedAt AS LocalDate) "
+            + "ORDER BY u.id")
+    List<DailyWorkRow> sumClosedByUserAndDay(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * Same as sumClosedByUserAndDay, for the sessions of one site only.
+     * Served by the (site_id, ended_at) index, so its cost doesn't grow with the number of sites.
+     * @param siteId The ID of the site.
+     * @param start The start of the date range.
+     * @param end The end of the date range.
+     * @return One row per user and day with at least one closed session at the site.
+     */
+    @Query("SELECT new com.timesheet.offline.projection.DailyWorkRow(u.id, u.email, CAST(w.endedAt AS LocalDate), SUM(w.durationSeconds)) "
+            + "FROM WorkSession w JOIN w.user u "
+            + "WHERE w.siteId = :siteId AND w.endedAt BETWEEN :start AND :end AND u.deletedAt IS NULL "
+            + "GROUP BY u.id, u.email, CAST(w.endedAt AS LocalDate) "
+            + "ORDER BY u.id")
+    List<DailyWorkRow> sumClosedByUserAndDayForSite(@Param("siteId") Long siteId,
+                                                    @Param("start") LocalDateTime start,
+                                                    @Param("end") LocalDateTime end);
+
+    /**
+     * Streams the start and end of every session that overlaps a time range, open sessions included.
+     * Sessions of deleted users are left out.
+     * Only two timestamps per session are read, and none of them enter the persistence context.
+     * Must be called inside a transaction, and the stream must be closed.
+     * @param from The start of the range.
+     * @param to The end of the range.
+     * @param siteId Only include this site's sessions; null for all sites.
+     * @param role Only include sessions of users with this role; null for all roles.
+     * @return A stream of session spans, in no particular order.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.timesheet.offline.projection.SessionSpanRow(w.startedAt, w.endedAt) "
+            + "FROM WorkSession w JOIN w.user u "
+            + "WHERE w.startedAt < :to AND (w.endedAt IS NULL OR w.endedAt > :from) "
+            + "AND (:siteId IS NULL OR w.siteId = :siteId) "
+            + "AND u.deletedAt IS NULL "
+            + "AND (:role IS NULL OR u.role = :role)")
+    Stream<SessionSpanRow> streamSpansOverlapping(@Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to,
+                                                  @Param("siteId") Long siteId,
+                                                  @Param("role") Role role);
+}
@@ -1,17 +1,23 @@
 package com.timesheet.offline.service;
 
+import com.timesheet.offline.config.RecentWrites;
 import com.timesheet.offline.dto.*;
+import com.timesheet.offline.export.RowWriter;
 import com.timesheet.offline.model.AuditLog;
-import com.timesheet.offline.model.ClockAction;
-import com.timesheet.offline.model.ClockLog;
+import com.timesheet.offline.model.OutboxEventType;
 import com.timesheet.offline.model.Role;
 import com.timesheet.offline.model.User;
+import com.timesheet.offline.projection.AuditLogRow;
+import com.timesheet.offline.projection.DailyWorkRow;
+import com.timesheet.offline.projection.UserRow;
+import com.timesheet.offline.projection.UserStatusRow;
 import com.timesheet.offline.repository.AuditLogRepository;
-import com.timesheet.offline.repository.ClockLogRepository;
+import com.timesheet.offline.repository.UserDirectoryRepository;
 import com.timesheet.offline.repository.UserRepository;
+import com.timesheet.offline.repository.WorkSessionRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -20,19 +26,19 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -45,108 +51,132 @@ public class AdminService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    private final AuditService auditService;
+    private final OutboxService outboxService;
     private final AuditLogRepository auditLogRepository;
-    private final ClockLogRepository clockLogRepository;
+    private final WorkSessionRepository workSessionRepository;
+    private final AuditArchiveService auditArchiveService;
+    private final EntityManager entityManager;
+    private final SiteService siteService;
+    private final TimesheetSnapshotService timesheetSnapshotService;
+    private final RecentWrites recentWrites;
+
+    @Value("${users.directory.max-page-size:200}")
+    private int maxDirectoryPageSize;
 
     /**
-     * --- FIX FOR 500 ERROR ---
-     * This method now correctly uses the userMap it creates by passing it to the
-     * toAuditLogDto helper method via a lambda function. This prevents the N+1 query problem.
+     * Pages through audit logs as read-only rows. User emails are joined in the same query,
+     * so no entities are loaded and there is no per-row user lookup.
+     * @param siteId Only return this site's entries; null for all entries.
      */
-    public Page<AuditLogDto> getAuditLogs(Pageable pageable) {
-        Page<AuditLog> auditLogPage = auditLogRepository.findAllByOrderByTimestampDesc(pageable);
-        
-        Set<Long> userIds = auditLogPage.getContent().stream()
-                .map(AuditLog::getUserId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+    @Transactional(readOnly = true)
+    public Page<AuditLogDto> getAuditLogs(Long siteId, Pageable pageable) {
+        Page<AuditLogRow> rows = siteId != null
+                ? auditLogRepository.findRowsBySiteIdOrderByTimestampDesc(siteId, pageable)
+                : auditLogRepository.findRowsOrderByTimestampDesc(pageable);
+        return rows.map(this::toAuditLogDto);
+    }
 
-        Map<Long, User> userMap = userRepository.findAllById(userIds).stream()
-                .collect(Collectors.toMap(User::getId, Function.identity()));
+    /**
+     * Builds the weekly timesheet from work sessions. The database sums each user's closed
+     * sessions per day; durations are summed as exact seconds and only converted to hours for the response.
+     * Without a site, each site is queried separately and in parallel (see SiteService.collectPerSite).
+     * Results are cached by TimesheetSnapshotService; weeks that are over are only computed once.
+     * Not @Transactional: each site query runs in its own read-only transaction.
+     * @param siteId Only include this site; null for all sites.
+     */
+    public List<WeeklyTimesheetDto> getWeeklyTimesheet(LocalDate weekStartDate, Long siteId) {
+        return timesheetSnapshotService.getOrCompute(weekStartDate, siteId, () -> {
+            if (siteId != null) {
+                return siteService.inReportTransaction(() -> getSiteWeeklyTimesheet(weekStartDate, siteId));
+            }
+            return siteService.collectPerSite(id -> getSiteWeeklyTimesheet(weekStartDate, id));
+        });
+    }
 
-        return auditLogPage.map(log -> toAuditLogDto(log, userMap));
+    /**
+     * Stores the final timesheets of a week, for each site and for all sites, as closed-week snapshots.
+     * Called by the weekly reset, in its transaction, before it deletes the week's work sessions.
+     */
+    public void saveFinalWeeklyTimesheets(LocalDate weekStartDate) {
+        List<WeeklyTimesheetDto> allSites = new ArrayList<>();
+        for (SiteDto site : siteService.getSites()) {
+            List<WeeklyTimesheetDto> siteTimesheets = getSiteWeeklyTimesheet(weekStartDate, site.getId());
+            timesheetSnapshotService.saveFinalSnapshot(weekStartDate, site.getId(), siteTimesheets);
+            allSites.addAll(siteTimesheets);
+        }
+        timesheetSnapshotService.saveFinalSnapshot(weekStartDate, null, allSites);
     }
 
-    public List<WeeklyTimesheetDto> getWeeklyTimesheet(LocalDate weekStartDate) {
+    private List<WeeklyTimesheetDto> getSiteWeeklyTimesheet(LocalDate weekStartDate, Long siteId) {
         LocalDateTime startOfWeek = weekStartDate.atStartOfDay();
         LocalDateTime endOfWeek = startOfWeek.plusDays(7);
 
-        List<ClockLog> logs = clockLogRepository.findByTimestampBetween(startOfWeek, endOfWeek);
-
-        Map<User, List<ClockLog>> logsByUser = logs.stream()
-                .collect(Collectors.groupingBy(ClockLog::getUser));
+        Map<Long, List<DailyWorkRow>> rowsByUser = workSessionRepository.sumClosedByUserAndDayForSite(siteId, startOfWeek, endOfWeek).stream()
+                .collect(Collectors.groupingBy(DailyWorkRow::userId, LinkedHashMap::new, Collectors.toList()));
 
         List<WeeklyTimesheetDto> timesheets = new ArrayList<>();
-        for (Map.Entry<User, List<ClockLog>> entry : logsByUser.entrySet()) {
-            User user = entry.getKey();
-            List<ClockLog> userLogs = entry.getValue();
-
-            Map<LocalDate, Double> dailyHours = userLogs.stream()
-                    .filter(log -> log.getAction() == ClockAction.CLOCK_OUT && log.getDurationHours() != null)
-                    .collect(Collectors.groupingBy(
-                            log -> log.getTimestamp().toLocalDate(),
-                            Collectors.summingDouble(ClockLog::getDurationHours)
-                    ));
+        for (List<DailyWorkRow> userRows : rowsByUser.values()) {
+            Map<LocalDate, Long> dailySeconds = userRows.stream()
+                    .collect(Collectors.toMap(DailyWorkRow::day, DailyWorkRow::seconds, Long::sum));
 
             Map<String, Double> formattedDailyHours = new HashMap<>();
+            long totalSeconds = 0;
             for(int i=0; i<7; i++){
                 LocalDate day = weekStartDate.plusDays(i);
-                formattedDailyHours.put(day.toString(), dailyHours.getOrDefault(day, 0.0));
+                long seconds = dailySeconds.getOrDefault(day, 0L);
+                totalSeconds += seconds;
+                formattedDailyHours.put(day.toString(), seconds / 3600.0);
             }
 
-            double totalHours = formattedDailyHours.values().stream().mapToDouble(Double::doubleValue).sum();
-
+            DailyWorkRow first = userRows.get(0);
             timesheets.add(WeeklyTimesheetDto.builder()
-                    .userId(user.getId())
-                    .userEmail(user.getEmail())
+                    .userId(first.userId())
+                    .userEmail(first.email())
+                    .siteId(siteId)
                     .dailyHours(formattedDailyHours)
-                    .totalHours(totalHours)
+                    .totalHours(totalSeconds / 3600.0)
                     .build());
         }
         return timesheets;
     }
 
     /**
-     * --- FIX FOR 500 ERROR ---
-     * This method now correctly uses the userMap it creates by passing it to the
-     * formatLogAsNotification helper method via a lambda function.
+     * Builds the notification feed from the 20 most recent audit log rows.
      */
+    @Transactional(readOnly = true)
     public List<NotificationDto> getNotifications() {
-        Pageable limit = PageRequest.of(0, 20);
-        Page<AuditLog> recentLogsPage = auditLogRepository.findAllByOrderByTimestampDesc(limit);
-        List<AuditLog> recentLogs = recentLogsPage.getContent();
-
-        Set<Long> userIds = recentLogs.stream()
-                .map(AuditLog::getUserId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
-        Map<Long, User> userMap = userRepository.findAllById(userIds).stream()
-                .collect(Collectors.toMap(User::getId, Function.identity()));
-
-        return recentLogs.stream()
-                .map(log -> formatLogAsNotification(log, userMap))
+        return auditLogRepository.findRecentRows(PageRequest.of(0, 20)).stream()
+                .map(this::formatLogAsNotification)
                 .collect(Collectors.toList());
     }
 
-    public List<UserStatusDto> getUserStatuses() {
-        List<User> users = userRepository.findAll();
-        return users.stream().map(user -> {
-            Optional<ClockLog> lastLogOpt = clockLogRepository.findTopByUserIdOrderByTimestampDesc(user.getId());
+    /**
+     * Reports whether each user is clocked in, based on their latest work session.
+     * All users and their latest sessions are read in a single query.
+     * @param siteId Only include this site's users; null for all users.
+     */
+    @Transactional(readOnly = true)
+    public List<UserStatusDto> getUserStatuses(Long siteId) {
+        List<UserStatusRow> rows = siteId != null
+                ? userRepository.findStatusRowsBySiteId(siteId)
+                : userRepository.findAllStatusRows();
+        return rows.stream().map(row -> {
             String status = "Never Clocked In";
-            java.time.LocalDateTime lastActionTimestamp = null;
-
-            if (lastLogOpt.isPresent()) {
-                ClockLog lastLog = lastLogOpt.get();
-                status = lastLog.getAction() == ClockAction.CLOCK_IN ? "Clocked In" : "Clocked Out";
-                lastActionTimestamp = lastLog.getTimestamp();
+            LocalDateTime lastActionTimestamp = null;
+
+            if (row.isClockedIn()) {
+                status = "Clocked In";
+                lastActionTimestamp = row.lastStartedAt();
+            } else if (row.hasClockedIn()) {
+                status = "Clocked Out";
+                lastActionTimestamp = row.lastEndedAt();
             }
 
             return UserStatusDto.builder()
-                    .id(user.getId())
-                    .email(user.getEmail())
-                    .role(user.getRole())
+                    .id(row.id())
+                    .email(row.email())
+                    .role(row.role())
+                    .siteId(row.siteId())
                     .status(status)
                     .lastActionTimestamp(lastActionTimestamp)
                     .build();
@@ -163,22 +193,33 @@ public class AdminService {
             throw new IllegalArgumentException("Email is already in use.");
         }
         
+        Long siteId = createUserRequestDto.getSiteId();
         if (createUserRequestDto.getRole() == Role.ROLE_EMPLOYEE) {
-            List<User> employees = userRepository.findAllByRole(Role.ROLE_EMPLOYEE);
+            if (siteId == null) {
+                siteId = siteService.getOnlySiteId();
+            }
+            siteService.requireSite(siteId);
+            // PINs only need to be unique within a site, since kiosks only search their own site.
+            List<User> employees = userRepository.findAllByRoleAndSiteId(Role.ROLE_EMPLOYEE, siteId);
             boolean pinExists = employees.stream()
                     .anyMatch(employee -> passwordEncoder.matches(createUserRequestDto.getPin(), employee.getPassword()));
             if (pinExists) {
-                throw new IllegalArgumentException("This PIN is already in use by another employee. Please choose a unique PIN.");
+                throw new IllegalArgumentException("This PIN is already in use by another employee at this site. Please choose a unique PIN.");
             }
+        } else if (siteId != null) {
+            siteService.requireSite(siteId);
         }
 
         User user = new User();
         user.setEmail(createUserRequestDto.getEmail());
         user.setRole(createUserRequestDto.getRole());
+        user.setSiteId(siteId);
         user.setPassword(passwordEncoder.encode(createUserRequestDto.getPin()));
 
         User savedUser = userRepository.save(user);
-        auditService.log(null, "USER_CREATE_SUCCESS", "SUCCESS", "Admin created user: " + savedUser.getEmail());
+        recentWrites.recordAfterCommit();
+        outboxService.publish(OutboxEventType.USER_CREATED, savedUser.getId(), savedUser.getSiteId(), LocalDateTime.now(),
+                userChangePayload(savedUser));
         return toUserDto(savedUser);
     }
     
@@ -188,88 +229,187 @@ public class AdminService {
         userRepository.save(user);
     }
 
-    public List<UserDto> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(this::toUserDto)
-                .collect(Collectors.toList());
+    /**
+     * Gets one page of the user directory, with keyset paging, so every page costs the same however deep it is.
+     * @param search A case-insensitive email prefix; null or blank for all users.
+     * @param role Only users with this role, or null for all roles.
+     * @param siteId Only users of this site, or null for all sites.
+     * @param sort "email" or "id".
+     * @param direction "asc" or "desc".
+     * @param cursor The nextCursor of the previous page, or null for the first page.
+     * @param limit The page size, capped at users.directory.max-page-size.
+     */
+    @Transactional(readOnly = true)
+    public UserDirectoryPageDto getUserDirectory(String search, Role role, Long siteId, String sort, String direction,
+                                                 String cursor, int limit) {
+        UserDirectoryRepository.SortKey sortKey = switch (sort.toLowerCase()) {
+            case "email" -> UserDirectoryRepository.SortKey.EMAIL;
+            case "id" -> UserDirectoryRepository.SortKey.ID;
+            default -> throw new IllegalArgumentException("Unknown sort: " + sort + ". Use email or id.");
+        };
+        boolean descending = switch (direction.toLowerCase()) {
+            case "asc" -> false;
+            case "desc" -> true;
+            default -> throw new IllegalArgumentException("Unknown direction: " + direction + ". Use asc or desc.");
+        };
+        int pageSize = Math.max(1, Math.min(limit, maxDirectoryPageSize));
+        String emailPrefix = search == null || search.isBlank() ? null : search.trim();
+        UserRow after = cursor == null || cursor.isBlank() ? null : decodeDirectoryCursor(cursor, sortKey, descending);
+
+        // One extra row tells whether there is a next page, without a count query.
+        List<UserRow> rows = userRepository.findDirectoryRows(emailPrefix, role, siteId, sortKey, descending, after, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<UserRow> page = hasMore ? rows.subList(0, pageSize) : rows;
+        return UserDirectoryPageDto.builder()
+                .users(page.stream().map(this::toUserDto).collect(Collectors.toList()))
+                .nextCursor(hasMore ? encodeDirectoryCursor(page.get(page.size() - 1), sortKey, descending) : null)
+                .build();
     }
 
+    /**
+     * Deletes a user by marking them deleted, which is a single row update. From then on they can't punch or
+     * log in, and are left out of reports; UserPurgeService removes them and their history later, in chunks.
+     */
     @Transactional
     public void deleteUser(Long userId) {
-        User user = userRepository.findById(userId)
+        User user = userRepository.findActiveById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found for deletion."));
-        userRepository.deleteById(userId);
-        auditService.log(null, "USER_DELETE_SUCCESS", "SUCCESS", "Admin deleted user: " + user.getEmail());
+        user.setDeletedAt(LocalDateTime.now());
+        // The user's hours disappear from every week they worked in.
+        timesheetSnapshotService.invalidateAll();
+        recentWrites.recordAfterCommit();
+        outboxService.publish(OutboxEventType.USER_DELETED, user.getId(), user.getSiteId(), user.getDeletedAt(),
+                userChangePayload(user));
     }
 
     @Transactional
     public void resetUserPin(Long userId, String newPin) {
-        User user = userRepository.findById(userId)
+        User user = userRepository.findActiveById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found for PIN reset."));
         
         if (user.getRole() == Role.ROLE_EMPLOYEE) {
-             List<User> otherEmployees = userRepository.findAllByRoleAndIdNot(Role.ROLE_EMPLOYEE, userId);
+             List<User> otherEmployees = userRepository.findAllByRoleAndSiteIdAndIdNot(Role.ROLE_EMPLOYEE, user.getSiteId(), userId);
              boolean pinExists = otherEmployees.stream()
                     .anyMatch(employee -> passwordEncoder.matches(newPin, employee.getPassword()));
             if (pinExists) {
-                throw new IllegalArgumentException("This PIN is already in use by another employee. Please choose a unique PIN.");
+                throw new IllegalArgumentException("This PIN is already in use by another employee at this site. Please choose a unique PIN.");
             }
         }
         
         user.setPassword(passwordEncoder.encode(newPin));
         userRepository.save(user);
-        auditService.log(null, "USER_CREDENTIALS_RESET_SUCCESS", "SUCCESS", "Admin reset credentials for user: " + user.getEmail());
+        recentWrites.recordAfterCommit();
+        outboxService.publish(OutboxEventType.USER_CREDENTIALS_RESET, user.getId(), user.getSiteId(), LocalDateTime.now(),
+                userChangePayload(user));
     }
 
-    public void exportAuditLogs(Writer writer, LocalDateTime startDate, LocalDateTime endDate) {
-        List<AuditLog> logs = auditLogRepository.findByTimestampBetween(startDate, endDate);
-        writeAuditLogsToCsv(writer, logs);
+    private Map<String, Object> userChangePayload(User user) {
+        return Map.of("email", user.getEmail(), "role", user.getRole().name());
     }
 
-    public void exportAuditLogs(Writer writer) {
-        List<AuditLog> logs = auditLogRepository.findAll();
-        writeAuditLogsToCsv(writer, logs);
+    /**
+     * Exports audit logs within a date range, reading archived segments for ids up to the
+     * archive watermark and the live table for everything after it.
+     */
+    @Transactional(readOnly = true)
+    public void exportAuditLogs(RowWriter writer, LocalDateTime startDate, LocalDateTime endDate) {
+        long watermark = auditArchiveService.highestArchivedId();
+        try (Stream<AuditLog> liveLogs = auditLogRepository.streamByIdGreaterThanAndTimestampBetweenOrderByIdAsc(watermark, startDate, endDate)) {
+            writeAuditLogs(writer, watermark, startDate, endDate, liveLogs);
+        }
     }
 
-    private void writeAuditLogsToCsv(Writer writer, List<AuditLog> logs) {
-        Set<Long> userIds = logs.stream()
-                .map(AuditLog::getUserId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+    @Transactional(readOnly = true)
+    public void exportAuditLogs(RowWriter writer) {
+        long watermark = auditArchiveService.highestArchivedId();
+        try (Stream<AuditLog> liveLogs = auditLogRepository.streamByIdGreaterThanOrderByIdAsc(watermark)) {
+            writeAuditLogs(writer, watermark, null, null, liveLogs);
+        }
+    }
 
-        Map<Long, User> userMap = userRepository.findAllById(userIds).stream()
-                .collect(Collectors.toMap(User::getId, Function.identity()));
+    /**
+     * The live stream is opened before the archive is read, so its database snapshot still
+     * contains any rows that the archive job moves while the export is running.
+     */
+    private void writeAuditLogs(RowWriter writer, long watermark, LocalDateTime startDate, LocalDateTime endDate, Stream<AuditLog> liveLogs) {
+        Map<Long, String> userEmails = userRepository.findAllRows().stream()
+                .collect(Collectors.toMap(UserRow::id, UserRow::email));
 
         String[] headers = {"LogID", "Timestamp (UTC)", "UserEmail", "Action", "Status", "IP Address", "Details"};
-        try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(headers).build())) {
-            for (AuditLog log : logs) {
-                String formattedTimestamp = log.getTimestamp() != null ? log.getTimestamp().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) : "N/A";
-                String userEmail = "System";
-                if (log.getUserId() != null) {
-                    User user = userMap.get(log.getUserId());
-                    userEmail = (user != null) ? user.getEmail() : "Unknown User (ID: " + log.getUserId() + ")";
+        try {
+            writer.writeHeader(headers);
+            auditArchiveService.readArchived(startDate, endDate, watermark, log -> {
+                try {
+                    writeAuditLogRow(writer, log, userEmails);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-                
-                csvPrinter.printRecord(
-                        log.getId(),
-                        formattedTimestamp,
-                        userEmail,
-                        log.getAction(),
-                        log.getStatus(),
-                        log.getIpAddress(),
-                        log.getDetails()
-                );
+            });
+            Iterator<AuditLog> iterator = liveLogs.iterator();
+            while (iterator.hasNext()) {
+                AuditLog log = iterator.next();
+                writeAuditLogRow(writer, log, userEmails);
+                entityManager.detach(log);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Failed to write audit log export: " + e.getMessage());
+        }
+    }
+
+    private void writeAuditLogRow(RowWriter writer, AuditLog log, Map<Long, String> userEmails) throws IOException {
+        String formattedTimestamp = log.getTimestamp() != null ? log.getTimestamp().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) : "N/A";
+        String userEmail = "System";
+        if (log.getUserId() != null) {
+            String email = userEmails.get(log.getUserId());
+            userEmail = (email != null) ? email : "Unknown User (ID: " + log.getUserId() + ")";
+        }
+
+        writer.writeRow(
+                log.getId(),
+                formattedTimestamp,
+                userEmail,
+                log.getAction(),
+                log.getStatus(),
+                log.getIpAddress(),
+                log.getDetails()
+        );
+    }
+
+    /**
+     * The cursor is the last row's sort key, tagged with the sort it belongs to, so it can't be used with another sort.
+     */
+    private static String encodeDirectoryCursor(UserRow last, UserDirectoryRepository.SortKey sortKey, boolean descending) {
+        String value = sortKey + "|" + (descending ? "desc" : "asc") + "|" + last.id() + "|" + last.email();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static UserRow decodeDirectoryCursor(String cursor, UserDirectoryRepository.SortKey sortKey, boolean descending) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 4);
+            if (parts.length != 4 || !parts[0].equals(sortKey.name()) || !parts[1].equals(descending ? "desc" : "asc")) {
+                throw new IllegalArgumentException("The cursor belongs to a different sort order.");
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to write audit logs to CSV file: " + e.getMessage());
+            return new UserRow(Long.parseLong(parts[2]), parts[3], null, null);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
         }
     }
 
+    private UserDto toUserDto(UserRow user) {
+        return UserDto.builder()
+                .id(user.id())
+                .email(user.email())
+                .role(user.role())
+                .siteId(user.siteId())
+                .build();
+    }
+
     private UserDto toUserDto(User user) {
         return UserDto.builder()
                 .id(user.getId())
                 .email(user.getEmail())
                 .role(user.getRole())
+                .siteId(user.getSiteId())
                 .build();
     }
     
@@ -284,20 +424,19 @@ public class AdminService {
                 .collect(Collectors.joining(" "));
     }
     
-    private NotificationDto formatLogAsNotification(AuditLog log, Map<Long, User> userMap) {
+    private NotificationDto formatLogAsNotification(AuditLogRow log) {
         String message = "An unspecified action occurred.";
-        if (log.getDetails() != null && !log.getDetails().isBlank()) {
-            message = log.getDetails();
+        if (log.details() != null && !log.details().isBlank()) {
+            message = log.details();
         }
 
-        if (log.getAction() != null) {
+        if (log.action() != null) {
             String userName = "System";
-            if (log.getUserId() != null) {
-                User user = userMap.get(log.getUserId());
-                userName = (user != null) ? extractNameFromEmail(user.getEmail()) : "An unknown user";
+            if (log.userId() != null) {
+                userName = (log.userEmail() != null) ? extractNameFromEmail(log.userEmail()) : "An unknown user";
             }
 
-            switch (log.getAction()) {
+            switch (log.action()) {
                 case "CLOCK_IN_SUCCESS":
                     message = userName + " clocked in.";
                     break;
@@ -307,29 +446,31 @@ public class AdminService {
                 case "ADMIN_LOGIN_SUCCESS":
                     message = userName + " logged into the admin dashboard.";
                     break;
+                case "AUTO_CLOCK_OUT":
+                    message = userName + " forgot to clock out. " + message;
+                    break;
             }
         }
         
         return NotificationDto.builder()
-                .id(log.getId())
+                .id(log.id())
                 .message(message)
-                .timestamp(log.getTimestamp())
+                .timestamp(log.timestamp())
                 .build();
     }
     
-    private AuditLogDto toAuditLogDto(AuditLog log, Map<Long, User> userMap) {
+    private AuditLogDto toAuditLogDto(AuditLogRow log) {
         String userEmail = "System";
-        if (log.getUserId() != null) {
-            User user = userMap.get(log.getUserId());
-            userEmail = (user != null) ? user.getEmail() : "Unknown User";
+        if (log.userId() != null) {
+            userEmail = (log.userEmail() != null) ? log.userEmail() : "Unknown User";
         }
         return AuditLogDto.builder()
-                .id(log.getId())
-                .timestamp(log.getTimestamp())
-                .action(log.getAction())
-                .status(log.getStatus())
+                .id(log.id())
+                .timestamp(log.timestamp())
+                .action(log.action())
+                .status(log.status())
                 .userEmail(userEmail)
-                .details(log.getDetails())
+                .details(log.details())
                 .build();
     }
 }
@@ -0,0 +1,178 @@
+package com.timesheet.offline.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.model.AuditLog;
+import com.timesheet.offline.repository.AuditLogRepository;
+import com.timesheet.offline.storage.AuditSegment;
+import com.timesheet.offline.storage.AuditSegmentWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Moves old audit logs out of the hot 'audit_logs' table into compressed, immutable
+ * segment files on local disk, and reads them back for exports of old date ranges.
+ */
+@Service
+@RequiredArgsConstructor
+public class AuditArchiveService {
+
+    private final AuditLogRepository auditLogRepository;
+    private final AuditService auditService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${audit.archive.dir:./data/audit-archive}")
+    private String archiveDir;
+
+    @Value("${audit.archive.retention-days:180}")
+    private int retentionDays;
+
+    @Value("${audit.archive.segment-rows:50000}")
+    private int segmentRows;
+
+    @Value("${audit.archive.block-rows:500}")
+    private int blockRows;
+
+    @Value("${audit.archive.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Scheduled task that archives every audit log older than the retention period.
+     * Rows are archived as a contiguous id range, so the highest archived id is a reliable
+     * watermark: if a previous run crashed after writing a segment but before deleting its rows,
+     * those rows are simply deleted at the start of the next run instead of being archived twice.
+     * Scheduled through ClusterJobScheduler (see ScheduledJobsConfig); in a multi-node deployment
+     * audit.archive.dir must point at storage shared by all nodes.
+     */
+    public void archiveOldLogs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        Path directory = Paths.get(archiveDir);
+        try {
+            long watermark = highestArchivedId(directory);
+            purgeAlreadyArchived(watermark);
+
+            int archived = 0;
+            while (true) {
+                List<AuditLog> segmentLogs = collectSegment(watermark, cutoff);
+                if (segmentLogs.isEmpty()) {
+                    break;
+                }
+                AuditSegment segment = AuditSegmentWriter.write(directory, segmentLogs, blockRows, objectMapper);
+                deleteInChunks(watermark, segment.getLastId());
+                watermark = segment.getLastId();
+                archived += segmentLogs.size();
+                if (segmentLogs.size() < segmentRows) {
+                    break;
+                }
+            }
+
+            if (archived > 0) {
+                auditService.log(null, "AUDIT_ARCHIVE_SUCCESS", "SUCCESS", "Archived " + archived + " audit logs older than " + cutoff + ".");
+                System.out.println("Audit archive moved " + archived + " rows to " + directory.toAbsolutePath());
+            }
+        } catch (IOException e) {
+            auditService.log(null, "AUDIT_ARCHIVE_FAILURE", "FAILURE", "Error archiving audit logs: " + e.getMessage());
+            throw new RuntimeException("Failed to archive audit logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams archived audit logs within a date range to the consumer, oldest segment first.
+     * Only segments at or below the given watermark are read, so a caller that reads the live
+     * table for ids above the same watermark sees every row exactly once.
+     * @param startDate The start of the range, or null for no lower bound.
+     * @param endDate The end of the range, or null for no upper bound.
+     * @param upToId The archive watermark, as returned by {@link #highestArchivedId()}.
+     * @param consumer Receives each matching log.
+     */
+    public void readArchived(LocalDateTime startDate, LocalDateTime endDate, long upToId, Consumer<AuditLog> consumer) {
+        try {
+            for (AuditSegment segment : listSegments(Paths.get(archiveDir))) {
+                if (segment.getLastId() <= upToId && segment.overlaps(startDate, endDate)) {
+                    segment.read(startDate, endDate, objectMapper, consumer);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read archived audit logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The highest audit log id that has been moved to a segment file, or 0 if nothing is archived yet.
+     */
+    public long highestArchivedId() {
+        try {
+            return highestArchivedId(Paths.get(archiveDir));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read the audit archive: " + e.getMessage());
+        }
+    }
+
+    private List<AuditLog> collectSegment(long afterId, LocalDateTime cutoff) {
+        List<AuditLog> segmentLogs = new ArrayList<>();
+        long lastSeen = afterId;
+        while (segmentLogs.size() < segmentRows) {
+            int want = Math.min(chunkSize, segmentRows - segmentLogs.size());
+            List<AuditLog> batch = auditLogRepository.findByIdGreaterThanOrderByIdAsc(lastSeen, PageRequest.of(0, want));
+            for (AuditLog log : batch) {
+                if (!log.getTimestamp().isBefore(cutoff)) {
+                    // Stop at the first row inside the retention period to keep the archived range contiguous.
+                    return segmentLogs;
+                }
+                segmentLogs.add(log);
+            }
+            if (batch.size() < want) {
+                break;
+            }
+            lastSeen = batch.get(batch.size() - 1).getId();
+        }
+        return segmentLogs;
+    }
+
+    private void purgeAlreadyArchived(long watermark) {
+        auditLogRepository.findTopByOrderByIdAsc()
+                .filter(oldest -> oldest.getId() <= watermark)
+                .ifPresent(oldest -> deleteInChunks(oldest.getId() - 1, watermark));
+    }
+
+    private void deleteInChunks(long fromExclusive, long toInclusive) {
+        for (long lower = fromExclusive; lower < toInclusive; lower += chunkSize) {
+            auditLogRepository.deleteByIdRange(lower, Math.min(lower + chunkSize, toInclusive));
+        }
+    }
+
+    private long highestArchivedId(Path directory) throws IOException {
+        List<AuditSegment> segments = listSegments(directory);
+        return segments.isEmpty() ? 0L : segments.get(segments.size() - 1).getLastId();
+    }
+
+    private List<AuditSegment> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Path> indexFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            indexFiles = files
+                    .filter(path -> path.getFileName().toString().endsWith(".idx"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<AuditSegment> segments = new ArrayList<>(indexFiles.size());
+        for (Path indexFile : indexFiles) {
+            segments.add(AuditSegment.open(indexFile));
+        }
+        return segments;
+    }
+}
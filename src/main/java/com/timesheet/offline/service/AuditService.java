@@ -4,6 +4,8 @@ import com.timesheet.offline.model.AuditLog;
 import com.timesheet.offline.repository.AuditLogRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 
@@ -24,15 +26,46 @@ public class AuditService {
      * @param details Additional details about the event.
      */
     public void log(Long userId, String action, String status, String details) {
+        logForSite(null, userId, action, status, details);
+    }
+
+    /**
+     * Creates and saves a new audit log that belongs to one site, so it shows up in that site's audit view.
+     * @param siteId The ID of the site the event happened at (can be null for events that span sites).
+     * @param userId The ID of the user performing the action (can be null for system events).
+     * @param action A description of the action performed.
+     * @param status The status of the action (e.g., SUCCESS, FAILURE).
+     * @param details Additional details about the event.
+     */
+    public void logForSite(Long siteId, Long userId, String action, String status, String details) {
+        logForSite(siteId, userId, action, status, details, LocalDateTime.now());
+    }
+
+    /**
+     * Same as {@link #logForSite(Long, Long, String, String, String)}, for an event that happened earlier,
+     * such as one delivered through the outbox.
+     * @param timestamp When the event happened.
+     */
+    public void logForSite(Long siteId, Long userId, String action, String status, String details, LocalDateTime timestamp) {
         AuditLog log = new AuditLog();
+        log.setSiteId(siteId);
         log.setUserId(userId);
         log.setAction(action);
         log.setStatus(status);
         log.setDetails(details);
-        log.setTimestamp(LocalDateTime.now());
+        log.setTimestamp(timestamp);
         // In a real web context, you'd get the IP from the HttpServletRequest.
         // For this offline system, we'll leave it null for now.
         log.setIpAddress(null);
         auditLogRepository.save(log);
     }
+
+    /**
+     * Same as {@link #log}, but commits the entry in its own read-write transaction.
+     * Used from read-only transactions, which may be running on the read replica.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void logInNewTransaction(Long userId, String action, String status, String details) {
+        log(userId, action, status, details);
+    }
 }
@@ -1,28 +1,44 @@
 package com.timesheet.offline.service;
 
+import com.timesheet.offline.config.RecentWrites;
 import com.timesheet.offline.dto.*;
+import com.timesheet.offline.exception.TooManyAttemptsException;
 import com.timesheet.offline.model.ClockAction;
 import com.timesheet.offline.model.ClockLog;
+import com.timesheet.offline.model.OutboxEventType;
 import com.timesheet.offline.model.Role;
 import com.timesheet.offline.model.User;
+import com.timesheet.offline.model.WorkSession;
 import com.timesheet.offline.repository.ClockLogRepository;
 import com.timesheet.offline.repository.UserRepository;
+import com.timesheet.offline.repository.WorkSessionRepository;
 import com.timesheet.offline.security.JwtService;
+import com.timesheet.offline.storage.JournaledPunch;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -34,61 +50,240 @@ import java.util.stream.Stream;
 @RequiredArgsConstructor
 public class AuthService {
 
+    private static final int PUNCH_LOCK_STRIPES = 256;
+    private static final long PUNCH_LOCK_TIMEOUT_SECONDS = 5;
+
     private final UserRepository userRepository;
     private final ClockLogRepository clockLogRepository;
+    private final WorkSessionRepository workSessionRepository;
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
     private final AuditService auditService;
+    private final OutboxService outboxService;
     private final UserDetailsServiceImpl userDetailsService;
     private final PasswordEncoder passwordEncoder;
+    private final PlatformTransactionManager transactionManager;
+    private final PinAttemptThrottle pinAttemptThrottle;
+    private final SiteService siteService;
+    private final TimesheetSnapshotService timesheetSnapshotService;
+    private final PunchJournalService punchJournalService;
+    private final RecentWrites recentWrites;
+
+    private final Lock[] punchLocks = createPunchLocks();
+
+    /** The last employees read for each site, and the site of each kiosk, for punching while the database is down. */
+    private final Map<Long, List<User>> lastKnownEmployees = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastKnownKioskSites = new ConcurrentHashMap<>();
+    /** IDs of registered kiosks that have punched, so they keep their own throttling bucket while the database is down. */
+    private final Set<String> lastKnownRegisteredKiosks = ConcurrentHashMap.newKeySet();
+
+    @Value("${kiosk.punch.debounce-seconds:5}")
+    private long punchDebounceSeconds;
+
+    @PostConstruct
+    void registerJournalApplier() {
+        punchJournalService.registerApplier(this::applyJournaledPunch);
+    }
 
     /**
      * Handles the clock-in and clock-out logic for employees using only a unique PIN.
-     * This method iterates through employees to find a match for the provided PIN.
-     * @param pin The unique PIN submitted by the employee.
+     * This method iterates through the employees of the kiosk's site to find a match for the provided PIN.
+     * A punch opens or closes the employee's work session, and is also recorded as a clock log event.
+     * <p>
+     * Punches for the same employee are serialized: in this JVM by a striped lock held across the
+     * whole transaction, and across nodes by the unique partial index on open sessions plus a
+     * conditional close. Punches for different employees only contend if they hash to the same stripe.
+     * <p>
+     * Failed attempts are throttled per client by PinAttemptThrottle; a locked-out client is
+     * rejected before any PIN is hashed. A client is its address, plus the kiosk ID if that kiosk
+     * is registered, so kiosks sharing an address are throttled separately. The ID comes from a
+     * header the client sets, so unregistered IDs are ignored: otherwise every made-up ID would
+     * start with a fresh bucket.
+     * <p>
+     * If the database is unreachable, the punch is written to the local punch journal instead and
+     * applied later (see PunchJournalService); the response then only confirms that it was saved.
+     * Once a punch has found the database down, kiosks that have punched before are served from the
+     * last known employees without touching the database, so they don't wait for a connection
+     * timeout on every punch. The database is only tried again after the journal has been replayed.
+     * @param pin The PIN submitted by the employee, unique within their site.
+     * @param kioskId The kiosk's ID, used to find its site; may be null on single-site installs.
+     * @param clientAddress The client's network address, for failed-attempt throttling.
      * @return A DTO with the result of the clock action.
      * @throws AuthenticationException if no user with a matching PIN is found.
+     * @throws TooManyAttemptsException if the client is locked out after too many failed attempts.
+     * @throws IllegalStateException if the kiosk has no site, or the punch repeats one made within the
+     *         debounce window, or races another punch.
      */
-    @Transactional
-    public ClockResponseDto handlePinClockAction(String pin) {
-        List<User> employees = userRepository.findAllByRole(Role.ROLE_EMPLOYEE);
+    public ClockResponseDto handlePinClockAction(String pin, String kioskId, String clientAddress) {
+        String kioskKey = kioskId != null ? kioskId : "";
+        Long siteId = lastKnownKioskSites.get(kioskKey);
+        List<User> employees = null;
+        boolean registeredKiosk = lastKnownRegisteredKiosks.contains(kioskKey);
+        if (!punchJournalService.isDatabaseAvailable() && siteId != null) {
+            employees = lastKnownEmployees.get(siteId);
+        }
+        if (employees == null) {
+            try {
+                registeredKiosk = siteService.isRegisteredKiosk(kioskId);
+                siteId = siteService.resolveKioskSite(kioskId);
+                employees = userRepository.findAllByRoleAndSiteId(Role.ROLE_EMPLOYEE, siteId);
+                lastKnownEmployees.put(siteId, employees);
+            } catch (RuntimeException e) {
+                // While the database is down, kiosks that have punched before keep working from the last known employees.
+                if (!PunchJournalService.isDatabaseUnavailable(e)) {
+                    throw e;
+                }
+                punchJournalService.markDatabaseUnavailable();
+                siteId = lastKnownKioskSites.get(kioskKey);
+                if (siteId == null || !lastKnownEmployees.containsKey(siteId)) {
+                    throw e;
+                }
+                employees = lastKnownEmployees.get(siteId);
+                registeredKiosk = lastKnownRegisteredKiosks.contains(kioskKey);
+            }
+        }
+
+        String clientKey = registeredKiosk ? clientAddress + "/" + kioskId : clientAddress;
+        pinAttemptThrottle.checkAllowed(clientKey);
 
         User matchedEmployee = employees.stream()
                 .filter(employee -> passwordEncoder.matches(pin, employee.getPassword()))
                 .findFirst()
                 .orElseThrow(() -> {
-                    auditService.log(null, "PIN_LOGIN_FAILURE", "FAILURE", "Failed PIN login attempt. No matching user found.");
+                    pinAttemptThrottle.recordFailure(clientKey);
                     return new AuthenticationException("Invalid PIN provided.") {};
                 });
+        pinAttemptThrottle.recordSuccess(clientKey);
+        lastKnownKioskSites.put(kioskKey, siteId);
+        if (registeredKiosk) {
+            lastKnownRegisteredKiosks.add(kioskKey);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        UUID punchId = UUID.randomUUID();
+        if (punchJournalService.shouldJournal()) {
+            return journalPunch(matchedEmployee, siteId, punchId, now);
+        }
 
-        Optional<ClockLog> lastLogOpt = clockLogRepository.findTopByUserIdOrderByTimestampDesc(matchedEmployee.getId());
+        Lock lock = lockPunchesOf(matchedEmployee);
+        try {
+            Long punchSiteId = siteId;
+            ClockResponseDto response = new TransactionTemplate(transactionManager)
+                    .execute(status -> recordClockAction(matchedEmployee, punchSiteId, now, punchId));
+            timesheetSnapshotService.invalidateOpenWeeks();
+            return response;
+        } catch (DataIntegrityViolationException e) {
+            // Another node opened a session for this employee at the same moment.
+            throw new IllegalStateException("Your punch was already recorded. Please wait a moment before trying again.");
+        } catch (RuntimeException e) {
+            // If the commit reached the database after all, replaying the punch finds its ID and skips it.
+            if (PunchJournalService.isDatabaseUnavailable(e) && punchJournalService.markDatabaseUnavailable()) {
+                return journalPunch(matchedEmployee, siteId, punchId, now);
+            }
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies a punch from the journal to the database, as if it had been made at its original time.
+     * Punches that are already in the database are skipped; punches that can no longer be applied
+     * (e.g. a double tap, or a deleted employee) are audited and dropped. Database outages are thrown,
+     * so the replay stops and is retried later.
+     */
+    private void applyJournaledPunch(JournaledPunch punch) {
+        Optional<User> employee = userRepository.findActiveById(punch.userId());
+        if (employee.isEmpty()) {
+            auditService.logForSite(punch.siteId(), null, "JOURNALED_PUNCH_REJECTED", "FAILURE",
+                    "Dropped a punch made offline at " + punch.timestamp() + " by user " + punch.userId() + ", who no longer exists.");
+            return;
+        }
+        Lock lock = lockPunchesOf(employee.get());
+        try {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                if (!clockLogRepository.existsByPunchId(punch.punchId().toString())) {
+                    recordClockAction(employee.get(), punch.siteId(), punch.timestamp(), punch.punchId());
+                }
+                return null;
+            });
+            timesheetSnapshotService.invalidateOpenWeeks();
+        } catch (IllegalStateException | DataIntegrityViolationException e) {
+            auditService.logForSite(punch.siteId(), punch.userId(), "JOURNALED_PUNCH_REJECTED", "FAILURE",
+                    "Dropped a punch made offline at " + punch.timestamp() + ": " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ClockResponseDto journalPunch(User employee, Long siteId, UUID punchId, LocalDateTime now) {
+        punchJournalService.append(punchId, employee.getId(), siteId, now);
+        return ClockResponseDto.builder()
+                .message("Thanks, " + extractNameFromEmail(employee.getEmail()) + "! Your punch was saved and will be synced shortly.")
+                .userEmail(employee.getEmail())
+                .action("RECORDED")
+                .timestamp(now.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .hoursWorkedThisSession(0.0)
+                .build();
+    }
+
+    private Lock lockPunchesOf(User employee) {
+        Lock lock = punchLocks[Math.floorMod(employee.getId().hashCode(), punchLocks.length)];
+        try {
+            if (!lock.tryLock(PUNCH_LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The kiosk is busy. Please try again.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The kiosk is busy. Please try again.");
+        }
+        return lock;
+    }
+
+    private ClockResponseDto recordClockAction(User matchedEmployee, Long siteId, LocalDateTime now, UUID punchId) {
+        Optional<WorkSession> openSessionOpt = workSessionRepository.findFirstByUserIdAndEndedAtIsNull(matchedEmployee.getId());
+        rejectDoubleTap(matchedEmployee, openSessionOpt, now);
+        recentWrites.recordAfterCommit();
 
         ClockLog newLog = new ClockLog();
         newLog.setUser(matchedEmployee);
-        newLog.setTimestamp(LocalDateTime.now());
+        newLog.setTimestamp(now);
+        newLog.setSiteId(siteId);
+        newLog.setPunchId(punchId.toString());
         String message;
         double hoursWorked = 0.0;
         
         // --- NAME PARSING LOGIC ADDED ---
         String employeeName = extractNameFromEmail(matchedEmployee.getEmail());
 
-        if (lastLogOpt.isEmpty() || lastLogOpt.get().getAction() == ClockAction.CLOCK_OUT) {
+        if (openSessionOpt.isEmpty()) {
+            WorkSession session = new WorkSession();
+            session.setUser(matchedEmployee);
+            session.setStartedAt(newLog.getTimestamp());
+            session.setSessionKey(punchId.toString());
+            session.setSiteId(siteId);
+            workSessionRepository.save(session);
+
             newLog.setAction(ClockAction.CLOCK_IN);
-            newLog.setSessionId(UUID.randomUUID().toString());
+            newLog.setSessionId(session.getSessionKey());
             message = "Welcome, " + employeeName + "! Clock-in successful.";
-            auditService.log(matchedEmployee.getId(), "CLOCK_IN_SUCCESS", "SUCCESS", "User clocked in via PIN-only kiosk.");
+            outboxService.publish(OutboxEventType.CLOCK_IN, matchedEmployee.getId(), siteId, now,
+                    Map.of("sessionKey", session.getSessionKey()));
         } else {
-            ClockLog lastClockIn = lastLogOpt.get();
+            WorkSession session = openSessionOpt.get();
+            long durationSeconds = Duration.between(session.getStartedAt(), newLog.getTimestamp()).getSeconds();
+            if (workSessionRepository.closeSession(session.getId(), newLog.getTimestamp(), durationSeconds) != 1) {
+                throw new IllegalStateException("Your punch was already recorded. Please wait a moment before trying again.");
+            }
+
             newLog.setAction(ClockAction.CLOCK_OUT);
-            newLog.setSessionId(lastClockIn.getSessionId());
-            Duration duration = Duration.between(lastClockIn.getTimestamp(), newLog.getTimestamp());
-            
-            double totalMinutes = duration.toMinutes();
-            hoursWorked = totalMinutes / 60.0;
+            newLog.setSessionId(session.getSessionKey());
+            hoursWorked = durationSeconds / 3600.0;
             
             newLog.setDurationHours(hoursWorked);
             message = "Goodbye, " + employeeName + "! Clock-out successful.";
-            auditService.log(matchedEmployee.getId(), "CLOCK_OUT_SUCCESS", "SUCCESS", "User clocked out. Hours worked: " + String.format("%.2f", hoursWorked));
+            outboxService.publish(OutboxEventType.CLOCK_OUT, matchedEmployee.getId(), siteId, now,
+                    Map.of("sessionKey", session.getSessionKey(), "durationSeconds", durationSeconds, "hoursWorked", hoursWorked));
         }
 
         clockLogRepository.save(newLog);
@@ -102,6 +297,21 @@ public class AuthService {
                 .build();
     }
 
+    /**
+     * Rejects a punch that repeats the employee's previous punch within the debounce window,
+     * e.g. a double tap on the keypad or the same PIN entered on two kiosks.
+     */
+    private void rejectDoubleTap(User employee, Optional<WorkSession> openSessionOpt, LocalDateTime now) {
+        LocalDateTime lastPunch = openSessionOpt
+                .map(WorkSession::getStartedAt)
+                .orElseGet(() -> workSessionRepository.findTopByUserIdOrderByStartedAtDesc(employee.getId())
+                        .map(WorkSession::getEndedAt)
+                        .orElse(null));
+        if (lastPunch != null && lastPunch.isAfter(now.minusSeconds(punchDebounceSeconds))) {
+            throw new IllegalStateException("Your punch was already recorded. Please wait a moment before trying again.");
+        }
+    }
+
     public JwtResponseDto handleAdminLogin(AdminLoginRequestDto request) {
         try {
             authenticationManager.authenticate(
@@ -132,6 +342,14 @@ public class AuthService {
             .build();
     }
     
+    private static Lock[] createPunchLocks() {
+        Lock[] locks = new Lock[PUNCH_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
     /**
      * --- NEW HELPER METHOD ---
      * A utility method to extract and format a name from an email address.
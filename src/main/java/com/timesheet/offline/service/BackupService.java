@@ -0,0 +1,455 @@
+package com.timesheet.offline.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.config.StorageMode;
+import com.timesheet.offline.dto.BackupDto;
+import com.timesheet.offline.storage.BackupManifest;
+import com.timesheet.offline.storage.BackupManifest.TableEntry;
+import com.timesheet.offline.storage.TableDump;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Online, incremental backups of the timesheet data to compressed TableDump files on local disk,
+ * and restores of a backup chain into an empty database.
+ * <p>
+ * Every backup copies the small, mutable tables (sites, kiosks, users) in full. The append-mostly tables
+ * (work_sessions, clock_logs, audit_logs) are copied incrementally by id: each backup reads the rows above the
+ * previous backup's highest id, in keyset chunks that are each a short query of their own, so no transaction
+ * is held open for the length of the backup. A new full backup starts a new chain every 'backup.chain-length'
+ * backups, and only the newest 'backup.keep-chains' chains are kept.
+ * <p>
+ * Rows deleted after they were backed up (weekly reset, user deletion, audit archiving) are left out on
+ * restore using the table's smallest live id and the set of users at the last backup. Archived audit logs
+ * live in the audit archive, so keep 'audit.archive.dir' alongside the backups.
+ */
+@Service
+@RequiredArgsConstructor
+public class BackupService {
+
+    /** Copied in full by every backup. Restored in this order, before the incremental tables. */
+    private static final List<String> FULL_TABLES = List.of("sites", "kiosks", "users");
+
+    /** Copied by id range. Backed up before the full tables, so every user they reference is in the same backup. */
+    private static final List<String> INCREMENTAL_TABLES = List.of("work_sessions", "clock_logs", "audit_logs");
+
+    /** Tables whose rows are dropped on restore when their user no longer exists. */
+    private static final Set<String> USER_OWNED_TABLES = Set.of("work_sessions", "clock_logs");
+
+    private static final List<String> IDENTITY_TABLES = List.of("sites", "users", "work_sessions", "clock_logs", "audit_logs");
+
+    private static final Pattern MANIFEST_NAME = Pattern.compile("backup-(\\d{6})\\.json");
+
+    private static final int RESTORE_BATCH_ROWS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final StorageMode storageMode;
+    private final AuditService auditService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${backup.dir:./data/backups}")
+    private String backupDir;
+
+    @Value("${backup.chunk-rows:5000}")
+    private int chunkRows;
+
+    /**
+     * Each incremental backup reads this many ids below the previous backup's highest id again,
+     * to pick up rows whose transaction had not committed yet while the previous backup ran.
+     */
+    @Value("${backup.overlap-ids:1000}")
+    private long overlapIds;
+
+    @Value("${backup.chain-length:168}")
+    private int chainLength;
+
+    @Value("${backup.keep-chains:2}")
+    private int keepChains;
+
+    /**
+     * Scheduled task that takes the next backup: a full one if there is no chain yet or the current chain
+     * is complete, otherwise an incremental one. Scheduled through ClusterJobScheduler (see ScheduledJobsConfig);
+     * in a multi-node deployment backup.dir must point at storage shared by all nodes.
+     */
+    public void createBackup() {
+        Path directory = Paths.get(backupDir);
+        try {
+            Files.createDirectories(directory);
+            List<BackupManifest> manifests = listManifests(directory);
+            BackupManifest previous = manifests.isEmpty() ? null : manifests.get(manifests.size() - 1);
+            int sequence = previous == null ? 1 : previous.sequence() + 1;
+            boolean full = previous == null || sequence - previous.baseSequence() >= chainLength;
+
+            List<TableEntry> tables = new ArrayList<>();
+            for (String table : INCREMENTAL_TABLES) {
+                tables.add(dumpIncrement(directory, sequence, table, full ? null : previous.table(table)));
+            }
+            for (String table : FULL_TABLES) {
+                tables.add(dumpFull(directory, sequence, table));
+            }
+            BackupManifest manifest = new BackupManifest(sequence, full ? sequence : previous.baseSequence(), LocalDateTime.now(), tables);
+            writeManifest(directory, manifest);
+
+            manifests.add(manifest);
+            deleteOldChains(directory, manifests);
+
+            long rows = tables.stream().mapToLong(TableEntry::rows).sum();
+            long bytes = tables.stream().mapToLong(TableEntry::bytes).sum();
+            auditService.log(null, "BACKUP_SUCCESS", "SUCCESS", (full ? "Full" : "Incremental") + " backup " + sequence
+                    + " wrote " + rows + " rows (" + bytes + " bytes).");
+            System.out.println("Backup " + sequence + " wrote " + rows + " rows to " + directory.toAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            auditService.log(null, "BACKUP_FAILURE", "FAILURE", "Error taking a backup: " + e.getMessage());
+            throw new RuntimeException("Failed to take a backup: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The backups on disk, newest first.
+     */
+    public List<BackupDto> getBackups() {
+        try {
+            List<BackupManifest> manifests = listManifests(Paths.get(backupDir));
+            List<BackupDto> backups = new ArrayList<>(manifests.size());
+            for (int i = manifests.size() - 1; i >= 0; i--) {
+                backups.add(toBackupDto(manifests.get(i)));
+            }
+            return backups;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list backups", e);
+        }
+    }
+
+    /**
+     * Loads the newest backup chain in a directory into the database, in one transaction, and moves the
+     * id sequences past the restored ids. The database must be empty; see BackupRestoreRunner.
+     * @param directory A backup directory, as written by createBackup.
+     * @return The sequence number of the backup that was restored.
+     */
+    public int restore(Path directory) {
+        List<BackupManifest> chain;
+        try {
+            chain = newestChain(listManifests(directory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the backups in " + directory, e);
+        }
+        BackupManifest latest = chain.get(chain.size() - 1);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Set<Long> userIds = new HashSet<>();
+            for (String table : FULL_TABLES) {
+                TableEntry entry = latest.table(table);
+                long restored = loadDump(directory, entry, table, Long.MIN_VALUE, Long.MAX_VALUE,
+                        "users".equals(table) ? userIds : null, null);
+                System.out.println("Restored " + restored + " rows of " + table + ".");
+            }
+            for (String table : INCREMENTAL_TABLES) {
+                long liveMinId = latest.table(table).liveMinId();
+                Set<Long> requiredUsers = USER_OWNED_TABLES.contains(table) ? userIds : null;
+                long restored = 0;
+                for (int i = 0; i < chain.size(); i++) {
+                    // Rows the next backup copied again are taken from there, as they may have changed since.
+                    long upToId = i + 1 < chain.size() ? chain.get(i + 1).table(table).afterId() : Long.MAX_VALUE;
+                    restored += loadDump(directory, chain.get(i).table(table), table, liveMinId, upToId, null, requiredUsers);
+                }
+                System.out.println("Restored " + restored + " rows of " + table + ".");
+            }
+            for (String table : IDENTITY_TABLES) {
+                resetIdentity(table);
+            }
+        });
+        auditService.log(null, "BACKUP_RESTORE_SUCCESS", "SUCCESS", "Restored backup " + latest.sequence()
+                + " (chain of " + chain.size() + ") from " + directory.toAbsolutePath() + ".");
+        return latest.sequence();
+    }
+
+    private TableEntry dumpIncrement(Path directory, int sequence, String table, TableEntry previous) throws IOException {
+        long afterId = 0;
+        if (previous != null) {
+            afterId = Math.max(0, previous.maxId() - overlapIds);
+            if (previous.minOpenId() > 0) {
+                afterId = Math.min(afterId, previous.minOpenId() - 1);
+            }
+        }
+        // Bounds are read before the rows, so anything deleted or opened while the backup runs is caught next time.
+        Long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM " + table, Long.class);
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        long minOpenId = 0;
+        if ("work_sessions".equals(table)) {
+            Long oldestOpen = jdbcTemplate.queryForObject("SELECT MIN(id) FROM work_sessions WHERE ended_at IS NULL", Long.class);
+            minOpenId = oldestOpen == null ? 0 : oldestOpen;
+        }
+        long upToId = Math.max(maxId == null ? 0 : maxId, previous == null ? 0 : previous.maxId());
+
+        DumpFile dump = new DumpFile(directory.resolve(dumpFileName(sequence, table)));
+        try {
+            long cursor = afterId;
+            while (cursor < upToId) {
+                long lastId = jdbcTemplate.query("SELECT * FROM " + table + " WHERE id > ? AND id <= ? ORDER BY id LIMIT ?",
+                        (ResultSetExtractor<Long>) dump::append, cursor, upToId, chunkRows);
+                if (lastId == DumpFile.NO_ROWS) {
+                    break;
+                }
+                cursor = lastId;
+            }
+            return dump.finish(table, false, afterId, upToId, minId == null ? Long.MAX_VALUE : minId, minOpenId);
+        } finally {
+            dump.close();
+        }
+    }
+
+    private TableEntry dumpFull(Path directory, int sequence, String table) throws IOException {
+        DumpFile dump = new DumpFile(directory.resolve(dumpFileName(sequence, table)));
+        try {
+            jdbcTemplate.query("SELECT * FROM " + table, (ResultSetExtractor<Long>) dump::append);
+            return dump.finish(table, true, 0, 0, 0, 0);
+        } finally {
+            dump.close();
+        }
+    }
+
+    /**
+     * @param fromId Rows below this id are skipped.
+     * @param upToId Rows above this id are skipped.
+     * @param collectIds If not null, receives the id of every restored row.
+     * @param requiredUsers If not null, rows whose user_id is not in this set are skipped.
+     * @return The number of rows restored.
+     */
+    private long loadDump(Path directory, TableEntry entry, String table, long fromId, long upToId,
+                          Set<Long> collectIds, Set<Long> requiredUsers) {
+        if (entry.file() == null) {
+            return 0;
+        }
+        try (TableDump.Reader reader = TableDump.open(directory.resolve(entry.file()))) {
+            List<String> columns = reader.getColumns();
+            int idIndex = columns.indexOf("id");
+            int userIdIndex = columns.indexOf("user_id");
+            String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+
+            long restored = 0;
+            List<Object[]> batch = new ArrayList<>(RESTORE_BATCH_ROWS);
+            Object[] row;
+            while ((row = reader.next()) != null) {
+                if (idIndex >= 0) {
+                    long id = (Long) row[idIndex];
+                    if (id < fromId || id > upToId) {
+                        continue;
+                    }
+                    if (collectIds != null) {
+                        collectIds.add(id);
+                    }
+                }
+                if (requiredUsers != null && !requiredUsers.contains((Long) row[userIdIndex])) {
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == RESTORE_BATCH_ROWS) {
+                    jdbcTemplate.batchUpdate(insert, batch);
+                    restored += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                restored += batch.size();
+            }
+            return restored;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to restore " + table + " from " + entry.file(), e);
+        }
+    }
+
+    private void resetIdentity(String table) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        if (storageMode.isEmbedded()) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (maxId + 1));
+        } else {
+            jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence('" + table + "', 'id'), ?, false)",
+                    Long.class, maxId + 1);
+        }
+    }
+
+    /**
+     * @return The newest backup and the ones it builds on, oldest first.
+     * @throws IllegalStateException if there are no backups, or part of the newest chain is missing.
+     */
+    private static List<BackupManifest> newestChain(List<BackupManifest> manifests) {
+        if (manifests.isEmpty()) {
+            throw new IllegalStateException("No backups found.");
+        }
+        BackupManifest latest = manifests.get(manifests.size() - 1);
+        List<BackupManifest> chain = manifests.stream()
+                .filter(manifest -> manifest.baseSequence() == latest.baseSequence())
+                .collect(Collectors.toList());
+        for (int i = 0; i < chain.size(); i++) {
+            if (chain.get(i).sequence() != latest.baseSequence() + i) {
+                throw new IllegalStateException("Backup " + (latest.baseSequence() + i) + " is missing from the chain of backup "
+                        + latest.sequence() + ".");
+            }
+        }
+        return chain;
+    }
+
+    private void deleteOldChains(Path directory, List<BackupManifest> manifests) throws IOException {
+        Map<Integer, List<BackupManifest>> chains = manifests.stream()
+                .collect(Collectors.groupingBy(BackupManifest::baseSequence, TreeMap::new, Collectors.toList()));
+        int toDelete = chains.size() - keepChains;
+        for (List<BackupManifest> chain : chains.values()) {
+            if (toDelete-- <= 0) {
+                break;
+            }
+            for (BackupManifest manifest : chain) {
+                // The manifest goes first, so a partly deleted backup is never mistaken for a complete one.
+                Files.deleteIfExists(directory.resolve(manifestFileName(manifest.sequence())));
+                for (TableEntry entry : manifest.tables()) {
+                    if (entry.file() != null) {
+                        Files.deleteIfExists(directory.resolve(entry.file()));
+                    }
+                }
+            }
+        }
+    }
+
+    private List<BackupManifest> listManifests(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        List<Path> manifestFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            manifestFiles = files
+                    .filter(path -> MANIFEST_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<BackupManifest> manifests = new ArrayList<>(manifestFiles.size());
+        for (Path manifestFile : manifestFiles) {
+            manifests.add(objectMapper.readValue(manifestFile.toFile(), BackupManifest.class));
+        }
+        return manifests;
+    }
+
+    private void writeManifest(Path directory, BackupManifest manifest) throws IOException {
+        Path file = directory.resolve(manifestFileName(manifest.sequence()));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile())) {
+            out.write(objectMapper.writeValueAsBytes(manifest));
+            out.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String manifestFileName(int sequence) {
+        return String.format("backup-%06d.json", sequence);
+    }
+
+    private static String dumpFileName(int sequence, String table) {
+        return String.format("backup-%06d-%s.dump.gz", sequence, table);
+    }
+
+    private BackupDto toBackupDto(BackupManifest manifest) {
+        Map<String, Long> rows = new LinkedHashMap<>();
+        manifest.tables().forEach(entry -> rows.put(entry.table(), entry.rows()));
+        return BackupDto.builder()
+                .sequence(manifest.sequence())
+                .baseSequence(manifest.baseSequence())
+                .full(manifest.isFull())
+                .createdAt(manifest.createdAt())
+                .rows(rows)
+                .bytes(manifest.tables().stream().mapToLong(TableEntry::bytes).sum())
+                .build();
+    }
+
+    /**
+     * The dump of one table in one backup. The file is only created once there is a row to write.
+     */
+    private static final class DumpFile {
+        static final long NO_ROWS = -1;
+
+        private final Path file;
+        private TableDump.Writer writer;
+
+        DumpFile(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * Writes every row of a result set.
+         * @return The id of the last row, or NO_ROWS if there were none.
+         */
+        long append(ResultSet resultSet) throws SQLException {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            List<String> columns = new ArrayList<>(columnCount);
+            int[] sqlTypes = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(metaData.getColumnName(i + 1).toLowerCase());
+                sqlTypes[i] = metaData.getColumnType(i + 1);
+            }
+            int idIndex = columns.indexOf("id");
+
+            long lastId = NO_ROWS;
+            try {
+                while (resultSet.next()) {
+                    if (writer == null) {
+                        writer = TableDump.create(file, columns, sqlTypes);
+                    }
+                    Object[] values = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        values[i] = resultSet.getObject(i + 1);
+                    }
+                    writer.writeRow(values);
+                    if (idIndex >= 0) {
+                        lastId = ((Number) values[idIndex]).longValue();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write " + file, e);
+            }
+            return lastId;
+        }
+
+        TableEntry finish(String table, boolean full, long afterId, long maxId, long liveMinId, long minOpenId) throws IOException {
+            if (writer == null) {
+                return new TableEntry(table, null, full, afterId, maxId, liveMinId, minOpenId, 0, 0);
+            }
+            long rows = writer.getRows();
+            long bytes = writer.finish();
+            return new TableEntry(table, file.getFileName().toString(), full, afterId, maxId, liveMinId, minOpenId, rows, bytes);
+        }
+
+        void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.config.CacheConfig;
+import com.timesheet.offline.dto.CacheStatsDto;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Service for reading Hibernate's second-level cache statistics.
+ */
+@Service
+@RequiredArgsConstructor
+public class CacheStatisticsService {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * @return Hit, miss and put counts for the user and site entity and query cache regions.
+     */
+    public List<CacheStatsDto> getUserCacheStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return List.of(
+                toDto(CacheConfig.USERS_REGION, statistics.getDomainDataRegionStatistics(CacheConfig.USERS_REGION)),
+                toDto(CacheConfig.USER_QUERIES_REGION, statistics.getQueryRegionStatistics(CacheConfig.USER_QUERIES_REGION)),
+                toDto(CacheConfig.SITES_REGION, statistics.getDomainDataRegionStatistics(CacheConfig.SITES_REGION)),
+                toDto(CacheConfig.SITE_QUERIES_REGION, statistics.getQueryRegionStatistics(CacheConfig.SITE_QUERIES_REGION))
+        );
+    }
+
+    private CacheStatsDto toDto(String region, CacheRegionStatistics regionStatistics) {
+        if (regionStatistics == null) {
+            // Query regions only appear in the statistics after their first use.
+            return CacheStatsDto.builder().region(region).build();
+        }
+        long hits = regionStatistics.getHitCount();
+        long misses = regionStatistics.getMissCount();
+        return CacheStatsDto.builder()
+                .region(region)
+                .hitCount(hits)
+                .missCount(misses)
+                .putCount(regionStatistics.getPutCount())
+                .hitRatio(hits + misses == 0 ? 0.0 : (double) hits / (hits + misses))
+                .build();
+    }
+}
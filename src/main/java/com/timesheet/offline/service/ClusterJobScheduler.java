@@ -0,0 +1,214 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.dto.JobRunDto;
+import com.timesheet.offline.model.JobLease;
+import com.timesheet.offline.model.JobRun;
+import com.timesheet.offline.repository.JobLeaseRepository;
+import com.timesheet.offline.repository.JobRunRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs cron-scheduled jobs exactly once per schedule slot across all backend instances.
+ * Every node polls the 'job_leases' table; the node that atomically advances a job's last
+ * claimed slot runs it, and every run is recorded in 'job_runs'. Slots missed while all
+ * nodes were down are coalesced into a single catch-up run on the next poll. That run happens later
+ * than its slot, so jobs whose effect depends on the time they run (e.g. deleting data older than it)
+ * are registered with a task that is given the slot.
+ * Jobs that only touch node-local state should keep using plain @Scheduled instead.
+ * <p>
+ * The poll and the jobs run on a thread of their own, one job at a time, so a long backup or a database
+ * outage doesn't hold up the @Scheduled tasks, which share the scheduling pool (see SchedulingConfig).
+ */
+@Service
+@RequiredArgsConstructor
+public class ClusterJobScheduler {
+
+    /** Upper bound on slots walked when catching up, so a very frequent cron can't stall the poller. */
+    private static final int MAX_CATCH_UP_SLOTS = 100_000;
+
+    private final JobLeaseRepository jobLeaseRepository;
+    private final JobRunRepository jobRunRepository;
+
+    private final List<RegisteredJob> jobs = new CopyOnWriteArrayList<>();
+    private final String nodeId = resolveNodeId();
+    private final AtomicBoolean pollPending = new AtomicBoolean();
+    private ExecutorService jobExecutor;
+
+    @Value("${jobs.lease-minutes:60}")
+    private long leaseMinutes;
+
+    @PostConstruct
+    void startJobExecutor() {
+        jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-jobs");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopJobExecutor() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Registers a job to be coordinated across the cluster.
+     * @param name A unique, stable name for the job.
+     * @param cron A Spring cron expression.
+     * @param task The work to run; should be a call through a Spring proxy if it needs a transaction.
+     */
+    public void register(String name, String cron, Runnable task) {
+        register(name, cron, scheduledFor -> task.run());
+    }
+
+    /**
+     * Registers a job to be coordinated across the cluster, whose task is given the slot it runs for:
+     * the latest missed slot on a catch-up run, which can be well before the time it actually runs.
+     * @param name A unique, stable name for the job.
+     * @param cron A Spring cron expression.
+     * @param task The work to run for a slot; should be a call through a Spring proxy if it needs a transaction.
+     */
+    public void register(String name, String cron, Consumer<LocalDateTime> task) {
+        jobs.add(new RegisteredJob(name, CronExpression.parse(cron), task));
+    }
+
+    /**
+     * Scheduled task that checks every registered job and runs the ones that are due, on the job thread.
+     * A poll is skipped while the previous one is still running.
+     */
+    @Scheduled(fixedDelayString = "${jobs.poll-interval-ms:30000}", initialDelayString = "${jobs.initial-delay-ms:10000}")
+    public void pollDueJobs() {
+        if (pollPending.compareAndSet(false, true)) {
+            jobExecutor.execute(() -> {
+                try {
+                    runDueJobs();
+                } finally {
+                    pollPending.set(false);
+                }
+            });
+        }
+    }
+
+    private void runDueJobs() {
+        for (RegisteredJob job : jobs) {
+            try {
+                runIfDue(job);
+            } catch (RuntimeException e) {
+                System.err.println("Scheduled job " + job.name() + " could not be coordinated: " + e.getMessage());
+            }
+        }
+    }
+
+    public Page<JobRunDto> getRunHistory(Pageable pageable) {
+        return jobRunRepository.findAllByOrderByStartedAtDesc(pageable).map(this::toJobRunDto);
+    }
+
+    private void runIfDue(RegisteredJob job) {
+        JobLease lease = findOrCreateLease(job.name());
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime previousSlot = lease.getLastScheduledFor();
+
+        LocalDateTime dueSlot = null;
+        int dueSlots = 0;
+        for (LocalDateTime next = job.cron().next(previousSlot);
+             next != null && !next.isAfter(now) && dueSlots < MAX_CATCH_UP_SLOTS;
+             next = job.cron().next(next)) {
+            dueSlot = next;
+            dueSlots++;
+        }
+        if (dueSlot == null) {
+            return;
+        }
+
+        LocalDateTime lockedUntil = now.plusMinutes(leaseMinutes);
+        if (jobLeaseRepository.claim(job.name(), previousSlot, dueSlot, nodeId, lockedUntil, now) != 1) {
+            return; // Another node claimed this slot, or is still running the previous one.
+        }
+
+        JobRun run = new JobRun();
+        run.setJobName(job.name());
+        run.setScheduledFor(dueSlot);
+        run.setStartedAt(now);
+        run.setStatus("RUNNING");
+        run.setNode(nodeId);
+        run.setMissedRuns(dueSlots - 1);
+        run = jobRunRepository.save(run);
+
+        long started = System.nanoTime();
+        try {
+            job.task().accept(dueSlot);
+            run.setStatus("SUCCESS");
+        } catch (RuntimeException e) {
+            run.setStatus("FAILURE");
+            run.setError(e.getMessage());
+        } finally {
+            run.setFinishedAt(LocalDateTime.now());
+            run.setDurationMs(Duration.ofNanos(System.nanoTime() - started).toMillis());
+            jobRunRepository.save(run);
+            jobLeaseRepository.release(job.name(), nodeId);
+        }
+    }
+
+    private JobLease findOrCreateLease(String jobName) {
+        return jobLeaseRepository.findById(jobName).orElseGet(() -> {
+            JobLease lease = new JobLease();
+            lease.setJobName(jobName);
+            // A new job starts counting from now; it does not run for slots before it was first deployed.
+            lease.setLastScheduledFor(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+            try {
+                return jobLeaseRepository.save(lease);
+            } catch (DataIntegrityViolationException e) {
+                // Another node created the lease at the same moment; use theirs.
+                return jobLeaseRepository.findById(jobName).orElseThrow(() -> e);
+            }
+        });
+    }
+
+    private JobRunDto toJobRunDto(JobRun run) {
+        return JobRunDto.builder()
+                .id(run.getId())
+                .jobName(run.getJobName())
+                .scheduledFor(run.getScheduledFor())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .durationMs(run.getDurationMs())
+                .status(run.getStatus())
+                .node(run.getNode())
+                .missedRuns(run.getMissedRuns())
+                .error(run.getError())
+                .build();
+    }
+
+    private static String resolveNodeId() {
+        long pid = ProcessHandle.current().pid();
+        try {
+            return InetAddress.getLocalHost().getHostName() + "-" + pid;
+        } catch (UnknownHostException e) {
+            return "node-" + pid;
+        }
+    }
+
+    private record RegisteredJob(String name, CronExpression cron, Consumer<LocalDateTime> task) {
+    }
+}
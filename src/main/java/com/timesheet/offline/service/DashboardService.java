@@ -0,0 +1,293 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.config.QueryCounter;
+import com.timesheet.offline.config.ReplicaRoutingDataSource;
+import com.timesheet.offline.config.StorageMode;
+import com.timesheet.offline.dto.AuditLogDto;
+import com.timesheet.offline.dto.DashboardDto;
+import com.timesheet.offline.dto.NotificationDto;
+import com.timesheet.offline.dto.UserDirectoryPageDto;
+import com.timesheet.offline.dto.UserStatusDto;
+import com.timesheet.offline.dto.WeeklyTimesheetDto;
+import com.timesheet.offline.exception.TooManyAttemptsException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Assembles the admin dashboard's first load in one call.
+ * <p>
+ * The sections are the same queries as the separate admin endpoints. They run in parallel on a small bounded
+ * pool, each in its own read-only transaction. On PostgreSQL, all of them read the same database snapshot:
+ * the calling thread opens a read-only transaction, exports its snapshot (pg_export_snapshot), and keeps it
+ * open while the sections import it, so the statuses, users and audit entries agree with each other. A section
+ * that can't import the snapshot, e.g. because its connection went to another server, and every section in
+ * embedded mode, reads the latest data instead. The timesheet section is served by TimesheetSnapshotService,
+ * so it only reads the snapshot when the week isn't cached and is computed for one site; for all sites it runs
+ * outside any transaction, so it holds no connection while SiteService queries the sites.
+ * <p>
+ * A call holds one connection for the snapshot plus one per running section, and the sections of all calls
+ * share 'dashboard.parallelism' threads. Only 'dashboard.max-concurrent' calls run at once, by default as many
+ * as the connection pool can serve in full (pool size / (parallelism + 1)); a call that can't start within
+ * 'dashboard.wait-ms' is turned away rather than left holding a snapshot connection while it waits.
+ */
+@Service
+@RequiredArgsConstructor
+public class DashboardService {
+
+    /**
+     * The parts of the dashboard that can be requested. Query parameters use the camel-case names
+     * (users, statuses, notifications, timesheet, auditLogs).
+     */
+    public enum Section {
+        USERS, STATUSES, NOTIFICATIONS, TIMESHEET, AUDIT_LOGS;
+
+        /**
+         * @throws IllegalArgumentException for an unknown section name.
+         */
+        public static Section fromParameter(String name) {
+            String key = name.trim().replace("-", "").replace("_", "");
+            return Arrays.stream(values())
+                    .filter(section -> section.name().replace("_", "").equalsIgnoreCase(key))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown dashboard section: " + name
+                            + ". Use users, statuses, notifications, timesheet or auditLogs."));
+        }
+    }
+
+    private static final Pattern SNAPSHOT_ID = Pattern.compile("[0-9A-Fa-f-]+");
+
+    private final AdminService adminService;
+    private final EntityManager entityManager;
+    private final StorageMode storageMode;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${dashboard.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * Dashboard calls that may run at once; 0 derives it from the connection pool size.
+     */
+    @Value("${dashboard.max-concurrent:0}")
+    private int maxConcurrent;
+
+    @Value("${dashboard.wait-ms:5000}")
+    private long waitMillis;
+
+    @Value("${datasource.primary.pool-size:10}")
+    private int primaryPoolSize;
+
+    @Value("${storage.embedded.pool-size:3}")
+    private int embeddedPoolSize;
+
+    private Semaphore runningCalls;
+    private ThreadPoolExecutor dashboardExecutor;
+
+    @PostConstruct
+    void startDashboardExecutor() {
+        int concurrentCalls = maxConcurrent > 0 ? maxConcurrent : defaultMaxConcurrent();
+        runningCalls = new Semaphore(concurrentCalls, true);
+        AtomicInteger threadCount = new AtomicInteger();
+        // Room for every section of every running call, so a section is never rejected. The requesting
+        // thread must not run a section itself: it already holds the snapshot connection.
+        dashboardExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(concurrentCalls * Section.values().length),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        dashboardExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private int defaultMaxConcurrent() {
+        if (storageMode.isEmbedded()) {
+            return Math.max(1, embeddedPoolSize / parallelism);
+        }
+        return Math.max(1, primaryPoolSize / (parallelism + 1));
+    }
+
+    @PreDestroy
+    void stopDashboardExecutor() {
+        dashboardExecutor.shutdownNow();
+    }
+
+    /**
+     * Builds the requested dashboard sections.
+     * Not @Transactional: the snapshot transaction is opened here, and each section runs in its own.
+     * @param sections The sections to include; the others are left null.
+     * @param siteId Only include this site; null for all sites.
+     * @param weekStartDate The timesheet week; null for the week containing today.
+     * @param userLimit The size of the first user directory page.
+     * @param auditPageSize The size of the first audit log page.
+     * @throws TooManyAttemptsException if too many dashboard calls are running to start this one in time.
+     */
+    public DashboardDto getDashboard(Set<Section> sections, Long siteId, LocalDate weekStartDate, int userLimit, int auditPageSize) {
+        try {
+            if (!runningCalls.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                throw new TooManyAttemptsException("The dashboard is busy. Please try again in a moment.", 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The dashboard request was interrupted.");
+        }
+        try {
+            return loadDashboard(sections, siteId, weekStartDate, userLimit, auditPageSize);
+        } finally {
+            runningCalls.release();
+        }
+    }
+
+    private DashboardDto loadDashboard(Set<Section> sections, Long siteId, LocalDate weekStartDate, int userLimit, int auditPageSize) {
+        LocalDate week = weekStartDate != null ? weekStartDate
+                : LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        if (storageMode.isEmbedded()) {
+            return assemble(sections, siteId, week, userLimit, auditPageSize, null);
+        }
+        TransactionTemplate snapshotTransaction = readOnlyTransaction(TransactionDefinition.PROPAGATION_REQUIRED);
+        return snapshotTransaction.execute(status -> {
+            // Nothing is written; rolling back also ends the transaction cleanly if the export failed.
+            status.setRollbackOnly();
+            return assemble(sections, siteId, week, userLimit, auditPageSize, exportSnapshot());
+        });
+    }
+
+    /**
+     * Parses the comma-separated 'sections' query parameter; null or blank means all sections.
+     */
+    public static Set<Section> parseSections(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return EnumSet.allOf(Section.class);
+        }
+        Set<Section> sections = EnumSet.noneOf(Section.class);
+        for (String name : names) {
+            if (!name.isBlank()) {
+                sections.add(Section.fromParameter(name));
+            }
+        }
+        return sections.isEmpty() ? EnumSet.allOf(Section.class) : sections;
+    }
+
+    private DashboardDto assemble(Set<Section> sections, Long siteId, LocalDate week, int userLimit, int auditPageSize,
+                                  String snapshotId) {
+        CompletableFuture<UserDirectoryPageDto> users = submit(sections.contains(Section.USERS), snapshotId,
+                () -> adminService.getUserDirectory(null, null, siteId, "email", "asc", null, userLimit));
+        CompletableFuture<List<UserStatusDto>> statuses = submit(sections.contains(Section.STATUSES), snapshotId,
+                () -> adminService.getUserStatuses(siteId));
+        CompletableFuture<List<NotificationDto>> notifications = submit(sections.contains(Section.NOTIFICATIONS), snapshotId,
+                adminService::getNotifications);
+        // For all sites, each site is queried in its own transaction on SiteService's pool, which can't use the
+        // snapshot; a section transaction would only hold a connection while waiting for them.
+        Supplier<List<WeeklyTimesheetDto>> timesheetQuery = () -> adminService.getWeeklyTimesheet(week, siteId);
+        CompletableFuture<List<WeeklyTimesheetDto>> timesheet = siteId != null
+                ? submit(sections.contains(Section.TIMESHEET), snapshotId, timesheetQuery)
+                : submit(sections.contains(Section.TIMESHEET), timesheetQuery);
+        CompletableFuture<Page<AuditLogDto>> auditLogs = submit(sections.contains(Section.AUDIT_LOGS), snapshotId,
+                () -> adminService.getAuditLogs(siteId, PageRequest.of(0, Math.max(1, auditPageSize))));
+
+        try {
+            return DashboardDto.builder()
+                    .users(users.join())
+                    .statuses(statuses.join())
+                    .notifications(notifications.join())
+                    .weekStartDate(sections.contains(Section.TIMESHEET) ? week : null)
+                    .timesheet(timesheet.join())
+                    .auditLogs(auditLogs.join())
+                    .build();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(boolean requested, String snapshotId, Supplier<T> query) {
+        return submit(requested, () -> runSection(snapshotId, query));
+    }
+
+    private <T> CompletableFuture<T> submit(boolean requested, Supplier<T> section) {
+        if (!requested) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(QueryCounter.propagate(section), dashboardExecutor);
+    }
+
+    private <T> T runSection(String snapshotId, Supplier<T> query) {
+        if (snapshotId != null) {
+            try {
+                return readOnlyTransaction(TransactionDefinition.PROPAGATION_REQUIRES_NEW).execute(status -> {
+                    importSnapshot(snapshotId);
+                    return query.get();
+                });
+            } catch (SnapshotUnavailableException e) {
+                System.err.println("Dashboard section reads the latest data instead of the shared snapshot: " + e.getMessage());
+            }
+        }
+        return readOnlyTransaction(TransactionDefinition.PROPAGATION_REQUIRES_NEW).execute(status -> query.get());
+    }
+
+    /**
+     * @return The ID of the current transaction's snapshot, or null if it can't be exported.
+     */
+    private String exportSnapshot() {
+        try {
+            Object snapshotId = entityManager.createNativeQuery("SELECT pg_export_snapshot()").getSingleResult();
+            return snapshotId != null && SNAPSHOT_ID.matcher(snapshotId.toString()).matches() ? snapshotId.toString() : null;
+        } catch (RuntimeException e) {
+            System.err.println("Could not export a snapshot for the dashboard: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Makes the current transaction read the exported snapshot. Must be its first statement.
+     */
+    private void importSnapshot(String snapshotId) {
+        try {
+            // SET TRANSACTION takes no bind parameters; the ID was checked against SNAPSHOT_ID when exported.
+            entityManager.createNativeQuery("SET TRANSACTION SNAPSHOT '" + snapshotId + "'").executeUpdate();
+        } catch (RuntimeException e) {
+            throw new SnapshotUnavailableException(e.getMessage());
+        }
+    }
+
+    private TransactionTemplate readOnlyTransaction(int propagation) {
+        TransactionTemplate readOnly = ReplicaRoutingDataSource.reportTransaction(transactionManager, DashboardService.class);
+        readOnly.setPropagationBehavior(propagation);
+        // Importing a snapshot needs REPEATABLE READ; it also keeps each section on one snapshot in embedded mode.
+        readOnly.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        return readOnly;
+    }
+
+    private static class SnapshotUnavailableException extends RuntimeException {
+        SnapshotUnavailableException(String message) {
+            super(message);
+        }
+    }
+}
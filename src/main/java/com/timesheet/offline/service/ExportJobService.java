@@ -0,0 +1,257 @@
+package com.timesheet.offline.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.dto.ExportJobDto;
+import com.timesheet.offline.dto.ExportJobRequestDto;
+import com.timesheet.offline.export.CountingRowWriter;
+import com.timesheet.offline.export.ExportFormat;
+import com.timesheet.offline.export.ExportJob;
+import com.timesheet.offline.export.RowWriter;
+import com.timesheet.offline.model.ExportJobStatus;
+import com.timesheet.offline.model.ExportJobType;
+import com.timesheet.offline.repository.AuditLogRepository;
+import com.timesheet.offline.repository.ClockLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs large exports in the background on a small, bounded worker pool instead of
+ * on HTTP request threads. Finished files are kept on local disk for download and
+ * removed by a periodic retention sweep.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportJobService {
+
+    private final TimesheetService timesheetService;
+    private final AdminService adminService;
+    private final AuditService auditService;
+    private final ClockLogRepository clockLogRepository;
+    private final AuditLogRepository auditLogRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @Value("${export.jobs.dir:./data/exports}")
+    private String exportDir;
+
+    @Value("${export.jobs.workers:2}")
+    private int workers;
+
+    @Value("${export.jobs.queue-capacity:10}")
+    private int queueCapacity;
+
+    @Value("${export.jobs.retention-hours:24}")
+    private long retentionHours;
+
+    @PostConstruct
+    void startWorkers() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "export-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    // Exports should never compete with kiosk requests for CPU.
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a new export job.
+     * @param request The export to run.
+     * @return The state of the newly queued job.
+     * @throws IllegalStateException if the export queue is full.
+     */
+    public ExportJobDto submit(ExportJobRequestDto request) {
+        ExportFormat format = ExportFormat.resolve(request.getFormat(), null);
+        if ((request.getStartDate() == null) != (request.getEndDate() == null)) {
+            throw new IllegalArgumentException("Both startDate and endDate must be provided, or neither.");
+        }
+
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), request.getType(), format,
+                request.getStartDate(), request.getEndDate());
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new IllegalStateException("Too many exports are already queued. Please try again later.");
+        }
+        return toDto(job);
+    }
+
+    public ExportJobDto getJob(String jobId) {
+        return toDto(findJob(jobId));
+    }
+
+    public List<ExportJobDto> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(ExportJob::getCreatedAt).reversed())
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The finished export file for a completed job.
+     * @throws IllegalStateException if the job has not completed successfully.
+     */
+    public Path getCompletedFile(String jobId) {
+        ExportJob job = findJob(jobId);
+        if (job.getStatus() != ExportJobStatus.COMPLETED || job.getFile() == null || !Files.exists(job.getFile())) {
+            throw new IllegalStateException("Export " + jobId + " is not ready for download.");
+        }
+        return job.getFile();
+    }
+
+    public String getDownloadFileName(String jobId) {
+        ExportJob job = findJob(jobId);
+        String prefix = job.getType() == ExportJobType.TIMESHEETS ? "timesheet_export_" : "audit_logs_export_";
+        return prefix + job.getCreatedAt().toLocalDate() + job.getFormat().getExtension();
+    }
+
+    /**
+     * Scheduled task that removes finished jobs and their files once they are older than the
+     * retention period. Stray files left over from before a restart are removed by age as well.
+     */
+    @Scheduled(fixedDelayString = "${export.jobs.sweep-interval-ms:3600000}")
+    public void sweepExpiredExports() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+
+        Path directory = Paths.get(exportDir);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant fileCutoff = Instant.now().minus(retentionHours, ChronoUnit.HOURS);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(fileCutoff) && !isInUse(file)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Export retention sweep failed: " + e.getMessage());
+        }
+    }
+
+    private void run(ExportJob job) {
+        try {
+            job.markRunning(estimateRows(job));
+            Files.createDirectories(Paths.get(exportDir));
+            Path partFile = Paths.get(exportDir, job.getId() + job.getFormat().getExtension() + ".part");
+            Path finalFile = Paths.get(exportDir, job.getId() + job.getFormat().getExtension());
+
+            try (OutputStream out = Files.newOutputStream(partFile);
+                 RowWriter writer = new CountingRowWriter(job.getFormat().open(out, objectMapper), job.getRowsProcessed())) {
+                if (job.getType() == ExportJobType.TIMESHEETS) {
+                    if (job.getStartDate() != null) {
+                        timesheetService.exportWeeklyTimesheet(writer, job.getStartDate(), job.getEndDate());
+                    } else {
+                        timesheetService.exportWeeklyTimesheet(writer);
+                    }
+                } else {
+                    if (job.getStartDate() != null) {
+                        adminService.exportAuditLogs(writer, job.getStartDate(), job.getEndDate());
+                    } else {
+                        adminService.exportAuditLogs(writer);
+                    }
+                }
+            }
+            Files.move(partFile, finalFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            job.markCompleted(finalFile);
+        } catch (Exception e) {
+            job.markFailed(e.getMessage());
+            auditService.log(null, "EXPORT_JOB_FAILURE", "FAILURE", "Export job " + job.getId() + " failed: " + e.getMessage());
+        }
+    }
+
+    private Long estimateRows(ExportJob job) {
+        if (job.getType() == ExportJobType.TIMESHEETS) {
+            LocalDateTime start = job.getStartDate();
+            LocalDateTime end = job.getEndDate();
+            if (start == null) {
+                start = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+                end = start.plusDays(7);
+            }
+            return clockLogRepository.countByTimestampBetween(start, end);
+        }
+        // Archived audit logs are not counted, so the estimate is a lower bound for old ranges.
+        return job.getStartDate() != null
+                ? auditLogRepository.countByTimestampBetween(job.getStartDate(), job.getEndDate())
+                : auditLogRepository.count();
+    }
+
+    private boolean isInUse(Path file) {
+        return jobs.values().stream().anyMatch(job -> file.equals(job.getFile()));
+    }
+
+    private ExportJob findJob(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("Export job not found: " + jobId);
+        }
+        return job;
+    }
+
+    private ExportJobDto toDto(ExportJob job) {
+        Long fileSize = null;
+        if (job.getFile() != null) {
+            try {
+                fileSize = Files.size(job.getFile());
+            } catch (IOException e) {
+                // The file was swept or removed; report the job without a size.
+            }
+        }
+        return ExportJobDto.builder()
+                .id(job.getId())
+                .type(job.getType())
+                .format(job.getFormat().name())
+                .status(job.getStatus())
+                .rowsProcessed(job.getRowsProcessed().get())
+                .totalRows(job.getTotalRows())
+                .etaSeconds(job.estimateSecondsRemaining())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .fileName(job.getStatus() == ExportJobStatus.COMPLETED ? getDownloadFileName(job.getId()) : null)
+                .fileSize(fileSize)
+                .error(job.getError())
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.config.StorageMode;
+import com.timesheet.offline.model.AuditLog;
+import com.timesheet.offline.model.ClockAction;
+import com.timesheet.offline.model.ClockLog;
+import com.timesheet.offline.model.WorkSession;
+import com.timesheet.offline.repository.ClockLogRepository;
+import com.timesheet.offline.repository.WorkSessionRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Closes work sessions that have been open for longer than any real shift, i.e. people who forgot to clock out.
+ * <p>
+ * Each batch is one statement: it picks the oldest open sessions through the partial index on open
+ * sessions (see SchemaInitializer), closes them, and inserts a synthetic CLOCK_OUT log (auto_closed = true)
+ * and an AUTO_CLOCK_OUT audit entry for each, which the admin notification feed shows. Nothing is loaded
+ * into the JVM. Rows locked by a concurrent punch are skipped and picked up on the next run.
+ * <p>
+ * An auto-closed session is credited with 'sessions.auto-close.credited-hours' rather than its open time,
+ * so a forgotten clock-out no longer shows up as a 40-hour shift in the weekly timesheet.
+ * In embedded mode (see StorageMode) the same work is done through the entities instead, since the
+ * statement is PostgreSQL-only; small embedded sites never have many open sessions.
+ * Scheduled through ClusterJobScheduler (see ScheduledJobsConfig).
+ */
+@Service
+@RequiredArgsConstructor
+public class ForgottenClockOutSweeper {
+
+    private static final String CLOSE_BATCH_SQL =
+            "WITH expired AS ("
+                    + "  SELECT id FROM work_sessions "
+                    + "  WHERE ended_at IS NULL AND started_at < :cutoff "
+                    + "  ORDER BY started_at LIMIT :batchSize FOR UPDATE SKIP LOCKED"
+                    + "), closed AS ("
+                    + "  UPDATE work_sessions w "
+                    + "  SET ended_at = w.started_at + :creditedSeconds * INTERVAL '1 second', "
+                    + "      duration_seconds = :creditedSeconds, auto_closed = TRUE "
+                    + "  FROM expired WHERE w.id = expired.id "
+                    + "  RETURNING w.user_id, w.site_id, w.session_key, w.started_at, w.ended_at"
+                    + "), clock_outs AS ("
+                    + "  INSERT INTO clock_logs (user_id, action, timestamp, session_id, duration_hours, site_id, auto_closed) "
+                    + "  SELECT user_id, 'CLOCK_OUT', ended_at, session_key, :creditedSeconds / 3600.0, site_id, TRUE FROM closed"
+                    + ") "
+                    + "INSERT INTO audit_logs (user_id, action, status, timestamp, details, site_id) "
+                    + "SELECT user_id, 'AUTO_CLOCK_OUT', 'SUCCESS', :now, "
+                    + "  'Shift started ' || to_char(started_at, 'YYYY-MM-DD HH24:MI') || ' was still open after ' "
+                    + "  || :maxOpenHours || ' hours and was closed automatically. Please review.', site_id "
+                    + "FROM closed";
+
+    private static final DateTimeFormatter STARTED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final EntityManager entityManager;
+    private final AuditService auditService;
+    private final TimesheetSnapshotService timesheetSnapshotService;
+    private final WorkSessionRepository workSessionRepository;
+    private final ClockLogRepository clockLogRepository;
+    private final StorageMode storageMode;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${sessions.auto-close.max-open-hours:16}")
+    private long maxOpenHours;
+
+    @Value("${sessions.auto-close.credited-hours:8}")
+    private long creditedHours;
+
+    @Value("${sessions.auto-close.batch-size:5000}")
+    private int batchSize;
+
+    /**
+     * Closes every session that has been open for longer than 'sessions.auto-close.max-open-hours',
+     * in batches of 'sessions.auto-close.batch-size', each in its own transaction.
+     */
+    public void closeForgottenSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusHours(maxOpenHours);
+        long creditedSeconds = Math.min(creditedHours, maxOpenHours) * 3600;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        int total = 0;
+        int closed;
+        do {
+            closed = transaction.execute(status -> storageMode.isEmbedded()
+                    ? closeBatchWithEntities(now, cutoff, creditedSeconds)
+                    : closeBatchWithStatement(now, cutoff, creditedSeconds));
+            total += closed;
+        } while (closed == batchSize);
+
+        if (total > 0) {
+            // Closed weeks are not affected: sessions are closed within a day of starting, before their week
+            // counts as closed (timesheet.snapshot.closed-after-hours must stay above max-open-hours).
+            timesheetSnapshotService.invalidateOpenWeeks();
+            auditService.log(null, "AUTO_CLOCK_OUT_SWEEP", "SUCCESS",
+                    "Automatically closed " + total + " shift(s) open for more than " + maxOpenHours + " hours.");
+        }
+    }
+
+    private int closeBatchWithStatement(LocalDateTime now, LocalDateTime cutoff, long creditedSeconds) {
+        return entityManager.createNativeQuery(CLOSE_BATCH_SQL)
+                .setParameter("cutoff", cutoff)
+                .setParameter("batchSize", batchSize)
+                .setParameter("creditedSeconds", creditedSeconds)
+                .setParameter("now", now)
+                .setParameter("maxOpenHours", maxOpenHours)
+                .unwrap(NativeQuery.class)
+                // Only these tables change, so Hibernate keeps the user and site caches.
+                .addSynchronizedEntityClass(WorkSession.class)
+                .addSynchronizedEntityClass(ClockLog.class)
+                .addSynchronizedEntityClass(AuditLog.class)
+                .executeUpdate();
+    }
+
+    private int closeBatchWithEntities(LocalDateTime now, LocalDateTime cutoff, long creditedSeconds) {
+        List<WorkSession> expired = workSessionRepository.findByEndedAtIsNullAndStartedAtBeforeOrderByStartedAtAsc(
+                cutoff, PageRequest.of(0, batchSize));
+        for (WorkSession session : expired) {
+            LocalDateTime endedAt = session.getStartedAt().plusSeconds(creditedSeconds);
+            session.setEndedAt(endedAt);
+            session.setDurationSeconds(creditedSeconds);
+            session.setAutoClosed(true);
+
+            ClockLog clockOut = new ClockLog();
+            clockOut.setUser(session.getUser());
+            clockOut.setAction(ClockAction.CLOCK_OUT);
+            clockOut.setTimestamp(endedAt);
+            clockOut.setSessionId(session.getSessionKey());
+            clockOut.setDurationHours(creditedSeconds / 3600.0);
+            clockOut.setSiteId(session.getSiteId());
+            clockOut.setAutoClosed(true);
+            clockLogRepository.save(clockOut);
+
+            AuditLog audit = new AuditLog();
+            audit.setUserId(session.getUser().getId());
+            audit.setAction("AUTO_CLOCK_OUT");
+            audit.setStatus("SUCCESS");
+            audit.setTimestamp(now);
+            audit.setDetails("Shift started " + session.getStartedAt().format(STARTED_AT_FORMAT) + " was still open after "
+                    + maxOpenHours + " hours and was closed automatically. Please review.");
+            audit.setSiteId(session.getSiteId());
+            entityManager.persist(audit);
+        }
+        return expired.size();
+    }
+}
@@ -0,0 +1,161 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.dto.OccupancyDto;
+import com.timesheet.offline.model.Role;
+import com.timesheet.offline.projection.SessionSpanRow;
+import com.timesheet.offline.repository.WorkSessionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Computes how many people were on site over time, in fixed-size buckets.
+ * <p>
+ * Instead of counting overlapping sessions for every bucket, the session starts and ends are sorted
+ * once and swept together with the bucket boundaries, which is O(n log n + buckets) for n sessions.
+ * Only two primitive timestamps per session are held in memory.
+ * Sessions are only kept until the weekly reset (see TimesheetService.weeklyReset), so ranges before the
+ * current week report zero occupancy.
+ */
+@Service
+@RequiredArgsConstructor
+public class OccupancyService {
+
+    private final WorkSessionRepository workSessionRepository;
+
+    @Value("${analytics.occupancy.max-buckets:20000}")
+    private int maxBuckets;
+
+    /**
+     * @param from The start of the first bucket.
+     * @param to The end of the range; a last partial bucket is cut off here.
+     * @param bucketMinutes The bucket size in minutes.
+     * @param siteId Only count this site's sessions; null for all sites.
+     * @param role Only count users with this role; null for all roles.
+     * @return The peak and average headcount of every bucket.
+     * @throws IllegalArgumentException if the range or bucket size is invalid, or there would be too many buckets.
+     */
+    @Transactional(readOnly = true)
+    public OccupancyDto getOccupancy(LocalDateTime from, LocalDateTime to, int bucketMinutes, Long siteId, Role role) {
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("The end of the range must be after its start.");
+        }
+        if (bucketMinutes < 1) {
+            throw new IllegalArgumentException("The bucket size must be at least one minute.");
+        }
+        long rangeSeconds = Duration.between(from, to).toSeconds();
+        long bucketSeconds = bucketMinutes * 60L;
+        long bucketCount = (rangeSeconds + bucketSeconds - 1) / bucketSeconds;
+        if (bucketCount > maxBuckets) {
+            throw new IllegalArgumentException("Too many buckets (" + bucketCount + "); use a larger bucket size or a shorter range.");
+        }
+
+        // Open sessions count as on site until now.
+        long origin = from.toEpochSecond(ZoneOffset.UTC);
+        long openUntil = Math.min(rangeSeconds, LocalDateTime.now().toEpochSecond(ZoneOffset.UTC) - origin);
+        SessionEvents events = new SessionEvents();
+        try (Stream<SessionSpanRow> spans = workSessionRepository.streamSpansOverlapping(from, to, siteId, role)) {
+            spans.forEach(span -> {
+                long start = Math.max(0, span.startedAt().toEpochSecond(ZoneOffset.UTC) - origin);
+                long end = span.endedAt() != null
+                        ? Math.min(rangeSeconds, span.endedAt().toEpochSecond(ZoneOffset.UTC) - origin)
+                        : openUntil;
+                if (end > start) {
+                    events.add(start, end);
+                }
+            });
+        }
+
+        int[] peak = new int[(int) bucketCount];
+        double[] average = new double[(int) bucketCount];
+        sweep(events.sortedStarts(), events.sortedEnds(), rangeSeconds, bucketSeconds, peak, average);
+
+        return OccupancyDto.builder()
+                .from(from)
+                .to(to)
+                .bucketMinutes(bucketMinutes)
+                .siteId(siteId)
+                .role(role)
+                .peak(peak)
+                .average(average)
+                .build();
+    }
+
+    /**
+     * Walks the sorted starts, ends and bucket boundaries in a single pass. At equal times ends are
+     * applied before starts, so back-to-back shifts are not counted as two people at the handover.
+     */
+    static void sweep(long[] starts, long[] ends, long rangeSeconds, long bucketSeconds, int[] peak, double[] average) {
+        int nextStart = 0;
+        int nextEnd = 0;
+        int onSite = 0;
+        for (int bucket = 0; bucket < peak.length; bucket++) {
+            long bucketStart = bucket * bucketSeconds;
+            long bucketEnd = Math.min(rangeSeconds, bucketStart + bucketSeconds);
+            long time = bucketStart;
+            long weightedSeconds = 0;
+            int bucketPeak = onSite;
+
+            while (true) {
+                long nextEvent = Math.min(
+                        nextEnd < ends.length ? ends[nextEnd] : Long.MAX_VALUE,
+                        nextStart < starts.length ? starts[nextStart] : Long.MAX_VALUE);
+                if (nextEvent >= bucketEnd) {
+                    break;
+                }
+                weightedSeconds += (long) onSite * (nextEvent - time);
+                time = nextEvent;
+                while (nextEnd < ends.length && ends[nextEnd] == time) {
+                    onSite--;
+                    nextEnd++;
+                }
+                while (nextStart < starts.length && starts[nextStart] == time) {
+                    onSite++;
+                    nextStart++;
+                }
+                // People leaving exactly at the bucket boundary are not counted in this bucket's peak.
+                bucketPeak = time == bucketStart ? onSite : Math.max(bucketPeak, onSite);
+            }
+            weightedSeconds += (long) onSite * (bucketEnd - time);
+
+            peak[bucket] = bucketPeak;
+            average[bucket] = Math.round(weightedSeconds * 100.0 / (bucketEnd - bucketStart)) / 100.0;
+        }
+    }
+
+    /** Growable primitive arrays of session starts and ends, in seconds from the start of the range. */
+    private static final class SessionEvents {
+        private long[] starts = new long[1024];
+        private long[] ends = new long[1024];
+        private int size;
+
+        private void add(long start, long end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        private long[] sortedStarts() {
+            long[] sorted = Arrays.copyOf(starts, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private long[] sortedEnds() {
+            long[] sorted = Arrays.copyOf(ends, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
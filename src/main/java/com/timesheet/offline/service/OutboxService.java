@@ -0,0 +1,369 @@
+package com.timesheet.offline.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.model.OutboxCursor;
+import com.timesheet.offline.model.OutboxEvent;
+import com.timesheet.offline.model.OutboxEventType;
+import com.timesheet.offline.model.OutboxGap;
+import com.timesheet.offline.outbox.OutboxSubscriber;
+import com.timesheet.offline.repository.OutboxCursorRepository;
+import com.timesheet.offline.repository.OutboxEventRepository;
+import com.timesheet.offline.repository.OutboxGapRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for punches and user changes.
+ * <p>
+ * publish writes an event in the caller's transaction, so the event exists exactly when the change does.
+ * After the commit, the events are handed to every OutboxSubscriber bean on a small pool with one thread per
+ * subscriber. Each subscriber has its own cursor row; the node dispatching to it locks that row for the length
+ * of a batch, so across the cluster a subscriber sees its events in id order, one batch at a time, and a failing
+ * subscriber is retried with exponential backoff without holding up the others. A poll picks up events written
+ * by other nodes, and retries.
+ * <p>
+ * The exception to id order is an event whose transaction took longer than 'outbox.gap-timeout-ms' to commit:
+ * the cursor has moved past its id by then, so it is handed over late, after events written after it. Skipped
+ * ids are kept as OutboxGaps and checked on every batch for 'outbox.gap-retention-minutes'. Ages are measured
+ * with the database's clock, so clock skew between nodes doesn't shorten the wait.
+ * <p>
+ * Dispatched events are kept for 'outbox.retention-hours' and then removed by the "outbox-prune" cluster job.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxEventRepository eventRepository;
+    private final OutboxCursorRepository cursorRepository;
+    private final OutboxGapRepository gapRepository;
+    private final List<OutboxSubscriber> subscribers;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * How long a gap in the event ids may be waited on; see committedPrefix.
+     */
+    @Value("${outbox.gap-timeout-ms:5000}")
+    private long gapTimeoutMs;
+
+    /**
+     * How long skipped ids are checked for events that commit late; longer than any transaction should run.
+     */
+    @Value("${outbox.gap-retention-minutes:60}")
+    private long gapRetentionMinutes;
+
+    @Value("${outbox.max-backoff-seconds:300}")
+    private long maxBackoffSeconds;
+
+    @Value("${outbox.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${outbox.prune-chunk-size:1000}")
+    private int pruneChunkSize;
+
+    private final Map<String, AtomicBoolean> dispatchPending = new ConcurrentHashMap<>();
+    private final Set<String> knownCursors = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor dispatchExecutor;
+
+    @PostConstruct
+    void startDispatcher() {
+        Set<String> names = new HashSet<>();
+        for (OutboxSubscriber subscriber : subscribers) {
+            if (!names.add(subscriber.getName())) {
+                throw new IllegalStateException("Two outbox subscribers are named " + subscriber.getName());
+            }
+            dispatchPending.put(subscriber.getName(), new AtomicBoolean());
+        }
+        int threads = Math.max(1, subscribers.size());
+        AtomicInteger threadCount = new AtomicInteger();
+        // Each subscriber has at most one run queued (see requestDispatch), so the queue never fills up.
+        dispatchExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "outbox-dispatch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        dispatchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void stopDispatcher() {
+        dispatchExecutor.shutdownNow();
+    }
+
+    /**
+     * Writes an event in the current transaction. Subscribers are notified once it has committed.
+     * @param type What happened.
+     * @param userId The user it is about, if any.
+     * @param siteId The site it happened at, if any.
+     * @param occurredAt When it happened.
+     * @param payload Event details, stored as JSON.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(OutboxEventType type, Long userId, Long siteId, LocalDateTime occurredAt, Map<String, ?> payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setType(type);
+        event.setUserId(userId);
+        event.setSiteId(siteId);
+        event.setOccurredAt(occurredAt);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload can't be written as JSON: " + e.getMessage());
+        }
+        eventRepository.save(event);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatchAll();
+            }
+        });
+    }
+
+    /**
+     * Picks up events written by other nodes, and retries subscribers whose backoff has passed.
+     * Runs on every node; the cursor locks keep nodes apart.
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void dispatchAll() {
+        subscribers.forEach(this::requestDispatch);
+    }
+
+    /**
+     * Scheduled task that deletes events every subscriber has handled, once they are older than
+     * 'outbox.retention-hours', in small id windows. Scheduled through ClusterJobScheduler (see ScheduledJobsConfig).
+     */
+    public void pruneDispatchedEvents() {
+        subscribers.forEach(this::ensureCursor);
+        Long handled = cursorRepository.findMinLastEventId(
+                subscribers.stream().map(OutboxSubscriber::getName).collect(Collectors.toList()));
+        Optional<OutboxEvent> oldest = eventRepository.findTopByOrderByIdAsc();
+        if (handled == null || oldest.isEmpty()) {
+            return;
+        }
+        LocalDateTime cutoff = eventRepository.currentDatabaseTime().minusHours(retentionHours);
+        long deleted = 0;
+        for (long lower = oldest.get().getId() - 1; lower < handled; lower += pruneChunkSize) {
+            deleted += eventRepository.deleteByIdRange(lower, Math.min(lower + pruneChunkSize, handled), cutoff);
+        }
+        if (deleted > 0) {
+            System.out.println("Outbox pruned " + deleted + " dispatched events.");
+        }
+    }
+
+    /**
+     * Runs the subscriber's dispatch loop on the pool, unless a run is already queued.
+     */
+    private void requestDispatch(OutboxSubscriber subscriber) {
+        AtomicBoolean pending = dispatchPending.get(subscriber.getName());
+        if (pending.compareAndSet(false, true)) {
+            dispatchExecutor.execute(() -> {
+                pending.set(false);
+                dispatch(subscriber);
+            });
+        }
+    }
+
+    private void dispatch(OutboxSubscriber subscriber) {
+        try {
+            ensureCursor(subscriber);
+            while (dispatchBatch(subscriber)) {
+                // Keep going while full batches are ready.
+            }
+        } catch (RuntimeException e) {
+            recordFailure(subscriber, e);
+        }
+    }
+
+    /**
+     * Hands the next batch to the subscriber and moves its cursor past it, in one transaction.
+     * @return true if a full batch was handled and more events may be waiting.
+     */
+    private boolean dispatchBatch(OutboxSubscriber subscriber) {
+        Boolean more = new TransactionTemplate(transactionManager).execute(status -> {
+            OutboxCursor cursor = cursorRepository.lockBySubscriber(subscriber.getName()).orElse(null);
+            LocalDateTime now = eventRepository.currentDatabaseTime();
+            if (cursor == null || (cursor.getNextAttemptAt() != null && cursor.getNextAttemptAt().isAfter(now))) {
+                return false; // Another node is dispatching to it, or it is backing off.
+            }
+            handOverLateEvents(subscriber, now);
+            List<OutboxEvent> batch = eventRepository.findByIdGreaterThanOrderByIdAsc(cursor.getLastEventId(),
+                    PageRequest.of(0, subscriber.getBatchSize()));
+            List<OutboxEvent> ready = committedPrefix(cursor.getLastEventId(), batch, now.minusNanos(gapTimeoutMs * 1_000_000));
+            if (ready.isEmpty()) {
+                return false;
+            }
+            recordGaps(subscriber.getName(), cursor.getLastEventId(), ready, now);
+            handle(subscriber, ready);
+            cursor.setLastEventId(ready.get(ready.size() - 1).getId());
+            cursor.setAttempts(0);
+            cursor.setNextAttemptAt(null);
+            cursor.setLastError(null);
+            return ready.size() == subscriber.getBatchSize();
+        });
+        return Boolean.TRUE.equals(more);
+    }
+
+    private static void handle(OutboxSubscriber subscriber, List<OutboxEvent> events) {
+        List<OutboxEvent> accepted = events.stream()
+                .filter(event -> subscriber.accepts(event.getType()))
+                .collect(Collectors.toList());
+        if (!accepted.isEmpty()) {
+            subscriber.handle(accepted);
+        }
+    }
+
+    /**
+     * Hands the subscriber the events that have committed in ids it skipped, and narrows its gaps down to the
+     * ids that are still missing. Gaps older than the retention are dropped: their transactions rolled back.
+     */
+    private void handOverLateEvents(OutboxSubscriber subscriber, LocalDateTime now) {
+        List<OutboxGap> gaps = gapRepository.findBySubscriberOrderByFromIdAsc(subscriber.getName());
+        if (gaps.isEmpty()) {
+            return;
+        }
+        List<OutboxEvent> late = eventRepository.findInGapsOf(subscriber.getName());
+        if (!late.isEmpty()) {
+            System.out.println("Outbox subscriber " + subscriber.getName() + " receives " + late.size()
+                    + " events that committed after later ones.");
+            handle(subscriber, late);
+        }
+        LocalDateTime expiry = now.minusMinutes(gapRetentionMinutes);
+        for (OutboxGap gap : gaps) {
+            List<Long> filled = late.stream()
+                    .map(OutboxEvent::getId)
+                    .filter(id -> id >= gap.getFromId() && id <= gap.getToId())
+                    .collect(Collectors.toList());
+            if (filled.isEmpty() && !gap.getSkippedAt().isBefore(expiry)) {
+                continue;
+            }
+            gapRepository.delete(gap);
+            if (gap.getSkippedAt().isBefore(expiry)) {
+                continue;
+            }
+            long from = gap.getFromId();
+            for (long id : filled) {
+                if (id > from) {
+                    saveGap(subscriber.getName(), from, id - 1, gap.getSkippedAt());
+                }
+                from = id + 1;
+            }
+            if (from <= gap.getToId()) {
+                saveGap(subscriber.getName(), from, gap.getToId(), gap.getSkippedAt());
+            }
+        }
+    }
+
+    /**
+     * Remembers the ids the cursor is about to move past without having seen them.
+     */
+    private void recordGaps(String subscriber, long lastEventId, List<OutboxEvent> ready, LocalDateTime now) {
+        long expectedId = lastEventId + 1;
+        for (OutboxEvent event : ready) {
+            if (event.getId() > expectedId) {
+                saveGap(subscriber, expectedId, event.getId() - 1, now);
+            }
+            expectedId = event.getId() + 1;
+        }
+    }
+
+    private void saveGap(String subscriber, long fromId, long toId, LocalDateTime skippedAt) {
+        OutboxGap gap = new OutboxGap();
+        gap.setSubscriber(subscriber);
+        gap.setFromId(fromId);
+        gap.setToId(toId);
+        gap.setSkippedAt(skippedAt);
+        gapRepository.save(gap);
+    }
+
+    /**
+     * Event ids are assigned when an event is written, but only become visible when its transaction commits,
+     * so an event can show up after one with a higher id has already been dispatched. Events after a gap in
+     * the ids are therefore held back until the event after the gap is older than the gap timeout. Then the
+     * gap is skipped, most likely left by a transaction that rolled back; see handOverLateEvents for the rest.
+     * @param lastEventId The subscriber's cursor.
+     * @param batch The next events after the cursor, in id order.
+     * @param gapCutoff Gaps before events written before this are skipped.
+     * @return The events that can be dispatched now.
+     */
+    static List<OutboxEvent> committedPrefix(long lastEventId, List<OutboxEvent> batch, LocalDateTime gapCutoff) {
+        long expectedId = lastEventId + 1;
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            if (event.getId() != expectedId && event.getCreatedAt().isAfter(gapCutoff)) {
+                return batch.subList(0, i);
+            }
+            expectedId = event.getId() + 1;
+        }
+        return batch;
+    }
+
+    private void recordFailure(OutboxSubscriber subscriber, RuntimeException failure) {
+        System.err.println("Outbox subscriber " + subscriber.getName() + " failed: " + failure.getMessage());
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    cursorRepository.lockBySubscriber(subscriber.getName()).ifPresent(cursor -> {
+                        int attempts = cursor.getAttempts() + 1;
+                        long backoffSeconds = Math.min(maxBackoffSeconds, 1L << Math.min(attempts, 20));
+                        cursor.setAttempts(attempts);
+                        cursor.setNextAttemptAt(eventRepository.currentDatabaseTime().plusSeconds(backoffSeconds));
+                        String message = String.valueOf(failure.getMessage());
+                        cursor.setLastError(message.length() > 1000 ? message.substring(0, 1000) : message);
+                    }));
+        } catch (RuntimeException e) {
+            // The database is probably down; the next poll tries again.
+            System.err.println("Could not record the failure of outbox subscriber " + subscriber.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the subscriber's cursor the first time it is seen. A new subscriber starts with the oldest event
+     * still kept.
+     */
+    private void ensureCursor(OutboxSubscriber subscriber) {
+        String name = subscriber.getName();
+        if (knownCursors.contains(name)) {
+            return;
+        }
+        if (!cursorRepository.existsById(name)) {
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    OutboxCursor cursor = new OutboxCursor();
+                    cursor.setSubscriber(name);
+                    cursorRepository.save(cursor);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Another node created it at the same moment.
+            }
+        }
+        knownCursors.add(name);
+    }
+}
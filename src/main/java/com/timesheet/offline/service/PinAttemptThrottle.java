@@ -0,0 +1,207 @@
+package com.timesheet.offline.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.timesheet.offline.exception.TooManyAttemptsException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles failed kiosk PIN attempts per client: its address, plus the kiosk ID for registered kiosks
+ * (see AuthService.handlePinClockAction).
+ * <p>
+ * Each client has a token bucket: every failed attempt takes a token, and tokens refill at a fixed rate.
+ * A client that empties its bucket is locked out, for twice as long on each consecutive lockout, up to a
+ * maximum; a successful punch resets the escalation. A locked-out client is rejected by
+ * {@link #checkAllowed} before any PIN is hashed.
+ * <p>
+ * State is node-local and bounded: at most 'kiosk.throttle.max-clients' entries, each dropped after
+ * being idle for 'kiosk.throttle.idle-expiry-minutes'. Failures are not audited one by one; they are
+ * summed per client and written as one summary row per flush interval.
+ */
+@Service
+@RequiredArgsConstructor
+public class PinAttemptThrottle {
+
+    private final AuditService auditService;
+
+    @Value("${kiosk.throttle.burst:5}")
+    private int burst;
+
+    @Value("${kiosk.throttle.refill-per-minute:6}")
+    private double refillPerMinute;
+
+    @Value("${kiosk.throttle.lockout-seconds:30}")
+    private long lockoutSeconds;
+
+    @Value("${kiosk.throttle.max-lockout-seconds:900}")
+    private long maxLockoutSeconds;
+
+    @Value("${kiosk.throttle.max-clients:10000}")
+    private long maxClients;
+
+    @Value("${kiosk.throttle.idle-expiry-minutes:60}")
+    private long idleExpiryMinutes;
+
+    /** Summaries of clients evicted from the cache before their pending failures were flushed. */
+    private final Queue<FailureSummary> evictedSummaries = new ConcurrentLinkedQueue<>();
+
+    private Cache<String, ClientAttempts> clients;
+
+    /**
+     * Rejects the attempt without doing any work if the client is currently locked out.
+     * @param clientKey The client's address, and kiosk ID if registered.
+     * @throws TooManyAttemptsException if the client is locked out.
+     */
+    public void checkAllowed(String clientKey) {
+        ClientAttempts attempts = clients.getIfPresent(clientKey);
+        if (attempts == null) {
+            return;
+        }
+        long retryAfterNanos;
+        synchronized (attempts) {
+            retryAfterNanos = attempts.lockedUntilNanos - System.nanoTime();
+        }
+        if (retryAfterNanos > 0) {
+            throw new TooManyAttemptsException("Too many incorrect PINs. Please wait before trying again.",
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos)));
+        }
+    }
+
+    /**
+     * Records a failed attempt, and locks the client out if it has used up its bucket.
+     * @param clientKey The client's address, and kiosk ID if registered.
+     */
+    public void recordFailure(String clientKey) {
+        ClientAttempts attempts = clients.get(clientKey, key -> new ClientAttempts(burst));
+        long now = System.nanoTime();
+        synchronized (attempts) {
+            attempts.refill(now, refillPerMinute, burst);
+            attempts.tokens -= 1;
+            attempts.pendingFailures++;
+            LocalDateTime failedAt = LocalDateTime.now();
+            if (attempts.firstPendingAt == null) {
+                attempts.firstPendingAt = failedAt;
+            }
+            attempts.lastPendingAt = failedAt;
+
+            if (attempts.tokens < 1) {
+                long lockout = Math.min(maxLockoutSeconds, lockoutSeconds << Math.min(attempts.lockoutLevel, 20));
+                attempts.lockoutLevel++;
+                attempts.lockedUntilNanos = now + TimeUnit.SECONDS.toNanos(lockout);
+                attempts.pendingLockouts++;
+            }
+        }
+    }
+
+    /**
+     * Clears the lockout escalation after a correct PIN. Spent tokens still refill at the normal rate.
+     * @param clientKey The client's address, and kiosk ID if registered.
+     */
+    public void recordSuccess(String clientKey) {
+        ClientAttempts attempts = clients.getIfPresent(clientKey);
+        if (attempts != null) {
+            synchronized (attempts) {
+                attempts.lockoutLevel = 0;
+            }
+        }
+    }
+
+    /**
+     * Writes one audit row per client with failures since the last flush.
+     */
+    @Scheduled(fixedDelayString = "${kiosk.throttle.audit-flush-ms:60000}")
+    @PreDestroy
+    public void flushFailureSummaries() {
+        clients.asMap().forEach((clientKey, attempts) -> {
+            FailureSummary summary;
+            synchronized (attempts) {
+                summary = attempts.drainSummary(clientKey);
+            }
+            if (summary != null) {
+                audit(summary);
+            }
+        });
+        FailureSummary evicted;
+        while ((evicted = evictedSummaries.poll()) != null) {
+            audit(evicted);
+        }
+    }
+
+    private void audit(FailureSummary summary) {
+        String details = summary.failures() == 1
+                ? "Failed PIN login attempt from " + summary.clientKey() + ". No matching user found."
+                : summary.failures() + " failed PIN login attempts from " + summary.clientKey()
+                        + " between " + summary.firstAt() + " and " + summary.lastAt() + ".";
+        if (summary.lockouts() > 0) {
+            details += " Client locked out " + summary.lockouts() + " time(s).";
+        }
+        auditService.log(null, "PIN_LOGIN_FAILURE", "FAILURE", details);
+    }
+
+    @PostConstruct
+    void createClientCache() {
+        clients = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofMinutes(idleExpiryMinutes))
+                .removalListener((String clientKey, ClientAttempts attempts, RemovalCause cause) -> {
+                    if (clientKey != null && attempts != null && cause.wasEvicted()) {
+                        synchronized (attempts) {
+                            FailureSummary summary = attempts.drainSummary(clientKey);
+                            if (summary != null) {
+                                evictedSummaries.add(summary);
+                            }
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /** Mutable per-client state; every access is synchronized on the instance. */
+    private static final class ClientAttempts {
+        private double tokens;
+        private long refilledAtNanos = System.nanoTime();
+        private int lockoutLevel;
+        private long lockedUntilNanos = refilledAtNanos;
+        private int pendingFailures;
+        private int pendingLockouts;
+        private LocalDateTime firstPendingAt;
+        private LocalDateTime lastPendingAt;
+
+        private ClientAttempts(int burst) {
+            this.tokens = burst;
+        }
+
+        private void refill(long now, double refillPerMinute, int burst) {
+            double elapsedMinutes = (now - refilledAtNanos) / 60_000_000_000.0;
+            tokens = Math.min(burst, tokens + elapsedMinutes * refillPerMinute);
+            refilledAtNanos = now;
+        }
+
+        private FailureSummary drainSummary(String clientKey) {
+            if (pendingFailures == 0) {
+                return null;
+            }
+            FailureSummary summary = new FailureSummary(clientKey, pendingFailures, pendingLockouts, firstPendingAt, lastPendingAt);
+            pendingFailures = 0;
+            pendingLockouts = 0;
+            firstPendingAt = null;
+            lastPendingAt = null;
+            return summary;
+        }
+    }
+
+    private record FailureSummary(String clientKey, int failures, int lockouts, LocalDateTime firstAt, LocalDateTime lastAt) {
+    }
+}
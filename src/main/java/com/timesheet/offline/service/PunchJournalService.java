@@ -0,0 +1,178 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.storage.JournaledPunch;
+import com.timesheet.offline.storage.PunchJournal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the kiosk working while the database is down, using a local PunchJournal.
+ * <p>
+ * Once a punch fails because the database is unreachable, punches are appended to the journal and
+ * acknowledged as soon as they are on disk. A background task replays the journal in order, through the
+ * applier registered by AuthService, and checkpoints its progress. While anything is still waiting to be
+ * replayed, new punches also go to the journal, so each employee's punches reach the database in order.
+ * Replaying is idempotent: a punch that is already in the database (by punch ID) is skipped.
+ * <p>
+ * The journal is node-local; 'kiosk.journal.dir' must be on persistent local storage.
+ */
+@Service
+public class PunchJournalService {
+
+    @Value("${kiosk.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kiosk.journal.dir:./data/punch-journal}")
+    private String journalDir;
+
+    @Value("${kiosk.journal.segment-bytes:4194304}")
+    private int segmentBytes;
+
+    @Value("${kiosk.journal.fsync:true}")
+    private boolean fsync;
+
+    @Value("${kiosk.journal.replay-batch:500}")
+    private int replayBatch;
+
+    private PunchJournal journal;
+    private volatile Consumer<JournaledPunch> applier;
+    private volatile boolean databaseAvailable = true;
+
+    @PostConstruct
+    void openJournal() throws IOException {
+        if (enabled) {
+            journal = PunchJournal.open(Paths.get(journalDir), segmentBytes, fsync);
+            if (journal.pendingCount() > 0) {
+                System.out.println("Punch journal has " + journal.pendingCount() + " punches waiting to be replayed.");
+            }
+        }
+    }
+
+    @PreDestroy
+    void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Registers the code that applies a journaled punch to the database, in its own transaction.
+     * It should throw for database outages, and handle punches that can't be applied itself.
+     */
+    public void registerApplier(Consumer<JournaledPunch> applier) {
+        this.applier = applier;
+    }
+
+    /**
+     * @return true if a new punch must go to the journal: the database is known to be down,
+     *         or earlier punches are still waiting to be replayed.
+     */
+    public boolean shouldJournal() {
+        return journal != null && (!databaseAvailable || journal.pendingCount() > 0);
+    }
+
+    /**
+     * @return false from the moment a punch found the database unreachable until the journal has been replayed.
+     *         Always true when the journal is disabled, since punches then have nowhere else to go.
+     */
+    public boolean isDatabaseAvailable() {
+        return journal == null || databaseAvailable;
+    }
+
+    /**
+     * Called when a punch failed because the database is unreachable, so that the next punches
+     * go straight to the journal instead of waiting for the database again.
+     * @return true if the punch can be journaled instead.
+     */
+    public boolean markDatabaseUnavailable() {
+        databaseAvailable = false;
+        return journal != null;
+    }
+
+    /**
+     * Appends a punch to the journal and waits until it is on disk.
+     */
+    public JournaledPunch append(UUID punchId, long userId, Long siteId, LocalDateTime timestamp) {
+        try {
+            JournaledPunch punch = journal.append(punchId, userId, siteId, timestamp);
+            journal.awaitDurable(punch.seq());
+            return punch;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to the punch journal", e);
+        }
+    }
+
+    /**
+     * Scheduled task that replays journaled punches into the database, oldest first.
+     * Stops at the first database outage and retries on the next run.
+     */
+    @Scheduled(fixedDelayString = "${kiosk.journal.replay-interval-ms:1000}")
+    public void replayPending() {
+        if (journal == null || applier == null) {
+            return;
+        }
+        if (journal.pendingCount() == 0) {
+            databaseAvailable = true; // Let the next punch try the database directly again.
+            return;
+        }
+        try {
+            List<JournaledPunch> batch;
+            while (!(batch = journal.read(journal.getAppliedSeq(), replayBatch)).isEmpty()) {
+                long appliedSeq = journal.getAppliedSeq();
+                try {
+                    for (JournaledPunch punch : batch) {
+                        applier.accept(punch);
+                        appliedSeq = punch.seq();
+                    }
+                } finally {
+                    journal.markApplied(appliedSeq);
+                }
+            }
+            databaseAvailable = true;
+            System.out.println("Punch journal replayed; the database is available again.");
+        } catch (RuntimeException e) {
+            if (!isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            databaseAvailable = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to checkpoint the punch journal", e);
+        }
+    }
+
+    /**
+     * @return true if the exception means the database could not be reached, as opposed to a query that failed.
+     */
+    public static boolean isDatabaseUnavailable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CannotCreateTransactionException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof TransientDataAccessResourceException
+                    || cause instanceof QueryTimeoutException
+                    || cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
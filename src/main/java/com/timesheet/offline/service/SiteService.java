@@ -0,0 +1,222 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.config.QueryCounter;
+import com.timesheet.offline.config.ReplicaRoutingDataSource;
+import com.timesheet.offline.dto.BindKioskRequestDto;
+import com.timesheet.offline.dto.CreateSiteRequestDto;
+import com.timesheet.offline.dto.KioskDto;
+import com.timesheet.offline.dto.SiteDto;
+import com.timesheet.offline.model.Kiosk;
+import com.timesheet.offline.model.Site;
+import com.timesheet.offline.repository.KioskRepository;
+import com.timesheet.offline.repository.SiteRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Service for sites and the kiosks bound to them.
+ * Also runs cross-site reports as one read-only query per site on a small bounded pool,
+ * so a report over all sites takes about as long as the slowest single site.
+ */
+@Service
+@RequiredArgsConstructor
+public class SiteService {
+
+    private final SiteRepository siteRepository;
+    private final KioskRepository kioskRepository;
+    private final AuditService auditService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${reports.site-parallelism:4}")
+    private int siteParallelism;
+
+    private ThreadPoolExecutor siteReportExecutor;
+
+    @PostConstruct
+    void startSiteReportExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        siteReportExecutor = new ThreadPoolExecutor(siteParallelism, siteParallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(100),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "site-report-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // When the pool is saturated, the requesting thread runs the site query itself.
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        siteReportExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void stopSiteReportExecutor() {
+        siteReportExecutor.shutdownNow();
+    }
+
+    public List<SiteDto> getSites() {
+        return siteRepository.findAllByOrderByCodeAsc().stream()
+                .map(this::toSiteDto)
+                .collect(Collectors.toList());
+    }
+
+    @Transactional
+    public SiteDto createSite(CreateSiteRequestDto request) {
+        if (siteRepository.existsByCode(request.getCode())) {
+            throw new IllegalArgumentException("A site with this code already exists.");
+        }
+        Site site = new Site();
+        site.setCode(request.getCode());
+        site.setName(request.getName());
+        Site savedSite = siteRepository.save(site);
+        auditService.log(null, "SITE_CREATE_SUCCESS", "SUCCESS", "Admin created site: " + savedSite.getCode());
+        return toSiteDto(savedSite);
+    }
+
+    public List<KioskDto> getKiosks() {
+        return kioskRepository.findAllByOrderBySiteIdAscKioskIdAsc().stream()
+                .map(this::toKioskDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Binds a kiosk to a site, or moves it to another one.
+     * @param kioskId The ID the kiosk page shows when it is not yet bound.
+     * @param request The site and an optional label.
+     */
+    @Transactional
+    public KioskDto bindKiosk(String kioskId, BindKioskRequestDto request) {
+        requireSite(request.getSiteId());
+        Kiosk kiosk = kioskRepository.findById(kioskId).orElseGet(() -> {
+            Kiosk newKiosk = new Kiosk();
+            newKiosk.setKioskId(kioskId);
+            return newKiosk;
+        });
+        kiosk.setSiteId(request.getSiteId());
+        kiosk.setLabel(request.getLabel());
+        kiosk.setBoundAt(LocalDateTime.now());
+        Kiosk savedKiosk = kioskRepository.save(kiosk);
+        auditService.logForSite(request.getSiteId(), null, "KIOSK_BIND_SUCCESS", "SUCCESS", "Admin bound kiosk " + kioskId + " to site " + request.getSiteId());
+        return toKioskDto(savedKiosk);
+    }
+
+    /**
+     * Finds the site a kiosk belongs to. Both lookups are served from the second-level cache.
+     * While there is only one site, unbound kiosks belong to it, so single-site installs need no setup.
+     * @param kioskId The kiosk's ID, or null if the client didn't send one.
+     * @return The ID of the kiosk's site.
+     * @throws IllegalStateException if the kiosk is not bound and there is more than one site.
+     */
+    public Long resolveKioskSite(String kioskId) {
+        if (kioskId != null && !kioskId.isBlank()) {
+            Long boundSiteId = kioskRepository.findById(kioskId).map(Kiosk::getSiteId).orElse(null);
+            if (boundSiteId != null) {
+                return boundSiteId;
+            }
+        }
+        Long onlySiteId = getOnlySiteId();
+        if (onlySiteId == null) {
+            throw new IllegalStateException("This kiosk (ID " + kioskId + ") is not assigned to a site. Please ask an administrator to assign it.");
+        }
+        return onlySiteId;
+    }
+
+    /**
+     * @return true if an administrator has bound a kiosk with this ID. Served from the second-level cache.
+     */
+    public boolean isRegisteredKiosk(String kioskId) {
+        return kioskId != null && !kioskId.isBlank() && kioskRepository.findById(kioskId).isPresent();
+    }
+
+    /**
+     * @return The ID of the only site, or null if there is more than one.
+     */
+    public Long getOnlySiteId() {
+        List<Site> sites = siteRepository.findAllByOrderByCodeAsc();
+        return sites.size() == 1 ? sites.get(0).getId() : null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if no site with the given ID exists.
+     */
+    public void requireSite(Long siteId) {
+        if (siteId == null || !siteRepository.existsById(siteId)) {
+            throw new IllegalArgumentException("Unknown site: " + siteId);
+        }
+    }
+
+    /**
+     * Runs a read-only query once per site in parallel and concatenates the results in site order.
+     * Each site runs in its own read-only transaction, so it can be served by the read replica.
+     * @param perSiteQuery The query for one site, given the site's ID.
+     * @return The results of all sites.
+     */
+    public <T> List<T> collectPerSite(Function<Long, List<T>> perSiteQuery) {
+        TransactionTemplate readOnly = reportTransaction();
+        List<CompletableFuture<List<T>>> futures = siteRepository.findAllByOrderByCodeAsc().stream()
+                .map(Site::getId)
+                .map(siteId -> CompletableFuture.supplyAsync(QueryCounter.propagate(
+                        () -> readOnly.execute(status -> perSiteQuery.apply(siteId))), siteReportExecutor))
+                .collect(Collectors.toList());
+
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                results.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Runs a single report query in a read-only transaction, like one site of collectPerSite.
+     * Callers that may fan out with collectPerSite use this instead of @Transactional, so no
+     * connection is held by the calling thread while it waits for the per-site queries.
+     */
+    public <T> T inReportTransaction(Supplier<T> query) {
+        return reportTransaction().execute(status -> query.get());
+    }
+
+    private TransactionTemplate reportTransaction() {
+        return ReplicaRoutingDataSource.reportTransaction(transactionManager, SiteService.class);
+    }
+
+    private SiteDto toSiteDto(Site site) {
+        return SiteDto.builder()
+                .id(site.getId())
+                .code(site.getCode())
+                .name(site.getName())
+                .build();
+    }
+
+    private KioskDto toKioskDto(Kiosk kiosk) {
+        return KioskDto.builder()
+                .kioskId(kiosk.getKioskId())
+                .siteId(kiosk.getSiteId())
+                .label(kiosk.getLabel())
+                .boundAt(kiosk.getBoundAt())
+                .build();
+    }
+}
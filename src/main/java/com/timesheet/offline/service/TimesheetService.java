@@ -1,23 +1,22 @@
 package com.timesheet.offline.service;
 
-import com.timesheet.offline.model.ClockLog;
+import com.timesheet.offline.export.RowWriter;
+import com.timesheet.offline.projection.ClockLogRow;
 import com.timesheet.offline.repository.ClockLogRepository;
+import com.timesheet.offline.repository.WorkSessionRepository;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAdjusters;
-import java.util.List;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 /**
  * Service for handling timesheet-related operations like weekly resets and exports.
@@ -27,65 +26,88 @@ import java.util.List;
 public class TimesheetService {
 
     private final ClockLogRepository clockLogRepository;
+    private final WorkSessionRepository workSessionRepository;
     private final AuditService auditService;
+    private final TimesheetSnapshotService timesheetSnapshotService;
+    private final AdminService adminService;
 
     /**
      * Scheduled task to reset all timesheet data every Monday at midnight.
+     * Scheduled through ClusterJobScheduler (see ScheduledJobsConfig) so it runs on one node only.
+     * The timesheets of the weeks it removes are stored as snapshots first: a week only counts as closed
+     * 'timesheet.snapshot.closed-after-hours' after it ends, by which time its sessions are gone.
+     * @param resetAt The slot the reset was scheduled for. Only data from before it is deleted, so a reset
+     *                that runs late, after the nodes were down, keeps the punches made since.
      */
-    @Scheduled(cron = "0 0 0 * * MON")
     @Transactional
-    public void weeklyReset() {
-        clockLogRepository.deleteAllInBatch();
-        auditService.log(null, "WEEKLY_RESET_SUCCESS", "SUCCESS", "Timesheet data cleared for the new week.");
-        System.out.println("Weekly timesheet reset executed at " + LocalDateTime.now());
+    public void weeklyReset(LocalDateTime resetAt) {
+        LocalDate currentWeek = resetAt.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        workSessionRepository.findEarliestStartedAt().ifPresent(earliest -> {
+            LocalDate week = earliest.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            for (; week.isBefore(currentWeek); week = week.plusWeeks(1)) {
+                adminService.saveFinalWeeklyTimesheets(week);
+            }
+        });
+        clockLogRepository.deleteByTimestampBefore(resetAt);
+        workSessionRepository.deleteByStartedAtBefore(resetAt);
+        timesheetSnapshotService.invalidateOpenWeeks();
+        auditService.log(null, "WEEKLY_RESET_SUCCESS", "SUCCESS", "Timesheet data before " + resetAt + " cleared for the new week.");
+        System.out.println("Weekly timesheet reset for " + resetAt + " executed at " + LocalDateTime.now());
     }
     
     /**
-     * Exports clock logs for a specific date range to a CSV format.
-     * @param writer The writer to send the CSV data to.
+     * Exports clock logs for a specific date range.
+     * @param writer The row writer for the requested export format.
      * @param startDate The start of the date range.
      * @param endDate The end of the date range.
      */
-    public void exportWeeklyTimesheet(Writer writer, LocalDateTime startDate, LocalDateTime endDate) {
-        List<ClockLog> logs = clockLogRepository.findByTimestampBetween(startDate, endDate);
-        writeTimesheetToCsv(writer, logs);
+    @Transactional(readOnly = true)
+    public void exportWeeklyTimesheet(RowWriter writer, LocalDateTime startDate, LocalDateTime endDate) {
+        try (Stream<ClockLogRow> logs = clockLogRepository.streamRowsByTimestampBetween(startDate, endDate)) {
+            writeTimesheet(writer, logs);
+        }
     }
 
     /**
-     * Exports all clock logs for the current week to a CSV format.
-     * @param writer The writer to send the CSV data to.
+     * Exports all clock logs for the current week.
+     * @param writer The row writer for the requested export format.
      */
-    public void exportWeeklyTimesheet(Writer writer) {
+    @Transactional(readOnly = true)
+    public void exportWeeklyTimesheet(RowWriter writer) {
         LocalDate today = LocalDate.now();
         LocalDateTime startOfWeek = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
         LocalDateTime endOfWeek = startOfWeek.plusDays(7);
-        List<ClockLog> logs = clockLogRepository.findByTimestampBetween(startOfWeek, endOfWeek);
-        writeTimesheetToCsv(writer, logs);
+        try (Stream<ClockLogRow> logs = clockLogRepository.streamRowsByTimestampBetween(startOfWeek, endOfWeek)) {
+            writeTimesheet(writer, logs);
+        }
     }
 
-    private void writeTimesheetToCsv(Writer writer, List<ClockLog> logs) {
+    private void writeTimesheet(RowWriter writer, Stream<ClockLogRow> logs) {
         String[] headers = {"LogID", "UserID", "UserEmail", "Action", "Timestamp (UTC)", "SessionID", "DurationHours"};
-        try (CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(headers).build())) {
-            for (ClockLog log : logs) {
+        try {
+            writer.writeHeader(headers);
+            Iterator<ClockLogRow> iterator = logs.iterator();
+            while (iterator.hasNext()) {
+                ClockLogRow log = iterator.next();
                 // --- FIX APPLIED HERE ---
                 // Format the timestamp in ISO 8601 format with a 'Z' to indicate UTC.
                 // This ensures spreadsheet programs can interpret the timezone correctly.
-                String formattedTimestamp = log.getTimestamp().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-                
-                csvPrinter.printRecord(
-                        log.getId(),
-                        log.getUser().getId(),
-                        log.getUser().getEmail(),
-                        log.getAction(),
+                String formattedTimestamp = log.timestamp().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+
+                writer.writeRow(
+                        log.id(),
+                        log.userId(),
+                        log.userEmail(),
+                        log.action().name(),
                         formattedTimestamp,
-                        log.getSessionId(),
-                        log.getDurationHours() != null ? String.format("%.2f", log.getDurationHours()) : ""
+                        log.sessionId(),
+                        log.durationHours() != null ? String.format("%.2f", log.durationHours()) : ""
                 );
             }
-            auditService.log(null, "TIMESHEET_EXPORT", "SUCCESS", "Timesheet exported.");
+            auditService.logInNewTransaction(null, "TIMESHEET_EXPORT", "SUCCESS", "Timesheet exported.");
         } catch (IOException e) {
-            auditService.log(null, "TIMESHEET_EXPORT_FAILURE", "FAILURE", "Error exporting timesheet: " + e.getMessage());
-            throw new RuntimeException("Failed to write data to CSV file: " + e.getMessage());
+            auditService.logInNewTransaction(null, "TIMESHEET_EXPORT_FAILURE", "FAILURE", "Error exporting timesheet: " + e.getMessage());
+            throw new RuntimeException("Failed to write timesheet export: " + e.getMessage());
         }
     }
 }
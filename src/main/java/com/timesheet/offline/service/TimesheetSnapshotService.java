@@ -0,0 +1,213 @@
+package com.timesheet.offline.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.timesheet.offline.dto.WeeklyTimesheetDto;
+import com.timesheet.offline.model.TimesheetSnapshot;
+import com.timesheet.offline.repository.TimesheetSnapshotRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches weekly timesheets.
+ * <p>
+ * A week that is over (plus 'timesheet.snapshot.closed-after-hours', so late clock-outs and the forgotten
+ * clock-out sweeper can still land in it) never changes, so its timesheet is computed once, stored as
+ * gzipped JSON in the 'timesheet_snapshots' table, and kept in a size-bounded LRU of compressed bytes.
+ * Closed weeks are only recomputed after {@link #invalidateWeekContaining} or {@link #invalidateAll}
+ * is called for a correction. The weekly reset deletes a week's sessions before it counts as closed, so it
+ * stores the week's final snapshot first ({@link #saveFinalSnapshot}); a week that is over is served from
+ * such a snapshot even before it counts as closed.
+ * <p>
+ * The current week is cached for a few seconds only, and every punch clears that cache on this node.
+ * Both in-memory caches are node-local; the closed-week one also expires after
+ * 'timesheet.snapshot.memory-ttl-minutes', which bounds how long another node can serve a corrected week.
+ */
+@Service
+@RequiredArgsConstructor
+public class TimesheetSnapshotService {
+
+    private static final TypeReference<List<WeeklyTimesheetDto>> TIMESHEET_LIST = new TypeReference<>() {};
+
+    private final TimesheetSnapshotRepository snapshotRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${timesheet.snapshot.closed-after-hours:24}")
+    private long closedAfterHours;
+
+    @Value("${timesheet.snapshot.max-memory-bytes:16777216}")
+    private long maxMemoryBytes;
+
+    @Value("${timesheet.snapshot.memory-ttl-minutes:60}")
+    private long memoryTtlMinutes;
+
+    @Value("${timesheet.open-week.ttl-seconds:30}")
+    private long openWeekTtlSeconds;
+
+    private Cache<SnapshotKey, byte[]> closedWeeks;
+    private Cache<SnapshotKey, List<WeeklyTimesheetDto>> openWeeks;
+
+    @PostConstruct
+    void createCaches() {
+        closedWeeks = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryBytes)
+                .weigher((SnapshotKey key, byte[] payload) -> payload.length)
+                .expireAfterWrite(Duration.ofMinutes(memoryTtlMinutes))
+                .build();
+        openWeeks = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(openWeekTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Returns the cached timesheet of a week, computing and caching it if needed.
+     * @param weekStartDate The first day of the week.
+     * @param siteId The site, or null for all sites.
+     * @param compute Computes the timesheet from the work sessions.
+     */
+    public List<WeeklyTimesheetDto> getOrCompute(LocalDate weekStartDate, Long siteId, Supplier<List<WeeklyTimesheetDto>> compute) {
+        SnapshotKey key = new SnapshotKey(weekStartDate, siteId);
+        if (!isClosed(weekStartDate)) {
+            byte[] finalSnapshot = hasEnded(weekStartDate) ? findStoredSnapshot(key) : null;
+            if (finalSnapshot != null) {
+                return decode(finalSnapshot);
+            }
+            return openWeeks.get(key, k -> compute.get());
+        }
+        byte[] payload = closedWeeks.get(key, k -> loadOrCreateSnapshot(k, compute));
+        return decode(payload);
+    }
+
+    /**
+     * Stores the timesheet of a week whose sessions are about to be deleted, replacing any stored snapshot.
+     * @param weekStartDate The first day of the week.
+     * @param siteId The site, or null for all sites.
+     * @param timesheets The week's timesheet, computed before the delete.
+     */
+    public void saveFinalSnapshot(LocalDate weekStartDate, Long siteId, List<WeeklyTimesheetDto> timesheets) {
+        SnapshotKey key = new SnapshotKey(weekStartDate, siteId);
+        byte[] payload = encode(timesheets);
+        TimesheetSnapshot snapshot = snapshotRepository.findById(key.storageKey()).orElseGet(TimesheetSnapshot::new);
+        snapshot.setSnapshotKey(key.storageKey());
+        snapshot.setWeekStart(weekStartDate);
+        snapshot.setSiteId(siteId);
+        snapshot.setPayload(payload);
+        snapshot.setCreatedAt(LocalDateTime.now());
+        snapshotRepository.save(snapshot);
+        closedWeeks.put(key, payload);
+    }
+
+    /**
+     * Drops the cached timesheets of every week that contains the given day, for a correction to that day.
+     */
+    public void invalidateWeekContaining(LocalDate day) {
+        snapshotRepository.deleteByWeekStartBetween(day.minusDays(6), day);
+        closedWeeks.asMap().keySet().removeIf(key -> !key.weekStart().isAfter(day) && key.weekStart().isAfter(day.minusDays(7)));
+        openWeeks.invalidateAll();
+    }
+
+    /**
+     * Drops every cached timesheet, for corrections that can affect any week (e.g. deleting a user).
+     */
+    public void invalidateAll() {
+        snapshotRepository.deleteAllSnapshots();
+        closedWeeks.invalidateAll();
+        openWeeks.invalidateAll();
+    }
+
+    /**
+     * Drops the cached timesheets of the current week on this node. Called after every punch.
+     */
+    public void invalidateOpenWeeks() {
+        openWeeks.invalidateAll();
+    }
+
+    private boolean isClosed(LocalDate weekStartDate) {
+        LocalDateTime closesAt = weekStartDate.plusDays(7).atStartOfDay().plusHours(closedAfterHours);
+        return LocalDateTime.now().isAfter(closesAt);
+    }
+
+    private boolean hasEnded(LocalDate weekStartDate) {
+        return !LocalDateTime.now().isBefore(weekStartDate.plusDays(7).atStartOfDay());
+    }
+
+    private byte[] findStoredSnapshot(SnapshotKey key) {
+        byte[] cached = closedWeeks.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        return snapshotRepository.findById(key.storageKey())
+                .map(TimesheetSnapshot::getPayload)
+                .map(payload -> {
+                    closedWeeks.put(key, payload);
+                    return payload;
+                })
+                .orElse(null);
+    }
+
+    private byte[] loadOrCreateSnapshot(SnapshotKey key, Supplier<List<WeeklyTimesheetDto>> compute) {
+        String snapshotKey = key.storageKey();
+        return snapshotRepository.findById(snapshotKey)
+                .map(TimesheetSnapshot::getPayload)
+                .orElseGet(() -> {
+                    byte[] payload = encode(compute.get());
+                    TimesheetSnapshot snapshot = new TimesheetSnapshot();
+                    snapshot.setSnapshotKey(snapshotKey);
+                    snapshot.setWeekStart(key.weekStart());
+                    snapshot.setSiteId(key.siteId());
+                    snapshot.setPayload(payload);
+                    snapshot.setCreatedAt(LocalDateTime.now());
+                    try {
+                        snapshotRepository.save(snapshot);
+                    } catch (DataIntegrityViolationException e) {
+                        // Another node stored the same week at the same moment; both computed the same result.
+                    }
+                    return payload;
+                });
+    }
+
+    private byte[] encode(List<WeeklyTimesheetDto> timesheets) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(out, timesheets);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<WeeklyTimesheetDto> decode(byte[] payload) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(in, TIMESHEET_LIST);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record SnapshotKey(LocalDate weekStart, Long siteId) {
+
+        String storageKey() {
+            return weekStart + "/" + (siteId != null ? siteId : "all");
+        }
+    }
+}
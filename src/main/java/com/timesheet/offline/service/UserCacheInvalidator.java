@@ -0,0 +1,88 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.config.CacheConfig;
+import com.timesheet.offline.config.StorageMode;
+import com.timesheet.offline.model.OutboxEvent;
+import com.timesheet.offline.model.OutboxEventType;
+import com.timesheet.offline.model.User;
+import com.timesheet.offline.repository.OutboxEventRepository;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evicts this node's cached users after another node changes them.
+ * <p>
+ * Hibernate only invalidates the second-level cache of the node that made a change, so without this a
+ * PIN reset or a deletion on one node would go unnoticed by the caches of the others until their TTLs ran
+ * out. Every user change writes an outbox event in its own transaction (see AdminService), so each node
+ * polls for recent USER_* events and evicts the user and the cached user lookups for each one it hasn't
+ * seen yet. Events are looked up by database time, with 'cache.users.invalidation-lookback-seconds' of
+ * overlap, so a change whose transaction commits a little after it was written is still picked up.
+ * Embedded mode runs a single node, so nothing is polled there.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserCacheInvalidator {
+
+    private static final Set<OutboxEventType> USER_CHANGES = EnumSet.of(
+            OutboxEventType.USER_CREATED, OutboxEventType.USER_DELETED, OutboxEventType.USER_CREDENTIALS_RESET);
+
+    private final OutboxEventRepository eventRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final StorageMode storageMode;
+
+    /** Events already evicted for, by id, with when they were written; forgotten once they leave the lookback. */
+    private final Map<Long, LocalDateTime> evictedEvents = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastPolledAt;
+
+    @Value("${cache.users.invalidation-lookback-seconds:60}")
+    private long lookbackSeconds;
+
+    /**
+     * Scheduled task that evicts the users changed on any node since the last poll.
+     */
+    @Scheduled(fixedDelayString = "${cache.users.invalidation-poll-ms:2000}")
+    public void evictChangedUsers() {
+        if (storageMode.isEmbedded()) {
+            return;
+        }
+        LocalDateTime now;
+        List<OutboxEvent> changes;
+        try {
+            now = eventRepository.currentDatabaseTime();
+            // After an outage, look back from the last poll that reached the database.
+            LocalDateTime since = (lastPolledAt != null ? lastPolledAt : now).minusSeconds(lookbackSeconds);
+            changes = eventRepository.findByTypeWrittenSince(since, USER_CHANGES);
+            evictedEvents.values().removeIf(createdAt -> createdAt.isBefore(since));
+        } catch (RuntimeException e) {
+            return; // The database is unreachable, so no user can change either; retried on the next poll.
+        }
+
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        boolean evicted = false;
+        for (OutboxEvent change : changes) {
+            if (evictedEvents.putIfAbsent(change.getId(), change.getCreatedAt()) == null) {
+                if (change.getUserId() != null) {
+                    cache.evictEntityData(User.class, change.getUserId());
+                }
+                evicted = true;
+            }
+        }
+        if (evicted) {
+            cache.evictQueryRegion(CacheConfig.USER_QUERIES_REGION);
+        }
+        lastPolledAt = now;
+    }
+}
@@ -0,0 +1,86 @@
+package com.timesheet.offline.service;
+
+import com.timesheet.offline.model.ClockLog;
+import com.timesheet.offline.model.WorkSession;
+import com.timesheet.offline.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Removes deleted users and their history from the database.
+ * <p>
+ * Deleting a user in the admin dashboard only marks them deleted (see AdminService.deleteUser), which takes one
+ * row update however long they have worked here. This job then deletes their clock logs and work sessions with
+ * set-based statements of at most 'users.purge.chunk-size' rows, each in its own short transaction, so punches
+ * by other employees are never held up behind a large delete. Nothing is loaded into the JVM. The user row goes
+ * last, with a bulk delete that bypasses the clock log cascade. Audit logs are kept.
+ * Scheduled through ClusterJobScheduler (see ScheduledJobsConfig).
+ */
+@Service
+@RequiredArgsConstructor
+public class UserPurgeService {
+
+    private static final String DELETE_CLOCK_LOGS_SQL =
+            "DELETE FROM clock_logs WHERE id IN (SELECT id FROM clock_logs WHERE user_id = :userId LIMIT :chunkSize)";
+
+    private static final String DELETE_WORK_SESSIONS_SQL =
+            "DELETE FROM work_sessions WHERE id IN (SELECT id FROM work_sessions WHERE user_id = :userId LIMIT :chunkSize)";
+
+    private static final int USERS_PER_RUN = 100;
+
+    private final EntityManager entityManager;
+    private final UserRepository userRepository;
+    private final AuditService auditService;
+    private final PlatformTransactionManager transactionManager;
+
+    /** How long deleted users are kept before they are purged. */
+    @Value("${users.purge.grace-hours:0}")
+    private long graceHours;
+
+    @Value("${users.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Purges up to 100 users that were deleted more than 'users.purge.grace-hours' ago.
+     * A purge that is interrupted simply continues on the next run.
+     */
+    public void purgeDeletedUsers() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<Long> userIds = userRepository.findIdsDeletedBefore(LocalDateTime.now().minusHours(graceHours),
+                PageRequest.of(0, USERS_PER_RUN));
+        for (Long userId : userIds) {
+            long clockLogs = deleteInChunks(transaction, DELETE_CLOCK_LOGS_SQL, ClockLog.class, userId);
+            long workSessions = deleteInChunks(transaction, DELETE_WORK_SESSIONS_SQL, WorkSession.class, userId);
+            Integer removed = transaction.execute(status -> userRepository.deletePurgedUser(userId));
+            if (removed != null && removed > 0) {
+                auditService.log(null, "USER_PURGE_SUCCESS", "SUCCESS", "Purged deleted user " + userId + " with "
+                        + clockLogs + " clock logs and " + workSessions + " work sessions.");
+            }
+        }
+    }
+
+    private long deleteInChunks(TransactionTemplate transaction, String sql, Class<?> entityClass, Long userId) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = transaction.execute(status -> entityManager.createNativeQuery(sql)
+                    .setParameter("userId", userId)
+                    .setParameter("chunkSize", chunkSize)
+                    .unwrap(NativeQuery.class)
+                    // Only this table changes, so Hibernate keeps the user and site caches.
+                    .addSynchronizedEntityClass(entityClass)
+                    .executeUpdate());
+            total += deleted;
+        } while (deleted == chunkSize);
+        return total;
+    }
+}
@@ -0,0 +1,186 @@
+package com.timesheet.offline.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.model.AuditLog;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A read-only view of one archived audit segment on disk.
+ * A segment is a gzip NDJSON file made of independently compressed blocks,
+ * plus a small sparse index file that records the byte range and time range of every block.
+ * Readers memory-map the data file and only inflate the blocks that overlap the requested range.
+ */
+public final class AuditSegment {
+
+    static final int INDEX_MAGIC = 0x41554458; // "AUDX"
+    static final int INDEX_VERSION = 1;
+    static final String DATA_SUFFIX = ".ndjson.gz";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private final Path dataFile;
+    private final long firstId;
+    private final long lastId;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final List<Block> blocks;
+
+    private AuditSegment(Path dataFile, long firstId, long lastId, long minTimestamp, long maxTimestamp, List<Block> blocks) {
+        this.dataFile = dataFile;
+        this.firstId = firstId;
+        this.lastId = lastId;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Opens a segment by reading its sparse index.
+     * @param indexFile The ".idx" file of the segment.
+     * @return The opened segment.
+     */
+    public static AuditSegment open(Path indexFile) throws IOException {
+        String indexName = indexFile.getFileName().toString();
+        Path dataFile = indexFile.resolveSibling(
+                indexName.substring(0, indexName.length() - INDEX_SUFFIX.length()) + DATA_SUFFIX);
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("Not an audit segment index: " + indexFile);
+            }
+            long firstId = in.readLong();
+            long lastId = in.readLong();
+            long minTs = in.readLong();
+            long maxTs = in.readLong();
+            int blockCount = in.readInt();
+            List<Block> blocks = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                blocks.add(new Block(in.readLong(), in.readInt(), in.readLong(), in.readLong(), in.readInt()));
+            }
+            return new AuditSegment(dataFile, firstId, lastId, minTs, maxTs, Collections.unmodifiableList(blocks));
+        }
+    }
+
+    public long getFirstId() {
+        return firstId;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public Path getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Checks the segment-level time range against a query range without touching the data file.
+     * A null bound means the range is open on that side.
+     */
+    public boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        return maxTimestamp >= lowerBound(start) && minTimestamp <= upperBound(end);
+    }
+
+    /**
+     * Streams every archived log whose timestamp falls within [start, end] to the consumer, in id order.
+     * Blocks outside the range are skipped using the sparse index. A null bound means the range is open on that side.
+     */
+    public void read(LocalDateTime start, LocalDateTime end, ObjectMapper objectMapper, Consumer<AuditLog> consumer) throws IOException {
+        long from = lowerBound(start);
+        long to = upperBound(end);
+
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (Block block : blocks) {
+                if (block.maxTimestamp < from || block.minTimestamp > to) {
+                    continue;
+                }
+                ByteBuffer slice = mapped.duplicate();
+                slice.position((int) block.offset);
+                slice.limit((int) block.offset + block.length);
+
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(new ByteBufferInputStream(slice.slice())), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isEmpty()) {
+                            continue;
+                        }
+                        AuditLog log = objectMapper.readValue(line, AuditLog.class);
+                        long ts = toEpochMillis(log.getTimestamp());
+                        if (ts >= from && ts <= to) {
+                            consumer.accept(log);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static long lowerBound(LocalDateTime start) {
+        return start == null ? Long.MIN_VALUE : toEpochMillis(start);
+    }
+
+    private static long upperBound(LocalDateTime end) {
+        return end == null ? Long.MAX_VALUE : toEpochMillis(end);
+    }
+
+    static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * One independently inflatable gzip member inside the data file.
+     */
+    record Block(long offset, int length, long minTimestamp, long maxTimestamp, int rows) {
+    }
+
+    /**
+     * Minimal InputStream over a (memory-mapped) ByteBuffer, so blocks are inflated without copying them to the heap first.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
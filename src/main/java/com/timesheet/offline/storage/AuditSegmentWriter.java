@@ -0,0 +1,123 @@
+package com.timesheet.offline.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.model.AuditLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a batch of audit logs as an immutable, compressed segment.
+ * Each block of rows becomes its own gzip member, so the whole file is still a valid
+ * gzip NDJSON stream while readers can seek straight to the blocks they need.
+ * Files are written under a temporary name, fsynced, and then atomically renamed.
+ */
+public final class AuditSegmentWriter {
+
+    private AuditSegmentWriter() {
+    }
+
+    /**
+     * @param directory The archive directory.
+     * @param logs The logs to archive, sorted by id ascending.
+     * @param rowsPerBlock How many rows go into each independently compressed block.
+     * @param objectMapper The mapper used to encode each log as one JSON line.
+     * @return The newly written segment.
+     */
+    public static AuditSegment write(Path directory, List<AuditLog> logs, int rowsPerBlock, ObjectMapper objectMapper) throws IOException {
+        if (logs.isEmpty()) {
+            throw new IllegalArgumentException("Cannot write an empty audit segment.");
+        }
+        Files.createDirectories(directory);
+
+        long firstId = logs.get(0).getId();
+        long lastId = logs.get(logs.size() - 1).getId();
+        String baseName = segmentName(firstId, lastId);
+        Path dataFile = directory.resolve(baseName + AuditSegment.DATA_SUFFIX);
+        Path indexFile = directory.resolve(baseName + AuditSegment.INDEX_SUFFIX);
+        Path dataTmp = directory.resolve(baseName + AuditSegment.DATA_SUFFIX + ".tmp");
+        Path indexTmp = directory.resolve(baseName + AuditSegment.INDEX_SUFFIX + ".tmp");
+
+        List<AuditSegment.Block> blocks = new ArrayList<>();
+        long segmentMin = Long.MAX_VALUE;
+        long segmentMax = Long.MIN_VALUE;
+
+        try (FileChannel channel = FileChannel.open(dataTmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long offset = 0;
+            for (int from = 0; from < logs.size(); from += rowsPerBlock) {
+                List<AuditLog> blockRows = logs.subList(from, Math.min(from + rowsPerBlock, logs.size()));
+                long blockMin = Long.MAX_VALUE;
+                long blockMax = Long.MIN_VALUE;
+
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    for (AuditLog log : blockRows) {
+                        long ts = AuditSegment.toEpochMillis(log.getTimestamp());
+                        blockMin = Math.min(blockMin, ts);
+                        blockMax = Math.max(blockMax, ts);
+                        gzip.write(objectMapper.writeValueAsBytes(log));
+                        gzip.write('\n');
+                    }
+                }
+
+                byte[] bytes = compressed.toByteArray();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                blocks.add(new AuditSegment.Block(offset, bytes.length, blockMin, blockMax, blockRows.size()));
+                offset += bytes.length;
+                segmentMin = Math.min(segmentMin, blockMin);
+                segmentMax = Math.max(segmentMax, blockMax);
+            }
+            channel.force(true);
+        }
+
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(indexBytes)) {
+            out.writeInt(AuditSegment.INDEX_MAGIC);
+            out.writeInt(AuditSegment.INDEX_VERSION);
+            out.writeLong(firstId);
+            out.writeLong(lastId);
+            out.writeLong(segmentMin);
+            out.writeLong(segmentMax);
+            out.writeInt(blocks.size());
+            for (AuditSegment.Block block : blocks) {
+                out.writeLong(block.offset());
+                out.writeInt(block.length());
+                out.writeLong(block.minTimestamp());
+                out.writeLong(block.maxTimestamp());
+                out.writeInt(block.rows());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(indexTmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(indexBytes.toByteArray()));
+            channel.force(true);
+        }
+
+        // The index is published last: a segment only "exists" once its index is in place.
+        Files.move(dataTmp, dataFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(indexTmp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        dataFile.toFile().setReadOnly();
+        indexFile.toFile().setReadOnly();
+
+        return AuditSegment.open(indexFile);
+    }
+
+    static String segmentName(long firstId, long lastId) {
+        // Zero-padded so a plain directory listing is already in id order.
+        return String.format("audit-%019d-%019d", firstId, lastId);
+    }
+}
@@ -0,0 +1,37 @@
+package com.timesheet.offline.storage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Describes one backup: which dump file holds each table and which id range it covers.
+ * A backup is complete once its manifest exists; the manifest is written last.
+ * @param sequence Numbers backups in the order they were taken.
+ * @param baseSequence The full backup this one builds on; equal to sequence for a full backup.
+ */
+public record BackupManifest(int sequence, int baseSequence, LocalDateTime createdAt, List<TableEntry> tables) {
+
+    public boolean isFull() {
+        return sequence == baseSequence;
+    }
+
+    public TableEntry table(String name) {
+        return tables.stream()
+                .filter(entry -> entry.table().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Backup " + sequence + " has no entry for table " + name));
+    }
+
+    /**
+     * @param file The dump file name, or null if the backup found no rows to write.
+     * @param afterId The dump holds rows with ids above this; 0 for tables that are copied in full.
+     * @param maxId The dump holds rows with ids up to and including this.
+     * @param liveMinId The smallest id in the table when the backup was taken, or Long.MAX_VALUE if it was
+     *                  empty. Rows below it had been deleted, so a restore up to this backup leaves them out.
+     * @param minOpenId For work_sessions: the smallest id of a session that was still open, or 0 if none was.
+     *                  The next backup copies again from there, to pick up the sessions closed in between.
+     */
+    public record TableEntry(String table, String file, boolean full, long afterId, long maxId,
+                             long liveMinId, long minOpenId, long rows, long bytes) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.timesheet.offline.storage;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One punch in the local punch journal: who punched, at which site, and when.
+ * Whether it is a clock-in or a clock-out is only decided when it is applied to the database.
+ * @param seq The journal sequence number, assigned on append; 0 before that.
+ * @param punchId Unique per punch, so applying it twice has no effect.
+ */
+public record JournaledPunch(long seq, UUID punchId, long userId, Long siteId, LocalDateTime timestamp) {
+}
@@ -0,0 +1,376 @@
+package com.timesheet.offline.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only, memory-mapped journal of punches, used while the database is unavailable.
+ * <p>
+ * The journal is a sequence of fixed-size segment files named after the sequence number of their first
+ * record, so a directory listing is in journal order. Each record is a length, a CRC32C of the body and a
+ * fixed-size body; a zero length marks the end of the written part of a segment. When a record doesn't fit,
+ * the segment is forced to disk and a new one is started.
+ * <p>
+ * {@link #awaitDurable} forces the active segment with group commit: whichever caller gets the force lock
+ * flushes every record appended so far, so concurrent punches share one fsync.
+ * <p>
+ * A separate checkpoint file records the last sequence number applied to the database. On open, every
+ * segment is scanned and verified; the first torn or corrupt record ends its segment and the rest of
+ * the segment is zeroed, so a crash mid-write loses at most the records that had not been acknowledged.
+ * Segments whose records have all been applied are deleted.
+ */
+public final class PunchJournal implements Closeable {
+
+    static final int SEGMENT_MAGIC = 0x50554e4a; // "PUNJ"
+    static final int SEGMENT_VERSION = 1;
+    static final String SEGMENT_PREFIX = "punches-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int BODY_BYTES = 48;
+    private static final int RECORD_BYTES = RECORD_HEADER_BYTES + BODY_BYTES;
+    private static final long NO_SITE = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean fsync;
+    private final Object forceLock = new Object();
+
+    // Guarded by this.
+    private final List<Segment> segments = new ArrayList<>();
+    private long lastAppendedSeq;
+
+    private volatile long durableSeq;
+    private volatile long appliedSeq;
+
+    private PunchJournal(Path directory, int segmentBytes, boolean fsync) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Opens the journal in a directory, recovering it after a crash if needed.
+     * @param directory The journal directory; created if missing.
+     * @param segmentBytes The size of each segment file.
+     * @param fsync Whether {@link #awaitDurable} forces records to disk; without it they survive a process
+     *              crash but not a power loss.
+     */
+    public static PunchJournal open(Path directory, int segmentBytes, boolean fsync) throws IOException {
+        if (segmentBytes < SEGMENT_HEADER_BYTES + RECORD_BYTES) {
+            throw new IllegalArgumentException("Journal segments must hold at least one record.");
+        }
+        Files.createDirectories(directory);
+        PunchJournal journal = new PunchJournal(directory, segmentBytes, fsync);
+        journal.recover();
+        return journal;
+    }
+
+    /**
+     * Appends a punch and assigns it the next sequence number. The record is in the page cache when this
+     * returns; call {@link #awaitDurable} before acknowledging it.
+     * @return The punch with its sequence number.
+     */
+    public synchronized JournaledPunch append(UUID punchId, long userId, Long siteId, LocalDateTime timestamp) throws IOException {
+        long seq = lastAppendedSeq + 1;
+        Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        // Records are located by their offset from the segment's first sequence number, so a segment only
+        // takes contiguous sequence numbers; after a damaged tail a new segment is started instead.
+        if (active == null || active.remaining() < RECORD_BYTES || active.lastSeq != seq - 1) {
+            if (active != null) {
+                active.buffer.force();
+            }
+            active = createSegment(seq);
+            segments.add(active);
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(BODY_BYTES);
+        body.putLong(seq);
+        body.putLong(punchId.getMostSignificantBits());
+        body.putLong(punchId.getLeastSignificantBits());
+        body.putLong(userId);
+        body.putLong(siteId != null ? siteId : NO_SITE);
+        body.putLong(toEpochMicros(timestamp));
+        byte[] bodyBytes = body.array();
+
+        int position = active.writePosition;
+        active.buffer.put(position + RECORD_HEADER_BYTES, bodyBytes);
+        active.buffer.putInt(position + 4, checksum(bodyBytes));
+        // The length goes in last: a record without it is treated as never written.
+        active.buffer.putInt(position, BODY_BYTES);
+        active.writePosition += RECORD_BYTES;
+        active.lastSeq = seq;
+        lastAppendedSeq = seq;
+        return new JournaledPunch(seq, punchId, userId, siteId, timestamp);
+    }
+
+    /**
+     * Waits until the record with the given sequence number is on disk.
+     */
+    public void awaitDurable(long seq) {
+        if (!fsync || durableSeq >= seq) {
+            return;
+        }
+        synchronized (forceLock) {
+            if (durableSeq >= seq) {
+                return; // Another caller's force covered this record.
+            }
+            long upTo;
+            Segment active;
+            synchronized (this) {
+                upTo = lastAppendedSeq;
+                active = segments.get(segments.size() - 1);
+            }
+            // Earlier segments were forced when they were rotated out.
+            active.buffer.force();
+            durableSeq = upTo;
+        }
+    }
+
+    /**
+     * Reads punches in journal order.
+     * @param afterSeq Only return punches after this sequence number.
+     * @param max The maximum number of punches to return.
+     */
+    public synchronized List<JournaledPunch> read(long afterSeq, int max) {
+        List<JournaledPunch> punches = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.lastSeq <= afterSeq) {
+                continue;
+            }
+            for (long seq = Math.max(afterSeq + 1, segment.firstSeq); seq <= segment.lastSeq && punches.size() < max; seq++) {
+                punches.add(segment.readRecord(SEGMENT_HEADER_BYTES + (int) (seq - segment.firstSeq) * RECORD_BYTES));
+            }
+            if (punches.size() >= max) {
+                break;
+            }
+        }
+        return punches;
+    }
+
+    /**
+     * Records that every punch up to the given sequence number has been applied to the database,
+     * and deletes the segments that are no longer needed.
+     */
+    public synchronized void markApplied(long seq) throws IOException {
+        if (seq <= appliedSeq) {
+            return;
+        }
+        ByteBuffer checkpoint = ByteBuffer.allocate(12);
+        checkpoint.putLong(seq);
+        checkpoint.putInt(checksum(checkpoint.array(), 8));
+        Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(checkpoint.flip());
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        appliedSeq = seq;
+
+        // Keep the active segment, so appends continue where they left off.
+        while (segments.size() > 1 && segments.get(0).lastSeq <= seq) {
+            segments.remove(0).delete();
+        }
+    }
+
+    /**
+     * @return The number of punches appended but not yet applied to the database.
+     */
+    public long pendingCount() {
+        long appended;
+        synchronized (this) {
+            appended = lastAppendedSeq;
+        }
+        return appended - appliedSeq;
+    }
+
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    private void recover() throws IOException {
+        appliedSeq = readCheckpoint();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        long lastSeq = appliedSeq;
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = openSegment(files.get(i));
+            if (segment == null) {
+                continue;
+            }
+            if (segment.lastSeq <= appliedSeq && i < files.size() - 1) {
+                segment.delete(); // Fully applied and not the newest segment.
+                continue;
+            }
+            segments.add(segment);
+            lastSeq = Math.max(lastSeq, segment.lastSeq);
+        }
+        lastAppendedSeq = lastSeq;
+        durableSeq = lastSeq;
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.isRegularFile(file)) {
+            return 0L;
+        }
+        ByteBuffer checkpoint = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (checkpoint.remaining() != 12 || checkpoint.getInt(8) != checksum(checkpoint.array(), 8)) {
+            // The checkpoint is replaced atomically, so this only happens if the file was damaged externally.
+            // Replaying from the start is safe: punches that were already applied are skipped by their punch ID.
+            return 0L;
+        }
+        return checkpoint.getLong(0);
+    }
+
+    private Segment openSegment(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        long firstSeq;
+        try {
+            firstSeq = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < SEGMENT_HEADER_BYTES) {
+            channel.close();
+            Files.delete(file); // Crashed while creating it, before any record was written.
+            return null;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != SEGMENT_MAGIC || buffer.getInt(4) != SEGMENT_VERSION) {
+            channel.close();
+            throw new IOException("Not a punch journal segment: " + file);
+        }
+
+        Segment segment = new Segment(file, channel, buffer, firstSeq);
+        int position = SEGMENT_HEADER_BYTES;
+        long expectedSeq = firstSeq;
+        while (position + RECORD_BYTES <= size) {
+            int length = buffer.getInt(position);
+            if (length != BODY_BYTES) {
+                break; // End of the written part, or a torn length.
+            }
+            byte[] body = new byte[BODY_BYTES];
+            buffer.get(position + RECORD_HEADER_BYTES, body);
+            if (buffer.getInt(position + 4) != checksum(body) || ByteBuffer.wrap(body).getLong(0) != expectedSeq) {
+                break; // Torn or corrupt record; nothing after it was acknowledged.
+            }
+            position += RECORD_BYTES;
+            segment.lastSeq = expectedSeq;
+            expectedSeq++;
+        }
+        // Zero whatever follows the last valid record, so it can't be mistaken for a record later.
+        for (int i = position; i < size; i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        buffer.force();
+        segment.writePosition = position;
+        return segment;
+    }
+
+    private Segment createSegment(long firstSeq) throws IOException {
+        // Zero-padded so a plain directory listing is already in journal order.
+        Path file = directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buffer.putInt(0, SEGMENT_MAGIC);
+        buffer.putInt(4, SEGMENT_VERSION);
+        buffer.force();
+        Segment segment = new Segment(file, channel, buffer, firstSeq);
+        segment.writePosition = SEGMENT_HEADER_BYTES;
+        return segment;
+    }
+
+    private static int checksum(byte[] bytes) {
+        return checksum(bytes, bytes.length);
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static long toEpochMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    /** One segment file; guarded by the journal's lock. */
+    private static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long firstSeq;
+        private long lastSeq;
+        private int writePosition;
+
+        private Segment(Path file, FileChannel channel, MappedByteBuffer buffer, long firstSeq) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.firstSeq = firstSeq;
+            this.lastSeq = firstSeq - 1;
+        }
+
+        private int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+
+        private JournaledPunch readRecord(int position) {
+            ByteBuffer body = buffer.slice(position + RECORD_HEADER_BYTES, BODY_BYTES);
+            long seq = body.getLong();
+            UUID punchId = new UUID(body.getLong(), body.getLong());
+            long userId = body.getLong();
+            long siteId = body.getLong();
+            LocalDateTime timestamp = fromEpochMicros(body.getLong());
+            return new JournaledPunch(seq, punchId, userId, siteId != NO_SITE ? siteId : null, timestamp);
+        }
+
+        private void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.timesheet.offline.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzip-compressed, typed binary dump of rows from one table, as written by a backup.
+ * <p>
+ * The header lists the column names and their value types; each row is a marker byte followed by one
+ * null flag and value per column. Timestamps are stored as UTC epoch microseconds, matching the database
+ * precision. Files are written under a temporary name, fsynced, and then atomically renamed, so a dump
+ * either exists completely or not at all.
+ */
+public final class TableDump {
+
+    static final int MAGIC = 0x54444d50; // "TDMP"
+    static final int VERSION = 1;
+
+    private static final byte ROW = 1;
+    private static final byte END = 0;
+
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_TIMESTAMP = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_DATE = 6;
+    private static final byte TYPE_BYTES = 7;
+
+    private TableDump() {
+    }
+
+    /**
+     * @param file The final path of the dump.
+     * @param columns The column names.
+     * @param sqlTypes The java.sql.Types of the columns, from the result set metadata.
+     */
+    public static Writer create(Path file, List<String> columns, int[] sqlTypes) throws IOException {
+        byte[] types = new byte[sqlTypes.length];
+        for (int i = 0; i < sqlTypes.length; i++) {
+            types[i] = toValueType(columns.get(i), sqlTypes[i]);
+        }
+        return new Writer(file, columns, types);
+    }
+
+    /**
+     * Opens a dump for reading. Values are Long, String, LocalDateTime, Boolean, Double, LocalDate
+     * or byte[], ready to be bound to a JDBC statement.
+     */
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    private static Object readValue(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_STRING:
+                byte[] utf8 = new byte[in.readInt()];
+                in.readFully(utf8);
+                return new String(utf8, StandardCharsets.UTF_8);
+            case TYPE_TIMESTAMP:
+                long micros = in.readLong();
+                return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_DATE:
+                return LocalDate.ofEpochDay(in.readLong());
+            case TYPE_BYTES:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static byte toValueType(String column, int sqlType) {
+        switch (sqlType) {
+            case Types.BIGINT:
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return TYPE_LONG;
+            case Types.VARCHAR:
+            case Types.CHAR:
+            case Types.LONGVARCHAR:
+            case Types.NVARCHAR:
+            case Types.CLOB:
+                return TYPE_STRING;
+            case Types.TIMESTAMP:
+                return TYPE_TIMESTAMP;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return TYPE_BOOLEAN;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return TYPE_DOUBLE;
+            case Types.DATE:
+                return TYPE_DATE;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return TYPE_BYTES;
+            default:
+                throw new IllegalArgumentException("Column " + column + " has a type that can't be backed up: " + sqlType);
+        }
+    }
+
+    /**
+     * Reads one dump, row by row. The gzip trailer's CRC is checked when the last row has been read.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> columns;
+        private final byte[] types;
+        private boolean ended;
+
+        private Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 65536)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a table dump: " + file);
+                }
+                int columnCount = in.readInt();
+                List<String> names = new ArrayList<>(columnCount);
+                types = new byte[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    names.add(in.readUTF());
+                    types[i] = in.readByte();
+                }
+                columns = Collections.unmodifiableList(names);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return The next row's values, in column order, or null after the last row.
+         */
+        public Object[] next() throws IOException {
+            if (ended) {
+                return null;
+            }
+            if (in.readByte() != ROW) {
+                ended = true;
+                // Reading past the end marker makes GZIPInputStream verify the trailer.
+                if (in.read() != -1) {
+                    throw new IOException("Unexpected data after the end of a table dump");
+                }
+                return null;
+            }
+            Object[] row = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                row[i] = in.readBoolean() ? readValue(in, types[i]) : null;
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes one dump. Rows are compressed as they are written; nothing is buffered beyond the gzip window.
+     */
+    public static final class Writer implements Closeable {
+        private final Path file;
+        private final Path tmp;
+        private final byte[] types;
+        private final FileOutputStream fileOut;
+        private final GZIPOutputStream gzip;
+        private final DataOutputStream out;
+        private long rows;
+        private boolean finished;
+
+        private Writer(Path file, List<String> columns, byte[] types) throws IOException {
+            this.file = file;
+            this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.types = types;
+            this.fileOut = new FileOutputStream(tmp.toFile());
+            this.gzip = new GZIPOutputStream(fileOut, 65536);
+            this.out = new DataOutputStream(new BufferedOutputStream(gzip, 65536));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                out.writeUTF(columns.get(i));
+                out.writeByte(types[i]);
+            }
+        }
+
+        public void writeRow(Object[] values) throws IOException {
+            out.writeByte(ROW);
+            for (int i = 0; i < types.length; i++) {
+                Object value = values[i];
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    writeValue(types[i], value);
+                }
+            }
+            rows++;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Completes the dump and publishes it under its final name.
+         * @return The size of the compressed file in bytes.
+         */
+        public long finish() throws IOException {
+            out.writeByte(END);
+            out.flush();
+            gzip.finish();
+            fileOut.getFD().sync();
+            out.close();
+            finished = true;
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return Files.size(file);
+        }
+
+        /**
+         * Discards an unfinished dump.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        private void writeValue(byte type, Object value) throws IOException {
+            switch (type) {
+                case TYPE_LONG:
+                    out.writeLong(((Number) value).longValue());
+                    break;
+                case TYPE_STRING:
+                    byte[] utf8 = value.toString().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                    break;
+                case TYPE_TIMESTAMP:
+                    LocalDateTime timestamp = value instanceof Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) value;
+                    out.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000);
+                    break;
+                case TYPE_BOOLEAN:
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case TYPE_DOUBLE:
+                    out.writeDouble(((Number) value).doubleValue());
+                    break;
+                case TYPE_DATE:
+                    LocalDate date = value instanceof java.sql.Date sqlDate ? sqlDate.toLocalDate() : (LocalDate) value;
+                    out.writeLong(date.toEpochDay());
+                    break;
+                case TYPE_BYTES:
+                    byte[] bytes = (byte[]) value;
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    break;
+                default:
+                    throw new IOException("Unknown value type " + type);
+            }
+        }
+    }
+}
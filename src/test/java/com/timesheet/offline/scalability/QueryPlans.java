@@ -0,0 +1,64 @@
+package com.timesheet.offline.scalability;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Asks PostgreSQL how it would run a recorded statement, with the parameters it was actually run with.
+ */
+final class QueryPlans {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private QueryPlans() {
+    }
+
+    /**
+     * @return The tables among the given ones that the statement's plan reads with a sequential scan.
+     */
+    static List<String> sequentialScans(DataSource dataSource, StatementRecorder.RecordedStatement statement,
+                                        Set<String> tables) throws SQLException {
+        JsonNode plan = explain(dataSource, statement);
+        List<String> scanned = new ArrayList<>();
+        collectSequentialScans(plan.path(0).path("Plan"), tables, scanned);
+        return scanned;
+    }
+
+    /**
+     * @return The plan as EXPLAIN (FORMAT JSON) returns it. The statement itself is not executed.
+     */
+    static JsonNode explain(DataSource dataSource, StatementRecorder.RecordedStatement statement) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + statement.sql())) {
+            statement.bindTo(explain);
+            try (ResultSet result = explain.executeQuery()) {
+                result.next();
+                return JSON.readTree(result.getString(1));
+            } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+                throw new IllegalStateException("Unreadable plan for: " + statement.sql(), e);
+            }
+        }
+    }
+
+    private static void collectSequentialScans(JsonNode node, Set<String> tables, List<String> scanned) {
+        if (node.isMissingNode()) {
+            return;
+        }
+        String relation = node.path("Relation Name").asText(null);
+        if ("Seq Scan".equals(node.path("Node Type").asText()) && relation != null && tables.contains(relation)) {
+            scanned.add(relation);
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSequentialScans(child, tables, scanned);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.timesheet.offline.scalability;
+
+import com.timesheet.offline.model.Role;
+import com.timesheet.offline.projection.UserRow;
+import com.timesheet.offline.repository.AuditLogRepository;
+import com.timesheet.offline.repository.ClockLogRepository;
+import com.timesheet.offline.repository.UserDirectoryRepository;
+import com.timesheet.offline.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs every query of ClockLogRepository, AuditLogRepository and UserRepository against a PostgreSQL holding
+ * a realistic volume of data (see SyntheticDataset), and checks for each one that
+ * <ul>
+ *   <li>the median of 'scalability.repetitions' runs, with the second-level cache emptied, stays within its
+ *       latency budget, scaled by 'scalability.budget-factor' for slower machines;</li>
+ *   <li>EXPLAIN, with the parameters the query actually ran with, shows no sequential scan of the large tables.</li>
+ * </ul>
+ * Excluded from a plain 'mvn test'; run it with 'mvn -Pscalability test'. Needs Docker. The budgets are set for
+ * the default sizes; generating them takes a few minutes.
+ * <p>
+ * ClockLogRepository.deleteByTimestampBefore is left out: the weekly reset deletes nearly the whole table by design.
+ */
+@Tag("scalability")
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(RepositoryScalabilityTest.StatementRecording.class)
+class RepositoryScalabilityTest {
+
+    /** Tables large enough that reading all of them on a request is a regression. */
+    private static final Set<String> LARGE_TABLES = Set.of("clock_logs", "audit_logs", "work_sessions");
+    private static final Set<String> LARGE_TABLES_AND_USERS = Set.of("clock_logs", "audit_logs", "work_sessions", "users");
+
+    private static final Duration POINT = Duration.ofMillis(50);
+    private static final Duration PAGE = Duration.ofMillis(250);
+    private static final Duration LIST = Duration.ofSeconds(1);
+    private static final Duration RANGE = Duration.ofSeconds(3);
+    // Page queries over the whole audit table also count it, which reads every row whatever the plan.
+    private static final Duration TABLE_COUNT = Duration.ofSeconds(10);
+
+    private static final int REPETITIONS = Integer.getInteger("scalability.repetitions", 5);
+    private static final double BUDGET_FACTOR = Double.parseDouble(System.getProperty("scalability.budget-factor", "1"));
+
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(System.getProperty("scalability.image", "postgres:16-alpine"))
+            // Durability is of no use to a throwaway database, and bulk generation is several times faster without it.
+            .withCommand("postgres", "-c", "fsync=off", "-c", "synchronous_commit=off", "-c", "full_page_writes=off",
+                    "-c", "max_wal_size=8GB", "-c", "shared_buffers=1GB", "-c", "maintenance_work_mem=1GB")
+            .withSharedMemorySize(2L * 1024 * 1024 * 1024);
+
+    static {
+        // Started here rather than by the Testcontainers extension: with a per-class test instance, Spring
+        // builds the context (and needs the database) before any @BeforeAll callback runs.
+        POSTGRES.start();
+    }
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @TestConfiguration
+    static class StatementRecording {
+
+        @Bean
+        static BeanPostProcessor statementRecorderPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource && beanName.equals("dataSource")
+                            ? new StatementRecorder(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private record QueryCheck(String name, Duration budget, Set<String> noSequentialScanOf, boolean countsWholeTable,
+                              Runnable query) {
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ClockLogRepository clockLogRepository;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private StatementRecorder recorder;
+    private SyntheticDataset data;
+
+    @BeforeAll
+    void generateData() {
+        recorder = (StatementRecorder) dataSource;
+        data = new SyntheticDataset(new JdbcTemplate(recorder.getTargetDataSource()));
+        data.generate();
+    }
+
+    @TestFactory
+    Stream<DynamicTest> clockLogQueries() {
+        LocalDateTime dayAgo = data.now().minusDays(1);
+        LocalDateTime weekAgo = data.now().minusDays(7);
+        return verifyAll(List.of(
+                check("findTopByUserIdOrderByTimestampDesc", POINT, LARGE_TABLES,
+                        () -> clockLogRepository.findTopByUserIdOrderByTimestampDesc(data.activeUserId)),
+                check("existsByPunchId", POINT, LARGE_TABLES,
+                        () -> clockLogRepository.existsByPunchId(data.punchId)),
+                check("findByTimestampBetween (one day)", RANGE, LARGE_TABLES,
+                        () -> clockLogRepository.findByTimestampBetween(dayAgo, data.now())),
+                check("countByTimestampBetween (one week)", PAGE, LARGE_TABLES,
+                        () -> clockLogRepository.countByTimestampBetween(weekAgo, data.now())),
+                check("streamRowsByTimestampBetween (one week)", RANGE, LARGE_TABLES,
+                        () -> readOnly(() -> {
+                            try (Stream<?> rows = clockLogRepository.streamRowsByTimestampBetween(weekAgo, data.now())) {
+                                return rows.count();
+                            }
+                        }))));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> auditLogQueries() {
+        LocalDateTime dayAgo = data.now().minusDays(1);
+        long recentId = Math.max(data.minAuditId, data.maxAuditId - 100_000);
+        return verifyAll(List.of(
+                check("findByOrderByTimestampDesc", PAGE, LARGE_TABLES,
+                        () -> auditLogRepository.findByOrderByTimestampDesc(PageRequest.of(0, 20))),
+                check("findByTimestampBetween (one hour)", RANGE, LARGE_TABLES,
+                        () -> auditLogRepository.findByTimestampBetween(data.now().minusHours(1), data.now())),
+                check("countByTimestampBetween (one day)", PAGE, LARGE_TABLES,
+                        () -> auditLogRepository.countByTimestampBetween(dayAgo, data.now())),
+                new QueryCheck("findAllByOrderByTimestampDesc", TABLE_COUNT, LARGE_TABLES, true,
+                        () -> auditLogRepository.findAllByOrderByTimestampDesc(PageRequest.of(0, 20))),
+                new QueryCheck("findRowsOrderByTimestampDesc", TABLE_COUNT, LARGE_TABLES, true,
+                        () -> auditLogRepository.findRowsOrderByTimestampDesc(PageRequest.of(0, 20))),
+                check("findRecentRows", PAGE, LARGE_TABLES,
+                        () -> auditLogRepository.findRecentRows(PageRequest.of(0, 20))),
+                check("findRowsBySiteIdOrderByTimestampDesc", TABLE_COUNT, LARGE_TABLES,
+                        () -> auditLogRepository.findRowsBySiteIdOrderByTimestampDesc(data.firstSiteId, PageRequest.of(0, 20))),
+                check("findByIdGreaterThanOrderByIdAsc", POINT, LARGE_TABLES,
+                        () -> auditLogRepository.findByIdGreaterThanOrderByIdAsc(data.minAuditId, PageRequest.of(0, 1000))),
+                check("streamByIdGreaterThanAndTimestampBetweenOrderByIdAsc", RANGE, LARGE_TABLES,
+                        () -> readOnly(() -> {
+                            try (Stream<?> rows = auditLogRepository.streamByIdGreaterThanAndTimestampBetweenOrderByIdAsc(
+                                    recentId, dayAgo, data.now())) {
+                                return rows.count();
+                            }
+                        })),
+                check("streamByIdGreaterThanOrderByIdAsc", RANGE, LARGE_TABLES,
+                        () -> readOnly(() -> {
+                            try (Stream<?> rows = auditLogRepository.streamByIdGreaterThanOrderByIdAsc(recentId)) {
+                                return rows.count();
+                            }
+                        })),
+                check("findTopByOrderByIdAsc", POINT, LARGE_TABLES,
+                        auditLogRepository::findTopByOrderByIdAsc),
+                check("deleteByIdRange (rolled back)", POINT, LARGE_TABLES,
+                        () -> rolledBack(() -> auditLogRepository.deleteByIdRange(data.minAuditId, data.minAuditId + 1000)))));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> userQueries() {
+        UserRow after = new UserRow(data.activeUserId, data.activeUserEmail, Role.ROLE_EMPLOYEE, null);
+        return verifyAll(List.of(
+                check("findByEmail", POINT, LARGE_TABLES_AND_USERS,
+                        () -> userRepository.findByEmail(data.activeUserEmail)),
+                check("findActiveById", POINT, LARGE_TABLES_AND_USERS,
+                        () -> userRepository.findActiveById(data.activeUserId)),
+                check("existsByEmail", POINT, LARGE_TABLES_AND_USERS,
+                        () -> userRepository.existsByEmail(data.activeUserEmail)),
+                check("findAllByRoleAndSiteId", PAGE, LARGE_TABLES,
+                        () -> userRepository.findAllByRoleAndSiteId(Role.ROLE_EMPLOYEE, data.firstSiteId)),
+                check("findAllByRoleAndSiteIdAndIdNot", PAGE, LARGE_TABLES,
+                        () -> userRepository.findAllByRoleAndSiteIdAndIdNot(Role.ROLE_EMPLOYEE, data.firstSiteId, data.activeUserId)),
+                check("findAll", LIST, LARGE_TABLES,
+                        userRepository::findAll),
+                check("findAllRows", PAGE, LARGE_TABLES,
+                        userRepository::findAllRows),
+                check("findAllStatusRows", LIST, LARGE_TABLES,
+                        userRepository::findAllStatusRows),
+                check("findStatusRowsBySiteId", PAGE, LARGE_TABLES,
+                        () -> userRepository.findStatusRowsBySiteId(data.firstSiteId)),
+                check("findIdsDeletedBefore", POINT, LARGE_TABLES_AND_USERS,
+                        () -> userRepository.findIdsDeletedBefore(data.now(), PageRequest.of(0, 100))),
+                check("deletePurgedUser (rolled back)", POINT, LARGE_TABLES_AND_USERS,
+                        () -> rolledBack(() -> userRepository.deletePurgedUser(data.activeUserId))),
+                check("findDirectoryRows (first page)", POINT, LARGE_TABLES_AND_USERS,
+                        () -> userRepository.findDirectoryRows(null, null, null, UserDirectoryRepository.SortKey.EMAIL, false, null, 51)),
+                check("findDirectoryRows (next page)", POINT, LARGE_TABLES_AND_USERS,
+                        () -> userRepository.findDirectoryRows(null, null, null, UserDirectoryRepository.SortKey.EMAIL, false, after, 51)),
+                check("findDirectoryRows (email prefix)", POINT, LARGE_TABLES_AND_USERS,
+                        () -> userRepository.findDirectoryRows("employee12", null, null, UserDirectoryRepository.SortKey.EMAIL, false, null, 51))));
+    }
+
+    private static QueryCheck check(String name, Duration budget, Set<String> noSequentialScanOf, Runnable query) {
+        return new QueryCheck(name, budget, noSequentialScanOf, false, query);
+    }
+
+    private Stream<DynamicTest> verifyAll(List<QueryCheck> checks) {
+        return checks.stream().map(check -> DynamicTest.dynamicTest(check.name(), () -> verify(check)));
+    }
+
+    private void verify(QueryCheck check) throws SQLException {
+        evictCaches();
+        recorder.start();
+        check.query().run();
+        List<StatementRecorder.RecordedStatement> statements = recorder.stop();
+        assertFalse(statements.isEmpty(), check.name() + " ran no statements");
+
+        for (StatementRecorder.RecordedStatement statement : statements) {
+            if (check.countsWholeTable() && statement.sql().trim().toLowerCase().startsWith("select count(")) {
+                continue;
+            }
+            List<String> scanned = QueryPlans.sequentialScans(recorder.getTargetDataSource(), statement, check.noSequentialScanOf());
+            assertTrue(scanned.isEmpty(), () -> check.name() + " reads " + scanned + " with a sequential scan: " + statement.sql());
+        }
+
+        long[] nanos = new long[REPETITIONS];
+        for (int i = 0; i < REPETITIONS; i++) {
+            evictCaches();
+            long started = System.nanoTime();
+            check.query().run();
+            nanos[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(nanos);
+        Duration median = Duration.ofNanos(nanos[REPETITIONS / 2]);
+        Duration budget = Duration.ofNanos((long) (check.budget().toNanos() * BUDGET_FACTOR));
+        System.out.printf("%-55s median %6d ms, budget %6d ms%n", check.name(), median.toMillis(), budget.toMillis());
+        assertTrue(median.compareTo(budget) <= 0,
+                () -> check.name() + " took " + median.toMillis() + " ms, over its budget of " + budget.toMillis() + " ms");
+    }
+
+    /**
+     * Empties the second-level and query caches, so every run reaches the database.
+     */
+    private void evictCaches() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    private void readOnly(Supplier<?> query) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.execute(status -> query.get());
+    }
+
+    private void rolledBack(Supplier<?> statement) {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            status.setRollbackOnly();
+            return statement.get();
+        });
+    }
+}
@@ -0,0 +1,133 @@
+package com.timesheet.offline.scalability;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps a DataSource and, while recording, keeps every statement the application executes together with its
+ * bound parameters, so the test can EXPLAIN exactly what Hibernate sent.
+ */
+class StatementRecorder extends DelegatingDataSource {
+
+    /**
+     * A parameter setter call (setLong, setObject, setNull, ...) on a PreparedStatement.
+     */
+    record Binding(Method setter, Object[] args) {
+    }
+
+    record RecordedStatement(String sql, List<Binding> bindings) {
+
+        /**
+         * Binds the same parameters to another statement with the same placeholders.
+         */
+        void bindTo(PreparedStatement statement) throws SQLException {
+            for (Binding binding : bindings) {
+                try {
+                    binding.setter().invoke(statement, binding.args());
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof SQLException cause) {
+                        throw cause;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+    }
+
+    private final List<RecordedStatement> recorded = new ArrayList<>();
+    private volatile boolean recording;
+
+    StatementRecorder(DataSource target) {
+        super(target);
+    }
+
+    synchronized void start() {
+        recorded.clear();
+        recording = true;
+    }
+
+    /**
+     * @return The statements executed since start, in order.
+     */
+    synchronized List<RecordedStatement> stop() {
+        recording = false;
+        return List.copyOf(recorded);
+    }
+
+    private synchronized void add(RecordedStatement statement) {
+        if (recording) {
+            recorded.add(statement);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement statement) {
+                        return wrapPreparedStatement(statement, (String) args[0]);
+                    }
+                    if (method.getName().equals("createStatement") && result instanceof Statement statement) {
+                        return wrapStatement(statement);
+                    }
+                    return result;
+                });
+    }
+
+    private PreparedStatement wrapPreparedStatement(PreparedStatement statement, String sql) {
+        List<Binding> bindings = new ArrayList<>();
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bindings.add(new Binding(method, args.clone()));
+            } else if (name.equals("clearParameters")) {
+                bindings.clear();
+            } else if (name.startsWith("execute") && (args == null || args.length == 0)) {
+                add(new RecordedStatement(sql, List.copyOf(bindings)));
+            }
+            return invoke(statement, method, args);
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    private Statement wrapStatement(Statement statement) {
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute") && args != null && args.length > 0 && args[0] instanceof String sql) {
+                        add(new RecordedStatement(sql, List.of()));
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.timesheet.offline.scalability;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fills an empty schema with a realistic volume of data, generated inside PostgreSQL with generate_series, so
+ * tens of millions of rows take minutes rather than hours and never pass through the JVM.
+ * <p>
+ * Users are spread evenly over the sites; 1% of them are deleted. Each work session is a shift of up to eight
+ * hours with a CLOCK_IN and, unless it is still running, a CLOCK_OUT log. Sessions, clock logs and audit logs
+ * are spread evenly over the last 'days' days and inserted in time order, like a real installation's ids.
+ * Sizes come from system properties, e.g. -Dscalability.clock-logs=1000000.
+ */
+class SyntheticDataset {
+
+    final int sites = Integer.getInteger("scalability.sites", 10);
+    final int users = Integer.getInteger("scalability.users", 10_000);
+    final long clockLogs = Long.getLong("scalability.clock-logs", 10_000_000L);
+    final long auditLogs = Long.getLong("scalability.audit-logs", 50_000_000L);
+    final int days = Integer.getInteger("scalability.days", 365);
+
+    private static final long CHUNK_ROWS = 5_000_000L;
+    // The suite never logs in, so any non-blank value will do.
+    private static final String PASSWORD_HASH = "unused";
+
+    private final JdbcTemplate jdbc;
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+    // Sample values for the queries under test, read back after generation.
+    long firstSiteId;
+    long firstUserId;
+    long activeUserId;
+    String activeUserEmail;
+    long deletedUserId;
+    String punchId;
+    long minAuditId;
+    long maxAuditId;
+
+    SyntheticDataset(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    LocalDateTime now() {
+        return now;
+    }
+
+    void generate() {
+        long spanSeconds = days * 86_400L;
+        long sessions = clockLogs / 2;
+
+        timed("sites", () -> jdbc.update("INSERT INTO sites (code, name) "
+                + "SELECT 'SCALE-' || g, 'Synthetic site ' || g FROM generate_series(1, ?) g", sites));
+        firstSiteId = jdbc.queryForObject("SELECT MIN(id) FROM sites WHERE code LIKE 'SCALE-%'", Long.class);
+
+        timed("users", () -> jdbc.update("INSERT INTO users (email, password, role, site_id, deleted_at) "
+                        + "SELECT 'employee' || g || '@scale.test', ?, 'ROLE_EMPLOYEE', ? + g % ?, "
+                        + "CASE WHEN g % 100 = 99 THEN CAST(? AS timestamp) - interval '1 day' END "
+                        + "FROM generate_series(0, ? - 1) g",
+                PASSWORD_HASH, firstSiteId, sites, now, users));
+        firstUserId = jdbc.queryForObject("SELECT MIN(id) FROM users WHERE email LIKE '%@scale.test'", Long.class);
+
+        // Session g belongs to user g % users; consecutive shifts of one user are 'gap' seconds apart.
+        long gapSeconds = Math.max(1, spanSeconds * users / Math.max(1, sessions));
+        long shiftSeconds = Math.min(8 * 3600L, Math.max(1, gapSeconds / 2));
+        for (long from = 0; from < sessions; from += CHUNK_ROWS) {
+            long to = Math.min(sessions, from + CHUNK_ROWS) - 1;
+            long chunkFrom = from;
+            timed("work_sessions " + from + ".." + to, () -> jdbc.update("INSERT INTO work_sessions "
+                            + "(user_id, site_id, started_at, ended_at, duration_seconds, session_key, auto_closed) "
+                            + "SELECT s.user_id, ? + s.user_index % ?, s.started_at, "
+                            + "CASE WHEN s.started_at + s.shift < CAST(? AS timestamp) THEN s.started_at + s.shift END, "
+                            + "CASE WHEN s.started_at + s.shift < CAST(? AS timestamp) THEN ? END, "
+                            + "md5('session' || s.g), false "
+                            + "FROM (SELECT g, g % ? AS user_index, ? + g % ? AS user_id, "
+                            + "CAST(? AS timestamp) - (? - g) * CAST(? AS double precision) / ? * interval '1 second' AS started_at, "
+                            + "? * interval '1 second' AS shift "
+                            + "FROM generate_series(?, ?) g) s",
+                    firstSiteId, sites, now, now, shiftSeconds,
+                    users, firstUserId, users,
+                    now, sessions, spanSeconds, sessions,
+                    shiftSeconds,
+                    chunkFrom, to));
+        }
+
+        timed("clock_logs", () -> jdbc.update("INSERT INTO clock_logs "
+                + "(user_id, site_id, action, timestamp, session_id, duration_hours, punch_id, auto_closed) "
+                + "SELECT w.user_id, w.site_id, a.action, "
+                + "CASE a.action WHEN 'CLOCK_IN' THEN w.started_at ELSE w.ended_at END, w.session_key, "
+                + "CASE a.action WHEN 'CLOCK_OUT' THEN w.duration_seconds / 3600.0 END, "
+                + "md5(w.session_key || a.action), false "
+                + "FROM work_sessions w CROSS JOIN (VALUES ('CLOCK_IN'), ('CLOCK_OUT')) a(action) "
+                + "WHERE a.action = 'CLOCK_IN' OR w.ended_at IS NOT NULL "
+                + "ORDER BY 4"));
+
+        for (long from = 0; from < auditLogs; from += CHUNK_ROWS) {
+            long to = Math.min(auditLogs, from + CHUNK_ROWS) - 1;
+            long chunkFrom = from;
+            timed("audit_logs " + from + ".." + to, () -> jdbc.update("INSERT INTO audit_logs "
+                            + "(user_id, site_id, action, status, timestamp, details) "
+                            + "SELECT ? + g % ?, ? + g % ?, "
+                            + "(ARRAY['CLOCK_IN_SUCCESS', 'CLOCK_OUT_SUCCESS', 'PIN_LOGIN_FAILURE', 'ADMIN_LOGIN_SUCCESS'])[1 + g % 4], "
+                            + "CASE WHEN g % 4 = 2 THEN 'FAILURE' ELSE 'SUCCESS' END, "
+                            + "CAST(? AS timestamp) - (? - g) * CAST(? AS double precision) / ? * interval '1 second', "
+                            + "'Synthetic audit entry ' || g "
+                            + "FROM generate_series(?, ?) g",
+                    firstUserId, users, firstSiteId, sites,
+                    now, auditLogs, spanSeconds, auditLogs,
+                    chunkFrom, to));
+        }
+
+        timed("analyze", () -> jdbc.execute("VACUUM ANALYZE"));
+
+        activeUserId = jdbc.queryForObject("SELECT MIN(id) FROM users WHERE id >= ? AND deleted_at IS NULL",
+                Long.class, firstUserId + users / 2);
+        activeUserEmail = jdbc.queryForObject("SELECT email FROM users WHERE id = ?", String.class, activeUserId);
+        deletedUserId = jdbc.queryForObject("SELECT MIN(id) FROM users WHERE deleted_at IS NOT NULL", Long.class);
+        punchId = jdbc.queryForObject("SELECT punch_id FROM clock_logs WHERE user_id = ? ORDER BY id DESC LIMIT 1",
+                String.class, activeUserId);
+        minAuditId = jdbc.queryForObject("SELECT MIN(id) FROM audit_logs", Long.class);
+        maxAuditId = jdbc.queryForObject("SELECT MAX(id) FROM audit_logs", Long.class);
+    }
+
+    private static void timed(String step, Runnable work) {
+        long started = System.nanoTime();
+        work.run();
+        System.out.printf("Generated %s in %.1fs%n", step, (System.nanoTime() - started) / 1e9);
+    }
+}
@@ -0,0 +1,180 @@
+package com.timesheet.offline.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timesheet.offline.config.QueryCounter;
+import com.timesheet.offline.export.ExportFormat;
+import com.timesheet.offline.export.RowWriter;
+import com.timesheet.offline.model.AuditLog;
+import com.timesheet.offline.model.ClockAction;
+import com.timesheet.offline.model.ClockLog;
+import com.timesheet.offline.model.Role;
+import com.timesheet.offline.model.Site;
+import com.timesheet.offline.model.User;
+import com.timesheet.offline.model.WorkSession;
+import com.timesheet.offline.repository.AuditLogRepository;
+import com.timesheet.offline.repository.ClockLogRepository;
+import com.timesheet.offline.repository.SiteRepository;
+import com.timesheet.offline.repository.UserRepository;
+import com.timesheet.offline.repository.WorkSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Holds the admin queries to exact statement counts, counted by QueryCounter. Each check runs twice, with more
+ * users and history the second time, so a query per row (an N+1 pattern) fails it even when the first count
+ * happens to match. Runs on embedded storage, so it needs no database server.
+ * <p>
+ * When a change legitimately adds a statement, update the expected count here and the endpoint's @QueryBudget.
+ */
+@SpringBootTest(properties = {
+        "storage.mode=embedded",
+        "storage.embedded.path=./target/test-data/query-budget/${random.uuid}/timesheet"
+})
+class QueryBudgetTest {
+
+    private static final int USERS_PER_ROUND = 5;
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private TimesheetService timesheetService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private WorkSessionRepository workSessionRepository;
+    @Autowired
+    private ClockLogRepository clockLogRepository;
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    private Site site;
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+    @BeforeEach
+    void createSite() {
+        site = new Site();
+        site.setCode("BUDGET-" + UUID.randomUUID().toString().substring(0, 8));
+        site.setName("Query budget site");
+        site = siteRepository.save(site);
+        addUsers();
+    }
+
+    @Test
+    void userStatusesTakeOneQuery() {
+        assertStatements(1, () -> adminService.getUserStatuses(null));
+        assertStatements(1, () -> adminService.getUserStatuses(site.getId()));
+    }
+
+    @Test
+    void userDirectoryPageTakesOneQuery() {
+        assertStatements(1, () -> adminService.getUserDirectory(null, null, site.getId(), "email", "asc", null, 2));
+    }
+
+    @Test
+    void notificationsTakeOneQuery() {
+        assertStatements(1, () -> adminService.getNotifications());
+    }
+
+    @Test
+    void auditLogPageTakesTwoQueries() {
+        // The rows and the total; every round adds more entries than a page holds, so the total is always needed.
+        assertStatements(2, () -> adminService.getAuditLogs(site.getId(), PageRequest.of(0, USERS_PER_ROUND)));
+    }
+
+    @Test
+    void timesheetExportTakesTwoStatements() {
+        // The clock logs, and the audit entry recording the export.
+        assertStatements(2, () -> export(writer -> timesheetService.exportWeeklyTimesheet(writer, now.minusDays(1), now.plusDays(1))));
+    }
+
+    @Test
+    void auditLogExportTakesTwoQueries() {
+        // The user emails and the live entries; archived entries are read from files.
+        assertStatements(2, () -> export(writer -> adminService.exportAuditLogs(writer, now.minusDays(1), now.plusDays(1))));
+    }
+
+    private void assertStatements(long expected, Runnable work) {
+        assertEquals(expected, QueryCounter.count(work), "SQL statements");
+        addUsers();
+        assertEquals(expected, QueryCounter.count(work), "SQL statements with more data");
+    }
+
+    private void export(Consumer<RowWriter> exporter) {
+        try (RowWriter writer = ExportFormat.CSV.open(new ByteArrayOutputStream(), objectMapper)) {
+            exporter.accept(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds employees with one finished shift each: its work session, both clock logs and their audit entries.
+     */
+    private void addUsers() {
+        for (int i = 0; i < USERS_PER_ROUND; i++) {
+            User user = new User();
+            user.setEmail("budget-" + UUID.randomUUID() + "@test.local");
+            user.setPassword("unused");
+            user.setRole(Role.ROLE_EMPLOYEE);
+            user.setSiteId(site.getId());
+            user = userRepository.save(user);
+
+            String sessionKey = UUID.randomUUID().toString();
+            LocalDateTime startedAt = now.minusHours(8);
+            WorkSession session = new WorkSession();
+            session.setUser(user);
+            session.setSiteId(site.getId());
+            session.setSessionKey(sessionKey);
+            session.setStartedAt(startedAt);
+            session.setEndedAt(now);
+            session.setDurationSeconds(8 * 3600L);
+            workSessionRepository.save(session);
+
+            clockLogRepository.save(clockLog(user, ClockAction.CLOCK_IN, startedAt, sessionKey));
+            clockLogRepository.save(clockLog(user, ClockAction.CLOCK_OUT, now, sessionKey));
+            auditLogRepository.save(auditLog(user, "CLOCK_IN_SUCCESS", startedAt));
+            auditLogRepository.save(auditLog(user, "CLOCK_OUT_SUCCESS", now));
+        }
+    }
+
+    private ClockLog clockLog(User user, ClockAction action, LocalDateTime timestamp, String sessionKey) {
+        ClockLog log = new ClockLog();
+        log.setUser(user);
+        log.setSiteId(site.getId());
+        log.setAction(action);
+        log.setTimestamp(timestamp);
+        log.setSessionId(sessionKey);
+        log.setPunchId(UUID.randomUUID().toString());
+        if (action == ClockAction.CLOCK_OUT) {
+            log.setDurationHours(8.0);
+        }
+        return log;
+    }
+
+    private AuditLog auditLog(User user, String action, LocalDateTime timestamp) {
+        AuditLog log = new AuditLog();
+        log.setUserId(user.getId());
+        log.setSiteId(site.getId());
+        log.setAction(action);
+        log.setStatus("SUCCESS");
+        log.setTimestamp(timestamp);
+        log.setDetails("Query budget test entry");
+        return log;
+    }
+}